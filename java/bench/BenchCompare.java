@@ -0,0 +1,75 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two result files written by HotPathBench with -Dbench.csv, e.g.
+ * from the commit before and after a change. For every benchmark and param
+ * in both files it prints both scores and the change in throughput, marked
+ * with '*' when the scores are further apart than the sum of their standard
+ * deviations, so the difference is larger than the noise between
+ * iterations. Benchmarks found in only one file are listed as well.
+ *
+ * Usage: bench.sh BenchCompare base.csv new.csv
+ *
+ */
+public class BenchCompare {
+
+   public static void main(String[] args) throws IOException {
+      if (args.length < 2) {
+         System.err.println("Usage: bench.sh BenchCompare base.csv new.csv");
+         return;
+      } // end if
+      Map<String, double[]> base = read(args[0]);
+      Map<String, double[]> next = read(args[1]);
+
+      System.out.printf("%-40s %12s %12s %9s%n", "benchmark param", "base ops/s", "new ops/s", "change");
+      for (Map.Entry<String, double[]> entry : base.entrySet()) {
+         double[] before = entry.getValue();
+         double[] after = next.get(entry.getKey());
+         if (after == null) {
+            System.out.printf("%-40s %12.1f %12s%n", entry.getKey(), before[0], "-");
+            continue;
+         }
+         double change = before[0] == 0 ? 0.0 : (after[0] - before[0]) / before[0] * 100;
+         boolean significant = Math.abs(after[0] - before[0]) > before[1] + after[1];
+         System.out.printf("%-40s %12.1f %12.1f %+8.1f%%%s%n", entry.getKey(), before[0], after[0], change,
+               significant ? " *" : "");
+      } // end for
+      for (Map.Entry<String, double[]> entry : next.entrySet()) {
+         if (!base.containsKey(entry.getKey()))
+            System.out.printf("%-40s %12s %12.1f%n", entry.getKey(), "-", entry.getValue()[0]);
+      }
+   }// end main
+
+   // score and standard deviation by benchmark and param
+   private static Map<String, double[]> read(String file) throws IOException {
+      Map<String, double[]> scores = new LinkedHashMap<String, double[]>();
+      try (CsvReader csv = new CsvReader(Paths.get(file))) {
+         int benchmark = csv.column("benchmark"), param = csv.column("param");
+         int score = csv.column("score"), stdev = csv.column("scoreStdev");
+         if (benchmark < 0 || param < 0 || score < 0 || stdev < 0)
+            throw new IOException(file + " was not written by HotPathBench");
+         String[] record;
+         while ((record = csv.next()) != null) {
+            scores.put(record[benchmark] + " " + record[param],
+                  new double[] { Double.parseDouble(record[score]), Double.parseDouble(record[stdev]) });
+         } // end while
+      }
+      return scores;
+   }// end read
+
+}// end BenchCompare
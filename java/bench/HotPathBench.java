@@ -0,0 +1,428 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput and latency of the data-access and ordering hot paths, run
+ * against a database loaded by create_db.sh:
+ *
+ * returnResult.small  executeQueryAndReturnResult on one user, as a template
+ *                     and as literal SQL
+ * returnResult.large  executeQueryAndReturnResult on bench.largeRows orders
+ * checkout            PizzaStoreService.placeOrder of three items, end to end
+ * trigger.orderLines  an order header and a multi-row ItemsInOrder insert
+ *                     firing update_order_total_price, rolled back
+ * menu.cache          PizzaStoreService.menu filters answered by MenuIndex
+ * menu.sql            the same filters as Queries.menu SQL templates
+ * history.first       the first order history page, for staff and customer
+ * history.older       an older order history page from a keyset cursor
+ *
+ * Each benchmark runs single-threaded for bench.warmupIterations and then
+ * bench.iterations timed iterations of bench.iterationMillis each, calling
+ * its operation back to back. The score is the mean operations per second
+ * over the timed iterations with their standard deviation; the latency of
+ * every timed call goes into a LatencyHistogram. Orders placed by checkout
+ * are deleted at the end, so the database is left as it was apart from the
+ * order ID sequence.
+ *
+ * Results are printed as a table and, when asked for, written as JSON and
+ * CSV tagged with bench.label. Two CSV files, e.g. from two commits, are
+ * compared with BenchCompare.
+ *
+ * Usage: bench.sh [-Dbench.PROPERTY=VALUE ...] HotPathBench dbname port user [passwd]
+ *
+ * bench.include          regular expression the benchmark name must contain (all)
+ * bench.warmupIterations untimed iterations per benchmark (3)
+ * bench.iterations       timed iterations per benchmark (5)
+ * bench.iterationMillis  length of one iteration (1000)
+ * bench.largeRows        rows in the large result (10000)
+ * bench.label            label written with the results, e.g. a commit ("")
+ * bench.json             file the results are written to as JSON (none)
+ * bench.csv              file the results are written to as CSV (none)
+ *
+ */
+public class HotPathBench {
+
+   private interface Operation {
+      // returns something derived from the result, so it is not optimized away
+      long run() throws Exception;
+   }
+
+   private static final class Benchmark {
+      final String name;
+      final String param;
+      final Operation operation;
+
+      Benchmark(String name, String param, Operation operation) {
+         this.name = name;
+         this.param = param;
+         this.operation = operation;
+      }
+   }// end Benchmark
+
+   private static final class Result {
+      final Benchmark benchmark;
+      final double[] opsPerSecond;
+      final LatencyHistogram latency;
+
+      Result(Benchmark benchmark, double[] opsPerSecond, LatencyHistogram latency) {
+         this.benchmark = benchmark;
+         this.opsPerSecond = opsPerSecond;
+         this.latency = latency;
+      }
+
+      double score() {
+         double sum = 0;
+         for (double ops : this.opsPerSecond)
+            sum += ops;
+         return sum / this.opsPerSecond.length;
+      }// end score
+
+      double stdev() {
+         if (this.opsPerSecond.length < 2)
+            return 0.0;
+         double mean = score();
+         double squares = 0;
+         for (double ops : this.opsPerSecond)
+            squares += (ops - mean) * (ops - mean);
+         return Math.sqrt(squares / (this.opsPerSecond.length - 1));
+      }// end stdev
+   }// end Result
+
+   // the most lines in one trigger.orderLines insert
+   private static final int MAX_LINES = 100;
+
+   // keeps the JIT from dropping the measured calls
+   private static long sink;
+
+   private final PizzaStore esql;
+   private final PizzaStoreService service;
+   private final int warmupIterations;
+   private final int iterations;
+   private final long iterationNanos;
+
+   // orders placed by checkout, deleted by cleanup
+   private final List<Integer> placed = new ArrayList<Integer>();
+
+   private HotPathBench(PizzaStore esql, int warmupIterations, int iterations, long iterationMillis) {
+      this.esql = esql;
+      this.service = esql.getService();
+      this.warmupIterations = warmupIterations;
+      this.iterations = iterations;
+      this.iterationNanos = iterationMillis * 1000000L;
+   }// end HotPathBench
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: bench.sh [-Dbench.PROPERTY=VALUE ...] HotPathBench dbname port user [passwd]");
+         return;
+      } // end if
+      Pattern include = Pattern.compile(System.getProperty("bench.include", ""));
+      int warmupIterations = Integer.getInteger("bench.warmupIterations", 3);
+      int iterations = Math.max(1, Integer.getInteger("bench.iterations", 5));
+      long iterationMillis = Long.getLong("bench.iterationMillis", 1000L);
+      int largeRows = Integer.getInteger("bench.largeRows", 10000);
+      String label = System.getProperty("bench.label", "");
+      String json = System.getProperty("bench.json");
+      String csv = System.getProperty("bench.csv");
+
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      try {
+         HotPathBench bench = new HotPathBench(esql, warmupIterations, iterations, iterationMillis);
+         List<Result> results = new ArrayList<Result>();
+         try {
+            List<Benchmark> benchmarks = bench.benchmarks(largeRows);
+            System.out.printf("%d warm-up and %d timed iterations of %d ms per benchmark%n%n", warmupIterations,
+                  iterations, iterationMillis);
+            System.out.printf("%-20s %-18s %12s %10s %10s %10s %10s %10s%n", "benchmark", "param", "ops/s",
+                  "stdev", "mean us", "p50 us", "p99 us", "max us");
+            for (Benchmark benchmark : benchmarks) {
+               if (!include.matcher(benchmark.name).find())
+                  continue;
+               try {
+                  Result result = bench.measure(benchmark);
+                  results.add(result);
+                  LatencyHistogram latency = result.latency;
+                  System.out.printf("%-20s %-18s %12.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", benchmark.name,
+                        benchmark.param, result.score(), result.stdev(), latency.getMeanNanos() / 1e3,
+                        latency.percentile(0.50) / 1e3, latency.percentile(0.99) / 1e3,
+                        latency.getMaxNanos() / 1e3);
+               } catch (Exception e) {
+                  System.out.printf("%-20s %-18s failed: %s%n", benchmark.name, benchmark.param, e.getMessage());
+               } // end try
+            } // end for
+         } finally {
+            bench.cleanup();
+         } // end try
+         if (json != null)
+            writeJson(json, label, warmupIterations, iterations, iterationMillis, results);
+         if (csv != null)
+            writeCsv(csv, label, results);
+         if (sink == 42)
+            System.out.println();
+      } finally {
+         esql.cleanup();
+      } // end try
+   }// end main
+
+   // the benchmarks, with their sample data read from the database
+   private List<Benchmark> benchmarks(int largeRows) throws Exception {
+      List<List<String>> customer = this.esql.executeQueryAndReturnResult(new QueryTemplate("bench.customer",
+            "SELECT u.login, u.password FROM FoodOrder f JOIN Users u ON u.login = f.login "
+                  + "WHERE lower(trim(u.role)) = 'customer' GROUP BY u.login, u.password "
+                  + "ORDER BY count(*) DESC, u.login LIMIT 1"));
+      List<List<String>> staff = this.esql.executeQueryAndReturnResult(new QueryTemplate("bench.staff",
+            "SELECT login, password FROM Users WHERE lower(trim(role)) <> 'customer' ORDER BY login LIMIT 1"));
+      if (customer.isEmpty() || staff.isEmpty())
+         throw new IllegalStateException("Need a customer with orders and a driver or manager, load the data first");
+      final String login = customer.get(0).get(0).trim();
+      final Session customerSession = logIn(customer.get(0));
+      final Session staffSession = logIn(staff.get(0));
+
+      MenuSnapshot menu = this.service.menu();
+      List<Store> open = this.service.stores().getOpenStores();
+      if (menu.getItems().size() < 3 || open.isEmpty())
+         throw new IllegalStateException("Need at least three items and one open store");
+      final List<Item> items = menu.getItems();
+      final int storeID = open.get(0).storeID();
+      final String type = items.get(0).typeOfItem();
+      List<Item> byPrice = menu.select(null, null, "ASC");
+      final BigDecimal maxPrice = byPrice.get(byPrice.size() / 2).price();
+
+      List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+      benchmarks.add(new Benchmark("returnResult.small", "template",
+            () -> this.esql.executeQueryAndReturnResult(Queries.USER_BY_LOGIN, login).size()));
+      final String literal = Queries.USER_BY_LOGIN.getSql().replace("?", "'" + login.replace("'", "''") + "'");
+      benchmarks.add(new Benchmark("returnResult.small", "literal",
+            () -> this.esql.executeQueryAndReturnResult(literal).size()));
+      final QueryTemplate orders = new QueryTemplate("bench.orders",
+            "SELECT orderID, login, storeID, totalPrice, orderTimestamp, orderStatus FROM FoodOrder "
+                  + "ORDER BY orderID LIMIT ?");
+      int rows = this.esql.executeQueryAndReturnResult(orders, largeRows).size();
+      benchmarks.add(new Benchmark("returnResult.large", "rows=" + rows,
+            () -> this.esql.executeQueryAndReturnResult(orders, largeRows).size()));
+
+      benchmarks.add(new Benchmark("checkout", "lines=3", () -> {
+         Cart cart = new Cart(storeID);
+         for (int i = 0; i < 3; i++)
+            cart.add(items.get(i), 1 + i);
+         int orderID = this.service.placeOrder(customerSession, cart);
+         this.placed.add(orderID);
+         return orderID;
+      }));
+
+      int most = Math.min(MAX_LINES, items.size());
+      for (int lines : new TreeSet<Integer>(Arrays.asList(1, Math.min(10, most), most))) {
+         benchmarks.add(new Benchmark("trigger.orderLines", "lines=" + lines,
+               () -> insertRolledBack(login, storeID, items.subList(0, lines))));
+      } // end for
+
+      String[] sorts = { "", "ASC", "DESC" };
+      for (boolean byType : new boolean[] { false, true }) {
+         for (boolean byPriceFilter : new boolean[] { false, true }) {
+            for (String sort : sorts) {
+               final String t = byType ? type : null;
+               final BigDecimal p = byPriceFilter ? maxPrice : null;
+               String param = (byType ? "type" : "-") + "," + (byPriceFilter ? "price" : "-") + ","
+                     + (sort.isEmpty() ? "-" : sort);
+               benchmarks.add(new Benchmark("menu.cache", param,
+                     () -> this.service.menu(t, p, sort).size()));
+               List<Object> params = new ArrayList<Object>();
+               if (t != null)
+                  params.add(t);
+               if (p != null)
+                  params.add(p);
+               final QueryTemplate query = Queries.menu(t != null, p != null, sort);
+               final Object[] bound = params.toArray();
+               benchmarks.add(new Benchmark("menu.sql", param,
+                     () -> this.esql.queryList(query, RowMappers.ITEM, bound).size()));
+            } // end for
+         } // end for
+      } // end for
+
+      for (Session session : new Session[] { staffSession, customerSession }) {
+         final OrderPager pager = this.service.orderHistory(session, OrderFilter.NONE, PizzaStore.ORDER_PAGE_SIZE);
+         benchmarks.add(new Benchmark("history.first", session.getRole(), () -> pager.first().size()));
+         List<FoodOrder> page = pager.first();
+         if (page.isEmpty())
+            continue;
+         final FoodOrder last = page.get(page.size() - 1);
+         benchmarks.add(new Benchmark("history.older", session.getRole(),
+               () -> pager.olderThan(last.orderTimestamp(), last.orderID()).size()));
+      } // end for
+      return benchmarks;
+   }// end benchmarks
+
+   private Session logIn(List<String> user) throws SQLException {
+      Session session = this.service.logIn(user.get(0).trim(), user.get(1).trim());
+      if (session == null)
+         throw new IllegalStateException("Cannot log in as " + user.get(0).trim());
+      return session;
+   }// end logIn
+
+   // writes an order with the given lines and rolls it back, returning the
+   // total the trigger computed
+   private long insertRolledBack(String login, int storeID, List<Item> items) throws SQLException {
+      int orderID = this.esql.getOrderIDs().nextID();
+      try (ConnectionPool.Lease lease = this.esql.getPool().borrow()) {
+         Connection connection = lease.getConnection();
+         try {
+            connection.setAutoCommit(false);
+            PreparedStatement header = lease.getStatements().prepare(Queries.ORDER_INSERT);
+            PizzaStore.bind(header, new Object[] { orderID, login, storeID });
+            header.executeUpdate();
+
+            Object[] params = new Object[items.size() * 3];
+            int i = 0;
+            for (Item item : items) {
+               params[i++] = orderID;
+               params[i++] = item.itemName();
+               params[i++] = 1;
+            }
+            PreparedStatement lines = lease.getStatements().prepare(Queries.orderLineInsert(items.size()));
+            PizzaStore.bind(lines, params);
+            long inserted = lines.executeUpdate();
+            connection.rollback();
+            connection.setAutoCommit(true);
+            return inserted;
+         } catch (SQLException e) {
+            // the pool rolls back the open transaction when the lease is returned
+            lease.markSuspect();
+            throw e;
+         }
+      }
+   }// end insertRolledBack
+
+   // runs the warm-up and the timed iterations of one benchmark
+   private Result measure(Benchmark benchmark) throws Exception {
+      for (int i = 0; i < this.warmupIterations; i++)
+         iterate(benchmark, null);
+      double[] opsPerSecond = new double[this.iterations];
+      LatencyHistogram latency = new LatencyHistogram();
+      for (int i = 0; i < this.iterations; i++)
+         opsPerSecond[i] = iterate(benchmark, latency);
+      return new Result(benchmark, opsPerSecond, latency);
+   }// end measure
+
+   // calls the operation until the iteration time is up, returning ops/s
+   private double iterate(Benchmark benchmark, LatencyHistogram latency) throws Exception {
+      long start = System.nanoTime();
+      long deadline = start + this.iterationNanos;
+      long now = start;
+      long ops = 0;
+      do {
+         long before = now;
+         sink += benchmark.operation.run();
+         now = System.nanoTime();
+         if (latency != null)
+            latency.record(now - before);
+         ++ops;
+      } while (now < deadline);
+      return ops / ((now - start) / 1e9);
+   }// end iterate
+
+   // deletes the orders placed by checkout, their lines go with them
+   private void cleanup() {
+      try {
+         for (int from = 0; from < this.placed.size(); from += Queries.MAX_IN_LIST) {
+            List<Integer> batch = this.placed.subList(from, Math.min(from + Queries.MAX_IN_LIST, this.placed.size()));
+            StringBuilder sql = new StringBuilder("DELETE FROM FoodOrder WHERE orderID IN (");
+            for (int i = 0; i < batch.size(); i++)
+               sql.append(i == 0 ? "?" : ", ?");
+            sql.append(')');
+            this.esql.executeUpdate(new QueryTemplate("bench.deleteOrders", sql.toString()), batch.toArray());
+         } // end for
+      } catch (SQLException e) {
+         System.err.println("Cannot delete the orders placed by checkout: " + e.getMessage());
+      } // end try
+   }// end cleanup
+
+   private static void writeJson(String file, String label, int warmupIterations, int iterations,
+         long iterationMillis, List<Result> results) throws IOException {
+      try (Writer out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+         JsonWriter json = new JsonWriter(out);
+         json.beginObject();
+         json.name("label").value(label);
+         json.name("timestamp").value(Instant.now().toString());
+         json.name("javaVersion").value(System.getProperty("java.version"));
+         json.name("warmupIterations").value(warmupIterations);
+         json.name("iterations").value(iterations);
+         json.name("iterationMillis").value(iterationMillis);
+         json.name("results").beginArray();
+         for (Result result : results) {
+            LatencyHistogram latency = result.latency;
+            json.beginObject();
+            json.name("benchmark").value(result.benchmark.name);
+            json.name("param").value(result.benchmark.param);
+            json.name("scoreUnit").value("ops/s");
+            json.name("score").value(result.score());
+            json.name("scoreStdev").value(result.stdev());
+            json.name("rawData").beginArray();
+            for (double ops : result.opsPerSecond)
+               json.value(ops);
+            json.endArray();
+            json.name("operations").value(latency.getCount());
+            json.name("latencyUnit").value("us");
+            json.name("mean").value(latency.getMeanNanos() / 1e3);
+            json.name("p50").value(latency.percentile(0.50) / 1e3);
+            json.name("p90").value(latency.percentile(0.90) / 1e3);
+            json.name("p99").value(latency.percentile(0.99) / 1e3);
+            json.name("p999").value(latency.percentile(0.999) / 1e3);
+            json.name("max").value(latency.getMaxNanos() / 1e3);
+            json.endObject();
+         } // end for
+         json.endArray();
+         json.endObject();
+         out.write(System.lineSeparator());
+      }
+   }// end writeJson
+
+   private static void writeCsv(String file, String label, List<Result> results) throws IOException {
+      try (Writer out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+         out.write("label,benchmark,param,score,scoreStdev,operations,meanUs,p50Us,p99Us,maxUs\n");
+         for (Result result : results) {
+            LatencyHistogram latency = result.latency;
+            out.write(String.join(",", csvField(label), csvField(result.benchmark.name),
+                  csvField(result.benchmark.param), Double.toString(result.score()), Double.toString(result.stdev()),
+                  Long.toString(latency.getCount()), Double.toString(latency.getMeanNanos() / 1e3),
+                  Double.toString(latency.percentile(0.50) / 1e3), Double.toString(latency.percentile(0.99) / 1e3),
+                  Double.toString(latency.getMaxNanos() / 1e3)));
+            out.write('\n');
+         } // end for
+      }
+   }// end writeCsv
+
+   // quotes a CSV field when it holds a separator or a quote
+   private static String csvField(String value) {
+      if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+         return value;
+      return '"' + value.replace("\"", "\"\"") + '"';
+   }// end csvField
+
+}// end HotPathBench
@@ -0,0 +1,288 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop workload against PizzaStoreService. Each simulated session
+ * runs on its own thread from PizzaStoreService.newSessionExecutor() and
+ * repeats visits with no pause between operations: a visit logs in as a
+ * random user from data/users.csv and then, for a customer, browses the
+ * menu, places an order of one to four items from data/items.csv at an open
+ * store from data/store.csv, reads its recent orders and reads back the new
+ * order; for a driver or manager, it pages through the order history,
+ * reads the recent orders and marks the incomplete ones complete.
+ *
+ * Latencies are recorded per operation after the warm-up and reported as
+ * throughput, mean, p50, p95, p99, p999 and max. Every new order ID is
+ * checked against all others, so an ID handed out twice is reported, as is
+ * an order that cannot be read back by the customer who placed it.
+ *
+ * Usage: bench.sh [-Dload.PROPERTY=VALUE ...] LoadGenerator dbname port user [passwd]
+ *
+ * load.sessions      concurrent sessions (32)
+ * load.customers     percent of visits made by customers (80)
+ * load.seconds       measured seconds (30)
+ * load.warmupSeconds seconds run before measuring (5)
+ * load.data          directory holding the CSV files (data)
+ *
+ * The connection pool is sized as usual with pizzastore.pool.max.
+ *
+ */
+public class LoadGenerator {
+
+   private static final String[] OPERATIONS = { "login", "menu", "placeOrder", "recentOrders", "orderDetail",
+         "history", "updateStatus" };
+
+   // error messages printed while running, the rest are only counted
+   private static final int MAX_ERRORS_SHOWN = 10;
+
+   private final PizzaStoreService service;
+   private final List<String[]> customers;
+   private final List<String[]> staff;
+   private final List<Integer> stores;
+   private final List<String> items;
+   private final int customerPercent;
+
+   private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<String, LatencyHistogram>();
+   private final Map<String, LongAdder> errors = new LinkedHashMap<String, LongAdder>();
+   private final Set<Integer> orderIDs = ConcurrentHashMap.newKeySet();
+   private final LongAdder duplicates = new LongAdder();
+   private final LongAdder missing = new LongAdder();
+   private final AtomicInteger errorsShown = new AtomicInteger();
+
+   private volatile boolean measuring = false;
+   private volatile boolean running = true;
+
+   private LoadGenerator(PizzaStoreService service, Path data, int customerPercent) throws IOException {
+      this.service = service;
+      this.customerPercent = customerPercent;
+      this.customers = new ArrayList<String[]>();
+      this.staff = new ArrayList<String[]>();
+      try (CsvReader csv = new CsvReader(data.resolve("users.csv"))) {
+         int login = csv.column("login"), password = csv.column("password"), role = csv.column("role");
+         String[] record;
+         while ((record = csv.next()) != null) {
+            String[] user = { record[login], record[password] };
+            if (record[role].trim().equalsIgnoreCase("customer"))
+               this.customers.add(user);
+            else
+               this.staff.add(user);
+         } // end while
+      }
+      this.stores = new ArrayList<Integer>();
+      try (CsvReader csv = new CsvReader(data.resolve("store.csv"))) {
+         int storeID = csv.column("storeID"), isOpen = csv.column("isOpen");
+         String[] record;
+         while ((record = csv.next()) != null) {
+            if (record[isOpen].trim().equalsIgnoreCase("yes"))
+               this.stores.add(Integer.valueOf(record[storeID].trim()));
+         } // end while
+      }
+      this.items = new ArrayList<String>();
+      try (CsvReader csv = new CsvReader(data.resolve("items.csv"))) {
+         int itemName = csv.column("itemName");
+         String[] record;
+         while ((record = csv.next()) != null)
+            this.items.add(record[itemName].trim());
+      }
+      if (this.customers.isEmpty() || this.staff.isEmpty() || this.stores.isEmpty() || this.items.isEmpty())
+         throw new IOException("Need at least one customer, one driver or manager, one open store and one item.");
+
+      for (String operation : OPERATIONS) {
+         this.latencies.put(operation, new LatencyHistogram());
+         this.errors.put(operation, new LongAdder());
+      }
+   }// end LoadGenerator
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: bench.sh [-Dload.PROPERTY=VALUE ...] LoadGenerator dbname port user [passwd]");
+         return;
+      } // end if
+      int sessions = Integer.getInteger("load.sessions", 32);
+      int customerPercent = Integer.getInteger("load.customers", 80);
+      int seconds = Integer.getInteger("load.seconds", 30);
+      int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+      Path data = Paths.get(System.getProperty("load.data", "data"));
+      if (!Files.isDirectory(data) && Files.isDirectory(Paths.get("..", "data")))
+         data = Paths.get("..", "data");
+
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      try {
+         LoadGenerator load = new LoadGenerator(esql.getService(), data, customerPercent);
+         System.out.printf("%d sessions, %d%% customer visits, %d s warm-up, %d s measured, pool of %d%n%n",
+               sessions, customerPercent, warmupSeconds, seconds, esql.getPool().getMaxSize());
+         load.run(sessions, warmupSeconds, seconds);
+      } finally {
+         esql.cleanup();
+      } // end try
+   }// end main
+
+   // runs the sessions for the warm-up and the measured period, then reports
+   private void run(int sessions, int warmupSeconds, int seconds) throws InterruptedException {
+      ExecutorService executor = PizzaStoreService.newSessionExecutor();
+      for (int i = 0; i < sessions; ++i)
+         executor.execute(this::session);
+
+      Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+      this.measuring = true;
+      long started = System.nanoTime();
+      Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+      this.measuring = false;
+      double elapsed = (System.nanoTime() - started) / 1e9;
+
+      this.running = false;
+      executor.shutdown();
+      if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+         executor.shutdownNow();
+      report(elapsed);
+   }// end run
+
+   // one simulated session, repeating visits until stopped
+   private void session() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (this.running) {
+         boolean customer = random.nextInt(100) < this.customerPercent;
+         List<String[]> users = customer ? this.customers : this.staff;
+         String[] user = users.get(random.nextInt(users.size()));
+         Session session = time("login", () -> {
+            Session s = this.service.logIn(user[0], user[1]);
+            if (s == null)
+               throw new IllegalStateException("cannot log in as " + user[0]);
+            return s;
+         });
+         if (session == null)
+            continue;
+         if (session.isCustomer())
+            customerVisit(session, random);
+         else
+            staffVisit(session);
+      } // end while
+   }// end session
+
+   private void customerVisit(Session session, ThreadLocalRandom random) {
+      time("menu", () -> this.service.menu(null, random.nextBoolean() ? null : BigDecimal.TEN,
+            random.nextBoolean() ? "ASC" : ""));
+
+      Integer orderID = time("placeOrder", () -> {
+         MenuSnapshot menu = this.service.menu();
+         Cart cart = new Cart(this.stores.get(random.nextInt(this.stores.size())));
+         int lines = 1 + random.nextInt(4);
+         for (int i = 0; i < lines; ++i) {
+            Item item = menu.item(this.items.get(random.nextInt(this.items.size())));
+            if (item != null)
+               cart.add(item, 1 + random.nextInt(3));
+         }
+         if (cart.isEmpty())
+            throw new IllegalStateException("none of the chosen items is on the menu");
+         return this.service.placeOrder(session, cart);
+      });
+      if (orderID != null && !this.orderIDs.add(orderID)) {
+         this.duplicates.increment();
+         showError("placeOrder", "order ID " + orderID + " was handed out twice");
+      }
+
+      time("recentOrders", () -> this.service.recentOrders(session));
+
+      if (orderID != null) {
+         Map<Integer, OrderDetail> details = time("orderDetail",
+               () -> this.service.orderDetails(session, Collections.singletonList(orderID)));
+         if (details != null && details.isEmpty()) {
+            this.missing.increment();
+            showError("orderDetail", "order " + orderID + " cannot be read back by " + session.getLogin());
+         }
+      }
+   }// end customerVisit
+
+   private void staffVisit(Session session) {
+      time("history", () -> {
+         OrderPager pager = this.service.orderHistory(session, OrderFilter.NONE, PizzaStore.ORDER_PAGE_SIZE);
+         pager.first();
+         return pager.hasOlder() ? pager.next() : null;
+      });
+
+      List<FoodOrder> recent = time("recentOrders", () -> this.service.recentOrders(session));
+      if (recent == null)
+         return;
+      List<Integer> incomplete = new ArrayList<Integer>();
+      for (FoodOrder order : recent) {
+         if (OrderStatus.INCOMPLETE.equals(order.orderStatus()))
+            incomplete.add(order.orderID());
+      }
+      if (!incomplete.isEmpty())
+         time("updateStatus", () -> this.service.updateOrderStatus(session, incomplete, OrderStatus.COMPLETE));
+   }// end staffVisit
+
+   private interface Operation<T> {
+      T run() throws Exception;
+   }
+
+   // runs an operation, recording its latency or counting its failure
+   private <T> T time(String operation, Operation<T> work) {
+      long start = System.nanoTime();
+      try {
+         T result = work.run();
+         if (this.measuring)
+            this.latencies.get(operation).record(System.nanoTime() - start);
+         return result;
+      } catch (Exception e) {
+         if (this.measuring)
+            this.errors.get(operation).increment();
+         showError(operation, e.getMessage());
+         return null;
+      }
+   }// end time
+
+   private void showError(String operation, String message) {
+      if (this.errorsShown.incrementAndGet() <= MAX_ERRORS_SHOWN)
+         System.err.println(operation + ": " + message);
+   }// end showError
+
+   private void report(double seconds) {
+      System.out.printf("%-13s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "ops/s",
+            "mean ms", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms");
+      long total = 0;
+      for (String operation : OPERATIONS) {
+         LatencyHistogram histogram = this.latencies.get(operation);
+         long count = histogram.getCount();
+         total += count;
+         System.out.printf("%-13s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", operation, count,
+               this.errors.get(operation).sum(), count / seconds, histogram.getMeanNanos() / 1e6,
+               histogram.percentile(0.50) / 1e6, histogram.percentile(0.95) / 1e6,
+               histogram.percentile(0.99) / 1e6, histogram.percentile(0.999) / 1e6,
+               histogram.getMaxNanos() / 1e6);
+      } // end for
+      System.out.printf("%n%d operations in %.1f s (%.1f/s), %d orders placed including warm-up%n", total, seconds, total / seconds,
+            this.orderIDs.size());
+      System.out.printf("duplicate order IDs: %d, orders not readable by their customer: %d%n",
+            this.duplicates.sum(), this.missing.sum());
+   }// end report
+
+}// end LoadGenerator
@@ -0,0 +1,116 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the viewMenu filters answered by MenuIndex with the same filters
+ * run as the Queries.menu SQL templates, for all twelve combinations of type
+ * filter, price filter and price order. The type is the first on the menu
+ * and the price cut-off is the median price. Each path is warmed up and then
+ * timed over a fixed number of calls; the results are printed per
+ * combination as the mean time per call.
+ *
+ * Usage: bench.sh MenuQueryBench dbname port user [passwd]
+ *
+ */
+public class MenuQueryBench {
+
+   private static final int MEMORY_WARMUP = 200000;
+   private static final int MEMORY_CALLS = 1000000;
+   private static final int SQL_WARMUP = 200;
+   private static final int SQL_CALLS = 2000;
+
+   // keeps the JIT from dropping the measured calls
+   private static long sink;
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: bench.sh MenuQueryBench dbname port user [passwd]");
+         return;
+      } // end if
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      try {
+         MenuSnapshot menu = esql.getMenu().get();
+         List<Item> items = menu.getItems();
+         if (items.isEmpty()) {
+            System.err.println("The menu is empty.");
+            return;
+         } // end if
+         String type = items.get(0).typeOfItem().trim();
+         List<Item> byPrice = menu.select(null, null, "ASC");
+         BigDecimal maxPrice = byPrice.get(byPrice.size() / 2).price();
+
+         System.out.printf("%d items, type '%s', max price %s%n%n", items.size(), type, maxPrice);
+         System.out.printf("%-8s %-9s %-5s %6s %14s %14s%n", "type", "price", "sort", "rows", "memory ns/op",
+               "sql us/op");
+         for (boolean byType : new boolean[] { false, true }) {
+            for (boolean byPriceFilter : new boolean[] { false, true }) {
+               for (String sortOrder : new String[] { "", "ASC", "DESC" }) {
+                  String t = byType ? type : null;
+                  BigDecimal p = byPriceFilter ? maxPrice : null;
+                  int rows = menu.select(t, p, sortOrder).size();
+                  double memoryNanos = timeMemory(menu, t, p, sortOrder);
+                  double sqlNanos = timeSql(esql, t, p, sortOrder);
+                  System.out.printf("%-8s %-9s %-5s %6d %14.1f %14.1f%n", byType ? type : "-",
+                        byPriceFilter ? "<= " + maxPrice : "-", sortOrder.isEmpty() ? "-" : sortOrder, rows,
+                        memoryNanos, sqlNanos / 1000.0);
+               } // end for
+            } // end for
+         } // end for
+         if (sink == 42)
+            System.out.println();
+      } finally {
+         esql.cleanup();
+      } // end try
+   }// end main
+
+   // mean nanoseconds per in-memory selection, reading every selected item
+   private static double timeMemory(MenuSnapshot menu, String type, BigDecimal maxPrice, String sortOrder) {
+      for (int i = 0; i < MEMORY_WARMUP; i++)
+         sink += consume(menu.select(type, maxPrice, sortOrder));
+      long start = System.nanoTime();
+      for (int i = 0; i < MEMORY_CALLS; i++)
+         sink += consume(menu.select(type, maxPrice, sortOrder));
+      return (System.nanoTime() - start) / (double) MEMORY_CALLS;
+   }// end timeMemory
+
+   // mean nanoseconds per query through the equivalent SQL template
+   private static double timeSql(PizzaStore esql, String type, BigDecimal maxPrice, String sortOrder)
+         throws Exception {
+      List<Object> params = new ArrayList<Object>();
+      if (type != null)
+         params.add(type);
+      if (maxPrice != null)
+         params.add(maxPrice);
+      QueryTemplate query = Queries.menu(type != null, maxPrice != null, sortOrder);
+      Object[] bound = params.toArray();
+
+      for (int i = 0; i < SQL_WARMUP; i++)
+         sink += consume(esql.queryList(query, RowMappers.ITEM, bound));
+      long start = System.nanoTime();
+      for (int i = 0; i < SQL_CALLS; i++)
+         sink += consume(esql.queryList(query, RowMappers.ITEM, bound));
+      return (System.nanoTime() - start) / (double) SQL_CALLS;
+   }// end timeSql
+
+   private static long consume(List<Item> items) {
+      long h = 0;
+      for (Item item : items)
+         h += item.itemName().length();
+      return h;
+   }// end consume
+
+}// end MenuQueryBench
@@ -0,0 +1,199 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Concurrency check for order ID allocation. Thousands of orders are placed
+ * at once through PizzaStoreService.placeOrder, the path the console and
+ * the HTTP API use, by a pool of threads spread over several PizzaStore
+ * instances. Each instance has its own OrderIdAllocator and connection
+ * pool, so they stand in for separate processes leasing blocks from the
+ * same sequence.
+ *
+ * The check fails when any order fails, in particular on the FoodOrder
+ * primary key, when two orders get the same ID, or when the IDs of one
+ * instance do not fill whole blocks of OrderIdAllocator.BLOCK_SIZE
+ * consecutive IDs. The number of orders is rounded up so every instance
+ * uses up its blocks. The orders placed are deleted afterwards, their lines
+ * go with them. The exit status is 1 when the check fails.
+ *
+ * Usage: bench.sh OrderIdCheck dbname port user [passwd]
+ *
+ * Options, as system properties:
+ *   check.orders   orders placed (default 5000)
+ *   check.threads  threads placing them (default 64)
+ *   check.stores   PizzaStore instances the threads are spread over
+ *                  (default 2)
+ *
+ */
+public class OrderIdCheck {
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: bench.sh OrderIdCheck dbname port user [passwd]");
+         return;
+      } // end if
+      int threads = Integer.getInteger("check.threads", 64);
+      int storeCount = Integer.getInteger("check.stores", 2);
+      int orders = Integer.getInteger("check.orders", 5000);
+      if (threads < 1 || storeCount < 1 || orders < 1) {
+         System.err.println("check.orders, check.threads and check.stores must be positive");
+         return;
+      } // end if
+      // whole blocks per instance, so every block leased is used up
+      int perStore = (orders + storeCount - 1) / storeCount;
+      perStore = (perStore + OrderIdAllocator.BLOCK_SIZE - 1) / OrderIdAllocator.BLOCK_SIZE
+            * OrderIdAllocator.BLOCK_SIZE;
+
+      Class.forName("org.postgresql.Driver");
+      PizzaStore[] stores = new PizzaStore[storeCount];
+      for (int i = 0; i < storeCount; ++i)
+         stores[i] = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      List<Integer> placed = Collections.synchronizedList(new ArrayList<Integer>());
+      List<String> problems = new ArrayList<String>();
+      long start = System.nanoTime();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         List<List<String>> customer = stores[0].executeQueryAndReturnResult(new QueryTemplate("check.customer",
+               "SELECT login, password FROM Users WHERE lower(trim(role)) = 'customer' ORDER BY login LIMIT 1"));
+         if (customer.isEmpty())
+            throw new IllegalStateException("Need a customer, load the data first");
+         Session[] sessions = new Session[storeCount];
+         for (int i = 0; i < storeCount; ++i) {
+            sessions[i] = stores[i].getService().logIn(customer.get(0).get(0).trim(),
+                  customer.get(0).get(1).trim());
+            if (sessions[i] == null)
+               throw new IllegalStateException("Cannot log in as " + customer.get(0).get(0).trim());
+         } // end for
+         List<Store> open = stores[0].getService().stores().getOpenStores();
+         List<Item> items = stores[0].getService().menu().getItems();
+         if (open.isEmpty() || items.isEmpty())
+            throw new IllegalStateException("Need an open store and an item");
+         int storeID = open.get(0).storeID();
+         Item item = items.get(0);
+
+         CountDownLatch ready = new CountDownLatch(1);
+         List<List<Future<Integer>>> results = new ArrayList<List<Future<Integer>>>();
+         for (int s = 0; s < storeCount; ++s) {
+            final PizzaStoreService service = stores[s].getService();
+            final Session session = sessions[s];
+            List<Future<Integer>> storeResults = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < perStore; ++i) {
+               storeResults.add(executor.submit((Callable<Integer>) () -> {
+                  ready.await();
+                  Cart cart = new Cart(storeID);
+                  cart.add(item, 1);
+                  int orderID = service.placeOrder(session, cart);
+                  placed.add(orderID);
+                  return orderID;
+               }));
+            } // end for
+            results.add(storeResults);
+         } // end for
+         ready.countDown();
+
+         int collisions = 0;
+         int failures = 0;
+         String firstFailure = null;
+         for (int s = 0; s < storeCount; ++s) {
+            List<Integer> ids = new ArrayList<Integer>();
+            for (Future<Integer> result : results.get(s)) {
+               try {
+                  ids.add(result.get());
+               } catch (ExecutionException e) {
+                  Throwable cause = e.getCause();
+                  String message = String.valueOf(cause.getMessage());
+                  if (cause instanceof SQLException && message.toLowerCase().contains("foodorder_pkey"))
+                     ++collisions;
+                  else
+                     ++failures;
+                  if (firstFailure == null)
+                     firstFailure = message;
+               } // end try
+            } // end for
+            // a failed order leaves its ID unused, so blocks are only whole
+            // when every order went through
+            String gap = ids.size() == perStore ? checkBlocks(ids) : null;
+            if (gap != null)
+               problems.add("instance " + (s + 1) + ": " + gap);
+         } // end for
+         if (collisions > 0)
+            problems.add(collisions + " orders failed on foodorder_pkey");
+         if (failures > 0)
+            problems.add(failures + " orders failed otherwise, first: " + firstFailure);
+         Set<Integer> distinct = new HashSet<Integer>(placed);
+         if (distinct.size() != placed.size())
+            problems.add((placed.size() - distinct.size()) + " order IDs were handed out twice");
+      } finally {
+         executor.shutdownNow();
+         synchronized (placed) {
+            delete(stores[0], new ArrayList<Integer>(placed));
+         }
+         for (PizzaStore store : stores)
+            store.cleanup();
+      } // end try
+
+      System.out.printf("%d orders on %d threads over %d instances in %.1f ms: %s%n", perStore * storeCount,
+            threads, storeCount, (System.nanoTime() - start) / 1e6,
+            problems.isEmpty() ? "ok, " + placed.size() + " distinct IDs" : "FAIL");
+      for (String problem : problems)
+         System.out.println("  " + problem);
+      if (!problems.isEmpty())
+         System.exit(1);
+   }// end main
+
+   // returns where the IDs of one allocator do not form whole blocks, or
+   // null when they do
+   private static String checkBlocks(List<Integer> ids) {
+      int[] sorted = new int[ids.size()];
+      for (int i = 0; i < sorted.length; ++i)
+         sorted[i] = ids.get(i);
+      Arrays.sort(sorted);
+      // blocks are disjoint and each is used up, so in sorted order every run
+      // of BLOCK_SIZE IDs must be one block of consecutive IDs
+      for (int from = 0; from < sorted.length; from += OrderIdAllocator.BLOCK_SIZE)
+         for (int i = from + 1; i < from + OrderIdAllocator.BLOCK_SIZE; ++i)
+            if (sorted[i] != sorted[i - 1] + 1)
+               return "gap between " + sorted[i - 1] + " and " + sorted[i] + " inside a block";
+      return null;
+   }// end checkBlocks
+
+   // deletes the orders placed by the check, their lines go with them
+   private static void delete(PizzaStore esql, List<Integer> placed) {
+      try {
+         for (int from = 0; from < placed.size(); from += Queries.MAX_IN_LIST) {
+            List<Integer> batch = placed.subList(from, Math.min(from + Queries.MAX_IN_LIST, placed.size()));
+            StringBuilder sql = new StringBuilder("DELETE FROM FoodOrder WHERE orderID IN (");
+            for (int i = 0; i < batch.size(); i++)
+               sql.append(i == 0 ? "?" : ", ?");
+            sql.append(')');
+            esql.executeUpdate(new QueryTemplate("check.deleteOrders", sql.toString()), batch.toArray());
+         } // end for
+      } catch (SQLException e) {
+         System.err.println("Cannot delete the orders placed by the check: " + e.getMessage());
+      } // end try
+   }// end delete
+
+}// end OrderIdCheck
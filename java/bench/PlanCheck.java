@@ -0,0 +1,276 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plan regression check for every query template. Each template in
+ * Queries.all(), plus the generated order page and order line variants, is
+ * run through EXPLAIN (FORMAT JSON) with sample parameters taken from the
+ * database. The check fails when a template gets a sequential scan on a
+ * table it is expected to reach through an index, or a sort when its order
+ * is expected to come from an index.
+ *
+ * Every template must have an expectation below, even if only an exemption
+ * with its reason, so a new template cannot slip through unchecked. Run it
+ * against a database loaded by create_db.sh and scaled up by scale_up.sql;
+ * on the stock data the planner rightly prefers sequential scans of the
+ * small tables. The exit status is 1 when any template fails.
+ *
+ * Usage: bench.sh PlanCheck dbname port user [passwd]
+ *
+ */
+public class PlanCheck {
+
+   // what the plan of one template must look like
+   private static final class Expectation {
+      final Set<String> indexed;
+      final boolean ordered;
+      final String exemption;
+
+      Expectation(Set<String> indexed, boolean ordered, String exemption) {
+         this.indexed = indexed;
+         this.ordered = ordered;
+         this.exemption = exemption;
+      }
+   }// end Expectation
+
+   private static final Pattern NODE = Pattern.compile("\"(Node Type|Relation Name)\": \"([^\"]*)\"");
+
+   // expectations of the registered templates, by name
+   private static final Map<String, Expectation> EXPECTED = new HashMap<String, Expectation>();
+
+   static {
+      for (String name : new String[] { "user.login", "user.byLogin", "user.exists", "user.setPassword",
+            "user.setPhone", "user.setFavorites", "user.setRole" })
+         EXPECTED.put(name, indexed("users"));
+      EXPECTED.put("order.setStatusByStore", indexed("foodorder"));
+      EXPECTED.put("order.detail", indexed("foodorder", "itemsinorder"));
+      EXPECTED.put("order.detailForLogin", indexed("foodorder", "itemsinorder"));
+      EXPECTED.put("order.recent.customer", ordered("foodorder"));
+      EXPECTED.put("order.recent.all", ordered("foodorder"));
+
+      for (String name : new String[] { "user.insert", "item.insert", "order.insert", "orderLine.insert" })
+         EXPECTED.put(name, exempt("single-row insert"));
+      for (String name : new String[] { "menu.all", "menu.all.asc", "menu.all.desc", "menu.type", "menu.type.asc",
+            "menu.type.desc", "menu.price", "menu.price.asc", "menu.price.desc", "menu.typePrice",
+            "menu.typePrice.asc", "menu.typePrice.desc", "menu.byTypeAndName", "menu.fingerprint" })
+         EXPECTED.put(name, exempt("menu is served from MenuCache"));
+      for (String name : new String[] { "item.setIngredients", "item.setType", "item.setPrice",
+            "item.setDescription" })
+         EXPECTED.put(name, exempt("Items is small enough to scan"));
+      EXPECTED.put("store.all", exempt("stores are served from StoreCache"));
+      EXPECTED.put("store.fingerprint", exempt("stores are served from StoreCache"));
+      EXPECTED.put("order.idBlock", exempt("sequence"));
+      EXPECTED.put("sequence.currval", exempt("sequence"));
+      EXPECTED.put("pool.validate", exempt("no table"));
+   }
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: bench.sh PlanCheck dbname port user [passwd]");
+         return;
+      } // end if
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      int failures = 0;
+      try {
+         Map<String, Object[]> samples = samples(esql);
+         List<QueryTemplate> templates = new ArrayList<QueryTemplate>(Queries.all());
+         for (boolean byStore : new boolean[] { false, true })
+            for (boolean byStatus : new boolean[] { false, true })
+               for (boolean byLogin : new boolean[] { false, true })
+                  for (int position : new int[] { Queries.PAGE_FIRST, Queries.PAGE_OLDER, Queries.PAGE_NEWER })
+                     templates.add(Queries.orderPage(byStore, byStatus, byLogin, position));
+         templates.add(Queries.orderLineInsert(3));
+         templates.add(Queries.orderDetails(3, false));
+         templates.add(Queries.orderDetails(3, true));
+         templates.add(Queries.orderSetStatus(3));
+
+         System.out.println("");
+         for (QueryTemplate template : templates) {
+            String problem;
+            try {
+               problem = check(esql, template, samples);
+            } catch (java.sql.SQLException e) {
+               problem = "EXPLAIN failed: " + e.getMessage();
+            } // end try
+            Expectation expected = expectation(template.getName());
+            String status = problem != null ? "FAIL" : expected.exemption != null ? "skip" : "ok";
+            if (problem != null)
+               failures++;
+            System.out.printf("%-4s %-36s %s%n", status, template.getName(),
+                  problem != null ? problem : expected.exemption != null ? expected.exemption : "");
+         } // end for
+         System.out.println("");
+         System.out.println(templates.size() + " templates, " + failures + " failed");
+      } finally {
+         esql.cleanup();
+      } // end try
+      if (failures > 0)
+         System.exit(1);
+   }// end main
+
+   // returns why the template's plan is wrong, or null when it is fine
+   private static String check(PizzaStore esql, QueryTemplate template, Map<String, Object[]> samples)
+         throws Exception {
+      Expectation expected = expectation(template.getName());
+      if (expected == null)
+         return "no expectation, add one to PlanCheck";
+      Object[] params = samples.get(template.getName());
+      if (params == null)
+         return "no sample parameters, add them to PlanCheck";
+
+      QueryTemplate explain = new QueryTemplate("explain." + template.getName(),
+            "EXPLAIN (FORMAT JSON) " + template.getSql());
+      String plan = String.join("\n", esql.queryList(explain, RowMappers.STRING, params));
+
+      // a node's own relation comes before the next node's type
+      List<String> nodes = new ArrayList<String>();
+      List<String> problems = new ArrayList<String>();
+      String nodeType = null;
+      Matcher m = NODE.matcher(plan);
+      while (m.find()) {
+         if (m.group(1).equals("Node Type")) {
+            nodeType = m.group(2);
+            nodes.add(nodeType);
+            if (expected.ordered && nodeType.endsWith("Sort"))
+               problems.add(nodeType + " where an index order was expected");
+         } else {
+            String relation = m.group(2).toLowerCase(Locale.ROOT);
+            nodes.set(nodes.size() - 1, nodeType + "(" + relation + ")");
+            if ("Seq Scan".equals(nodeType) && expected.indexed.contains(relation))
+               problems.add("Seq Scan on " + relation);
+         } // end if
+      } // end while
+
+      // exempt templates are still planned, so broken SQL is caught
+      if (expected.exemption != null)
+         return null;
+      return problems.isEmpty() ? null : String.join(", ", problems) + " in " + String.join(" > ", nodes);
+   }// end check
+
+   private static Expectation expectation(String name) {
+      if (name.startsWith("order.page."))
+         return ordered("foodorder");
+      if (name.startsWith("order.details.x") || name.startsWith("order.detailsForLogin.x"))
+         return indexed("foodorder", "itemsinorder");
+      if (name.startsWith("order.setStatus.x"))
+         return indexed("foodorder");
+      if (name.startsWith("orderLine.insert.x"))
+         return exempt("multi-row insert");
+      return EXPECTED.get(name);
+   }// end expectation
+
+   // sample parameters for every template, from rows already loaded
+   private static Map<String, Object[]> samples(PizzaStore esql) throws Exception {
+      FoodOrder order = esql.queryOne(new QueryTemplate("plan.sampleOrder",
+            "SELECT orderID, login, storeID, totalPrice, orderTimestamp, orderStatus FROM FoodOrder "
+                  + "ORDER BY orderID DESC LIMIT 1"),
+            RowMappers.FOOD_ORDER);
+      if (order == null)
+         throw new IllegalStateException("FoodOrder is empty, load the data first");
+      Item item = esql.getMenu().get().getItems().get(0);
+      String login = order.login();
+      Integer storeID = order.storeID();
+      Integer orderID = order.orderID();
+      Timestamp at = order.orderTimestamp();
+      String status = order.orderStatus();
+      Integer limit = 21;
+
+      Map<String, Object[]> samples = new HashMap<String, Object[]>();
+      samples.put("user.insert", new Object[] { "plan_check", "password", "customer", "000-000-0000" });
+      samples.put("user.login", new Object[] { login, "password" });
+      samples.put("user.byLogin", new Object[] { login });
+      samples.put("user.exists", new Object[] { login });
+      for (String name : new String[] { "user.setPassword", "user.setPhone", "user.setFavorites", "user.setRole" })
+         samples.put(name, new Object[] { "value", login });
+
+      for (String name : new String[] { "menu.all", "menu.all.asc", "menu.all.desc", "menu.byTypeAndName",
+            "menu.fingerprint", "store.all", "store.fingerprint", "order.idBlock", "pool.validate" })
+         samples.put(name, new Object[0]);
+      for (String name : new String[] { "menu.type", "menu.type.asc", "menu.type.desc" })
+         samples.put(name, new Object[] { item.typeOfItem() });
+      for (String name : new String[] { "menu.price", "menu.price.asc", "menu.price.desc" })
+         samples.put(name, new Object[] { item.price() });
+      for (String name : new String[] { "menu.typePrice", "menu.typePrice.asc", "menu.typePrice.desc" })
+         samples.put(name, new Object[] { item.typeOfItem(), item.price() });
+      samples.put("item.insert", new Object[] { "plan check", "x", item.typeOfItem(), item.price(), null });
+      for (String name : new String[] { "item.setIngredients", "item.setType", "item.setDescription" })
+         samples.put(name, new Object[] { "value", item.itemName() });
+      samples.put("item.setPrice", new Object[] { item.price(), item.itemName() });
+
+      samples.put("order.insert", new Object[] { orderID + 1, login, storeID });
+      samples.put("order.recent.customer", new Object[] { login });
+      samples.put("order.recent.all", new Object[0]);
+      samples.put("order.detail", new Object[] { orderID });
+      samples.put("order.detailForLogin", new Object[] { orderID, login });
+      samples.put(Queries.orderDetails(3, false).getName(),
+            new Object[] { orderID, orderID - 1, orderID - 2, orderID - 2 });
+      samples.put(Queries.orderDetails(3, true).getName(),
+            new Object[] { orderID, orderID - 1, orderID - 2, orderID - 2, login });
+      samples.put("order.setStatusByStore", new Object[] { OrderStatus.COMPLETE, storeID, OrderStatus.INCOMPLETE });
+      samples.put(Queries.orderSetStatus(3).getName(), new Object[] { OrderStatus.COMPLETE, orderID, orderID - 1,
+            orderID - 2, orderID - 2, OrderStatus.COMPLETE });
+      samples.put("orderLine.insert", new Object[] { orderID, item.itemName(), 1 });
+      samples.put("sequence.currval", new Object[] { "FoodOrder_orderID_seq" });
+
+      Object[] lines = new Object[9];
+      for (int i = 0; i < 3; i++) {
+         lines[i * 3] = orderID + 1;
+         lines[i * 3 + 1] = item.itemName();
+         lines[i * 3 + 2] = 1;
+      } // end for
+      samples.put(Queries.orderLineInsert(3).getName(), lines);
+
+      for (boolean byStore : new boolean[] { false, true })
+         for (boolean byStatus : new boolean[] { false, true })
+            for (boolean byLogin : new boolean[] { false, true })
+               for (int position : new int[] { Queries.PAGE_FIRST, Queries.PAGE_OLDER, Queries.PAGE_NEWER }) {
+                  List<Object> params = new ArrayList<Object>();
+                  if (byStore)
+                     params.add(storeID);
+                  if (byStatus)
+                     params.add(status);
+                  if (byLogin)
+                     params.add(login);
+                  if (position != Queries.PAGE_FIRST)
+                     params.addAll(Arrays.asList(at, orderID));
+                  params.add(limit);
+                  samples.put(Queries.orderPage(byStore, byStatus, byLogin, position).getName(), params.toArray());
+               } // end for
+      return samples;
+   }// end samples
+
+   private static Expectation indexed(String... tables) {
+      return new Expectation(new HashSet<String>(Arrays.asList(tables)), false, null);
+   }
+
+   private static Expectation ordered(String... tables) {
+      return new Expectation(new HashSet<String>(Arrays.asList(tables)), true, null);
+   }
+
+   private static Expectation exempt(String reason) {
+      return new Expectation(new HashSet<String>(), false, reason);
+   }
+
+}// end PlanCheck
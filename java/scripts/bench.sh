@@ -0,0 +1,14 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# usage: bench.sh BenchmarkClass [args...]
+if [ -z "$1" ]; then
+   echo "usage: $0 BenchmarkClass [args...]"
+   exit 1
+fi
+
+# compile the java program together with the benchmarks
+javac -d $DIR/../classes $DIR/../src/*.java $DIR/../bench/*.java || exit 1
+
+# run the benchmark
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar "$@"
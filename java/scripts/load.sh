@@ -0,0 +1,13 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# usage: load.sh [-Dpizzastore.load.PROPERTY=VALUE ...]
+# loads data/*.csv into the tables made by create_tables.sql, see BulkLoader
+
+# compile the java program
+javac -d $DIR/../classes $DIR/../src/*.java || exit 1
+
+# load the CSV files
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar -Dpizzastore.load.data=$DIR/../../data \
+   -Dpizzastore.load.indexes=$DIR/../../sql/src/create_indexes.sql "$@" \
+   BulkLoader $USER"_project_phase_3_DB" $PGPORT $USER
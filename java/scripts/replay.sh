@@ -0,0 +1,15 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# usage: replay.sh <script file>|- ...
+# several files are replayed at the same time, each as its own session
+if [ -z "$1" ]; then
+   echo "usage: $0 <script file>|- ..."
+   exit 1
+fi
+
+# compile the java program
+javac -d $DIR/../classes $DIR/../src/*.java || exit 1
+
+# run the command files headless against the database
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar PizzaStore $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# usage: serve.sh [http port]
+
+# compile the java program
+javac -d $DIR/../classes $DIR/../src/*.java || exit 1
+
+# serve the HTTP API on localhost
+java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar HttpApi $USER"_project_phase_3_DB" $PGPORT $USER $1
@@ -0,0 +1,381 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads the CSV files under data/ into empty tables made by
+ * create_tables.sql. Tables are loaded in foreign key order, Users, Items
+ * and Store side by side, then FoodOrder, then ItemsInOrder. Each file is
+ * streamed through CsvReader by one thread and cut into batches of
+ * pizzastore.load.batchRows rows, each written as one multi-row INSERT by a
+ * pool of writer threads on their own pooled connections.
+ *
+ * The indexes of create_indexes.sql are dropped before the load and built
+ * afterwards, side by side, so rows are not indexed one at a time. They are
+ * built again when the load fails too, so a failed load does not leave the
+ * tables without them. The user
+ * triggers on ItemsInOrder are disabled while its rows are loaded, since
+ * foodorder.csv already holds the order totals, and the FoodOrder ID
+ * sequence is moved past the loaded orders. Rows per second are reported
+ * per table.
+ *
+ * Unquoted empty fields are loaded as NULL and quoted ones ("") as empty
+ * strings, as COPY does. An empty field is NULL in a column that is not text
+ * either way.
+ *
+ * Usage: java [-Dpizzastore.load.PROPERTY=VALUE ...] BulkLoader dbname port user [passwd]
+ *
+ * pizzastore.load.data      directory holding the CSV files (data)
+ * pizzastore.load.indexes   the index script (sql/src/create_indexes.sql
+ *                           next to the data directory)
+ * pizzastore.load.threads   writer threads (4)
+ * pizzastore.load.batchRows rows per INSERT (500)
+ * pizzastore.load.truncate  empty the tables first instead of refusing to
+ *                           load into tables that hold rows (false)
+ *
+ * The connection pool is sized as usual with pizzastore.pool.max, which
+ * should be at least the number of writer threads.
+ *
+ */
+public class BulkLoader {
+
+   // how the text of a field is turned into a value
+   private enum Type {
+      TEXT, INTEGER, DECIMAL, DOUBLE, TIMESTAMP
+   }
+
+   private static final class Table {
+      final String name;
+      final String file;
+      final String[] columns;
+      final Type[] types;
+
+      Table(String name, String file, String[] columns, Type[] types) {
+         this.name = name;
+         this.file = file;
+         this.columns = columns;
+         this.types = types;
+      }
+   }// end Table
+
+   private static final Table USERS = new Table("Users", "users.csv",
+         new String[] { "login", "password", "role", "favoriteItems", "phoneNum" },
+         new Type[] { Type.TEXT, Type.TEXT, Type.TEXT, Type.TEXT, Type.TEXT });
+   private static final Table ITEMS = new Table("Items", "items.csv",
+         new String[] { "itemName", "ingredients", "typeOfItem", "price", "description" },
+         new Type[] { Type.TEXT, Type.TEXT, Type.TEXT, Type.DECIMAL, Type.TEXT });
+   private static final Table STORE = new Table("Store", "store.csv",
+         new String[] { "storeID", "address", "city", "state", "isOpen", "reviewScore" },
+         new Type[] { Type.INTEGER, Type.TEXT, Type.TEXT, Type.TEXT, Type.TEXT, Type.DOUBLE });
+   private static final Table FOOD_ORDER = new Table("FoodOrder", "foodorder.csv",
+         new String[] { "orderID", "login", "storeID", "totalPrice", "orderTimestamp", "orderStatus" },
+         new Type[] { Type.INTEGER, Type.TEXT, Type.INTEGER, Type.DECIMAL, Type.TIMESTAMP, Type.TEXT });
+   private static final Table ITEMS_IN_ORDER = new Table("ItemsInOrder", "itemsinorder.csv",
+         new String[] { "orderID", "itemName", "quantity" },
+         new Type[] { Type.INTEGER, Type.TEXT, Type.INTEGER });
+
+   // tables in foreign key order, the tables of one level load side by side
+   private static final Table[][] LEVELS = { { USERS, ITEMS, STORE }, { FOOD_ORDER }, { ITEMS_IN_ORDER } };
+
+   private static final QueryTemplate ORDER_SEQUENCE = new QueryTemplate("load.orderSequence",
+         "SELECT setval('FoodOrder_orderID_seq', (SELECT COALESCE(MAX(orderID), 9999) + 1 FROM FoodOrder), false)");
+
+   // multi-row INSERT templates, by table and number of rows
+   private static final ConcurrentHashMap<String, QueryTemplate> INSERTS =
+         new ConcurrentHashMap<String, QueryTemplate>();
+
+   private final PizzaStore esql;
+   private final Path data;
+   private final int batchRows;
+   private final int threads;
+   private final ExecutorService writers;
+
+   private BulkLoader(PizzaStore esql, Path data, int threads, int batchRows) {
+      this.esql = esql;
+      this.data = data;
+      this.threads = threads;
+      this.batchRows = batchRows;
+      this.writers = Executors.newFixedThreadPool(threads, r -> {
+         Thread t = new Thread(r, "pizzastore-load");
+         t.setDaemon(true);
+         return t;
+      });
+   }// end BulkLoader
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: java [-Dpizzastore.load.PROPERTY=VALUE ...] " + BulkLoader.class.getName()
+               + " <dbname> <port> <user> [<passwd>]");
+         System.exit(1);
+      } // end if
+      Path data = Paths.get(System.getProperty("pizzastore.load.data", "data"));
+      for (String parent : new String[] { "..", "../.." }) {
+         if (!Files.isDirectory(data) && Files.isDirectory(Paths.get(parent, "data")))
+            data = Paths.get(parent, "data");
+      }
+      Path indexes = Paths.get(System.getProperty("pizzastore.load.indexes",
+            data.toAbsolutePath().resolveSibling("sql/src/create_indexes.sql").toString()));
+      int threads = Math.max(1, Integer.getInteger("pizzastore.load.threads", 4));
+      int batchRows = Math.max(1, Integer.getInteger("pizzastore.load.batchRows", 500));
+      boolean truncate = Boolean.getBoolean("pizzastore.load.truncate");
+
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], args.length > 3 ? args[3] : "");
+      BulkLoader loader = new BulkLoader(esql, data, threads, batchRows);
+      int status = 0;
+      try {
+         loader.run(indexes, truncate);
+      } catch (Exception e) {
+         System.err.println("Load failed: " + e.getMessage());
+         status = 1;
+      } finally {
+         loader.writers.shutdownNow();
+         esql.cleanup();
+      } // end try
+      System.exit(status);
+   }// end main
+
+   // loads every level, with the indexes dropped around the load
+   private void run(Path indexes, boolean truncate) throws Exception {
+      List<String> indexScript = statements(indexes);
+      prepare(truncate);
+      System.out.printf("Loading %s with %d writer threads, %d rows per INSERT%n%n", this.data, this.threads,
+            this.batchRows);
+
+      long started = System.nanoTime();
+      long total = 0;
+      boolean loaded = false;
+      ExecutorService readers = Executors.newCachedThreadPool();
+      try {
+         for (String statement : indexScript) {
+            if (statement.toUpperCase().startsWith("DROP"))
+               this.esql.executeUpdate(statement);
+         }
+         System.out.printf("%-14s %10s %10s %12s%n", "table", "rows", "seconds", "rows/s");
+         for (Table[] level : LEVELS) {
+            List<Future<Long>> loads = new ArrayList<Future<Long>>();
+            for (Table table : level)
+               loads.add(readers.submit(() -> load(table)));
+            for (Future<Long> load : loads)
+               total += result(load);
+            if (level[0] == FOOD_ORDER)
+               this.esql.queryOne(ORDER_SEQUENCE, RowMappers.LONG);
+         } // end for
+         loaded = true;
+      } finally {
+         readers.shutdownNow();
+         try {
+            createIndexes(indexScript);
+         } catch (Exception e) {
+            // the load error, if any, is the one reported
+            if (loaded)
+               throw e;
+            System.err.println("The indexes could not be rebuilt after the failed load: " + e.getMessage());
+            System.err.println("Restore them by running " + indexes + " with psql.");
+         } // end try
+      } // end try
+
+      double seconds = (System.nanoTime() - started) / 1e9;
+      System.out.printf("%-14s %10d %10.2f %12.1f%n", "total", total, seconds, total / seconds);
+   }// end run
+
+   // builds the indexes of the script side by side
+   private void createIndexes(List<String> indexScript) throws Exception {
+      // the DROP statements ran before the load, only the CREATEs are left
+      long indexStart = System.nanoTime();
+      List<Future<Long>> builds = new ArrayList<Future<Long>>();
+      for (String statement : indexScript) {
+         if (!statement.toUpperCase().startsWith("DROP"))
+            builds.add(this.writers.submit(() -> {
+               this.esql.executeUpdate(statement);
+               return 0L;
+            }));
+      }
+      for (Future<Long> build : builds)
+         result(build);
+      System.out.printf("%-14s %10s %10.2f%n", "indexes", builds.size(), (System.nanoTime() - indexStart) / 1e9);
+   }// end createIndexes
+
+   // checks the tables are empty, or empties them when asked to
+   private void prepare(boolean truncate) throws SQLException {
+      if (truncate) {
+         this.esql.executeUpdate("TRUNCATE Users, Items, Store, FoodOrder, ItemsInOrder");
+         return;
+      }
+      for (Table[] level : LEVELS) {
+         for (Table table : level) {
+            boolean hasRows = this.esql.exists(
+                  new QueryTemplate("load.hasRows", "SELECT EXISTS (SELECT 1 FROM " + table.name + ")"));
+            if (hasRows)
+               throw new IllegalStateException(table.name
+                     + " already holds rows, run create_tables.sql or set -Dpizzastore.load.truncate=true");
+         } // end for
+      } // end for
+   }// end prepare
+
+   // streams one file into its table, returning the rows loaded
+   private long load(Table table) throws Exception {
+      long start = System.nanoTime();
+      boolean triggersOff = table == ITEMS_IN_ORDER;
+      if (triggersOff)
+         this.esql.executeUpdate("ALTER TABLE ItemsInOrder DISABLE TRIGGER USER");
+      // bounds the batches read ahead of the writers
+      Semaphore inFlight = new Semaphore(this.threads * 2);
+      AtomicReference<Exception> failure = new AtomicReference<Exception>();
+      List<Future<?>> batches = new ArrayList<Future<?>>();
+      long rows = 0;
+      try (CsvReader csv = new CsvReader(this.data.resolve(table.file))) {
+         int[] positions = new int[table.columns.length];
+         for (int i = 0; i < positions.length; ++i) {
+            positions[i] = csv.column(table.columns[i]);
+            if (positions[i] < 0)
+               throw new IOException(table.file + " has no " + table.columns[i] + " column");
+         } // end for
+
+         List<Object> batch = new ArrayList<Object>();
+         int batchSize = 0;
+         String[] record;
+         while ((record = csv.next()) != null) {
+            if (failure.get() != null)
+               break;
+            for (int i = 0; i < positions.length; ++i) {
+               boolean present = positions[i] < record.length;
+               batch.add(value(table, i, present ? record[positions[i]] : "",
+                     present && csv.wasQuoted(positions[i]), csv.getRecordNum()));
+            } // end for
+            ++rows;
+            if (++batchSize == this.batchRows) {
+               batches.add(write(table, batch, batchSize, inFlight, failure));
+               batch = new ArrayList<Object>();
+               batchSize = 0;
+            }
+         } // end while
+         if (batchSize > 0)
+            batches.add(write(table, batch, batchSize, inFlight, failure));
+         for (Future<?> written : batches)
+            result(written);
+      } finally {
+         if (triggersOff)
+            this.esql.executeUpdate("ALTER TABLE ItemsInOrder ENABLE TRIGGER USER");
+      } // end try
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%-14s %10d %10.2f %12.1f%n", table.name, rows, seconds, rows / seconds);
+      return rows;
+   }// end load
+
+   // hands one batch to a writer once fewer than the limit are in flight
+   private Future<?> write(Table table, List<Object> batch, int rows, Semaphore inFlight,
+         AtomicReference<Exception> failure) throws InterruptedException {
+      inFlight.acquire();
+      return this.writers.submit(() -> {
+         try {
+            this.esql.executeUpdate(insert(table, rows), batch.toArray());
+            return null;
+         } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            throw e;
+         } finally {
+            inFlight.release();
+         }
+      });
+   }// end write
+
+   // INSERT INTO table (columns) VALUES (?, ...), ... for a number of rows
+   private static QueryTemplate insert(Table table, int rows) {
+      return INSERTS.computeIfAbsent(table.name + "/" + rows, key -> {
+         StringBuilder row = new StringBuilder("(");
+         for (int i = 0; i < table.columns.length; ++i)
+            row.append(i == 0 ? "?" : ", ?");
+         row.append(')');
+         StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.name).append(" (")
+               .append(String.join(", ", table.columns)).append(") VALUES ");
+         for (int i = 0; i < rows; ++i) {
+            if (i > 0)
+               sql.append(", ");
+            sql.append(row);
+         }
+         return new QueryTemplate("load." + table.name + "." + rows, sql.toString());
+      });
+   }// end insert
+
+   // the value of one field, NULL for an unquoted empty field or a blank one
+   // outside a text column
+   private static Object value(Table table, int column, String field, boolean quoted, long recordNum)
+         throws IOException {
+      Type type = table.types[column];
+      if (type == Type.TEXT ? field.isEmpty() && !quoted : field.trim().isEmpty())
+         return null;
+      try {
+         switch (type) {
+            case INTEGER:
+               return Integer.valueOf(field.trim());
+            case DECIMAL:
+               return new BigDecimal(field.trim());
+            case DOUBLE:
+               return Double.valueOf(field.trim());
+            case TIMESTAMP:
+               return Timestamp.valueOf(field.trim());
+            default:
+               return field;
+         }
+      } catch (IllegalArgumentException e) {
+         throw new IOException(table.file + " record " + recordNum + ": bad " + table.columns[column] + " '"
+               + field + "'");
+      }
+   }// end value
+
+   // the statements of a SQL script, without comments
+   private static List<String> statements(Path script) throws IOException {
+      StringBuilder text = new StringBuilder();
+      for (String line : Files.readAllLines(script, StandardCharsets.UTF_8)) {
+         int comment = line.indexOf("--");
+         text.append(comment < 0 ? line : line.substring(0, comment)).append('\n');
+      }
+      List<String> statements = new ArrayList<String>();
+      for (String statement : text.toString().split(";")) {
+         if (!statement.trim().isEmpty())
+            statements.add(statement.trim());
+      }
+      return statements;
+   }// end statements
+
+   // waits for a task, unwrapping its failure
+   private static <T> T result(Future<T> task) throws Exception {
+      try {
+         return task.get();
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof Exception)
+            throw (Exception) cause;
+         throw e;
+      }
+   }// end result
+
+}// end BulkLoader
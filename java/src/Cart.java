@@ -0,0 +1,107 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An order being built by a customer before it is written to the database.
+ * Prices come from the Item records the lines were added with, so running
+ * subtotals and the total are computed locally. Adding an item that is
+ * already in the cart increases its quantity.
+ *
+ */
+public class Cart {
+
+   private final int storeID;
+
+   // lines in the order they were first added, keyed by item name
+   private final Map<String, Item> items = new LinkedHashMap<String, Item>();
+   private final Map<String, Integer> quantities = new LinkedHashMap<String, Integer>();
+
+   private BigDecimal total = BigDecimal.ZERO;
+   private int quantity = 0;
+
+   /**
+    * Creates an empty cart for an order at the given store.
+    *
+    * @param storeID the store the order is placed at
+    */
+   public Cart(int storeID) {
+      this.storeID = storeID;
+   }// end Cart
+
+   /**
+    * Adds a quantity of an item.
+    *
+    * @param item     the menu item
+    * @param quantity how many to add, must be positive
+    * @return the subtotal of the quantity just added
+    */
+   public BigDecimal add(Item item, int quantity) {
+      if (quantity <= 0)
+         throw new IllegalArgumentException("Quantity must be greater than zero.");
+      this.items.put(item.itemName(), item);
+      this.quantities.merge(item.itemName(), quantity, Integer::sum);
+      BigDecimal subtotal = item.price().multiply(BigDecimal.valueOf(quantity));
+      this.total = this.total.add(subtotal);
+      this.quantity += quantity;
+      return subtotal;
+   }// end add
+
+   public int getStoreID() {
+      return this.storeID;
+   }
+
+   public boolean isEmpty() {
+      return this.items.isEmpty();
+   }
+
+   /**
+    * @return the sum of price times quantity over every line
+    */
+   public BigDecimal getTotal() {
+      return this.total;
+   }
+
+   /**
+    * @return the sum of the quantities over every line
+    */
+   public int getQuantity() {
+      return this.quantity;
+   }
+
+   /**
+    * @return the number of distinct items in the cart
+    */
+   public int size() {
+      return this.items.size();
+   }
+
+   /**
+    * Returns the cart contents as order lines.
+    *
+    * @param orderID the ID the lines are written under
+    * @return one line per distinct item
+    */
+   public List<OrderLine> getLines(int orderID) {
+      List<OrderLine> lines = new ArrayList<OrderLine>(this.items.size());
+      for (Item item : this.items.values()) {
+         lines.add(new OrderLine(orderID, item.itemName(), this.quantities.get(item.itemName()), item.price()));
+      }
+      return lines;
+   }// end getLines
+
+}// end Cart
@@ -0,0 +1,435 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of physical database connections. Each pooled connection
+ * carries its own statement cache, so prepared statements survive between
+ * leases. Connections are validated on borrow when they have been idle for a
+ * while or when the previous lease hit an error, idle connections above the
+ * minimum size are evicted in the background, and time spent waiting for a
+ * connection is recorded.
+ *
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+   /**
+    * A connection borrowed from the pool. Closing the lease returns the
+    * connection to the pool, it never closes the physical connection.
+    */
+   public static final class Lease implements AutoCloseable {
+
+      private final ConnectionPool pool;
+      private final Connection connection;
+      private final StatementCache statements;
+
+      // when the connection was last returned to the pool
+      private long lastReturnedMillis;
+
+      // set when the last lease saw an error, forces validation on borrow
+      private boolean suspect = false;
+
+      private Lease(ConnectionPool pool, Connection connection) {
+         this.pool = pool;
+         this.connection = connection;
+         this.statements = new StatementCache(connection, StatementCache.DEFAULT_CAPACITY);
+         this.lastReturnedMillis = System.currentTimeMillis();
+      }
+
+      public Connection getConnection() {
+         return this.connection;
+      }
+
+      public StatementCache getStatements() {
+         return this.statements;
+      }
+
+      /**
+       * Marks the connection for validation before it is handed out again.
+       * Call this when a statement on the lease failed.
+       */
+      public void markSuspect() {
+         this.suspect = true;
+      }
+
+      @Override
+      public void close() {
+         this.pool.release(this);
+      }
+
+   }// end Lease
+
+   // connection settings
+   private final String url;
+   private final String user;
+   private final String passwd;
+
+   // pool limits
+   private final int minSize;
+   private final int maxSize;
+   private final long borrowTimeoutMillis;
+   private final long idleTimeoutMillis;
+
+   // idle connections are revalidated on borrow after this long
+   private final long validateAfterMillis;
+
+   // guards idle and total
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition available = this.lock.newCondition();
+
+   // idle connections, most recently returned first
+   private final ArrayDeque<Lease> idle = new ArrayDeque<Lease>();
+
+   // connections in existence (idle, leased or being opened)
+   private int total = 0;
+   private boolean closed = false;
+
+   private final ScheduledExecutorService evictor;
+
+   // metrics
+   private final AtomicLong borrows = new AtomicLong();
+   private final AtomicLong borrowTimeouts = new AtomicLong();
+   private final AtomicLong borrowWaitNanos = new AtomicLong();
+   private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+   private final AtomicLong created = new AtomicLong();
+   private final AtomicLong destroyed = new AtomicLong();
+   private final AtomicLong validationFailures = new AtomicLong();
+
+   /**
+    * Creates a new pool and opens its minimum number of connections.
+    *
+    * @param url                 the JDBC connection URL
+    * @param user                the database user
+    * @param passwd              the database password
+    * @param minSize             connections kept open even when idle
+    * @param maxSize             upper bound on open connections
+    * @param borrowTimeoutMillis how long borrow() waits for a free connection
+    * @param idleTimeoutMillis   idle time after which connections above
+    *                            minSize are closed
+    * @throws java.sql.SQLException when the initial connections cannot be
+    *                               opened
+    */
+   public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+         long borrowTimeoutMillis, long idleTimeoutMillis) throws SQLException {
+      if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+         throw new IllegalArgumentException("Invalid pool size: min=" + minSize + " max=" + maxSize);
+      this.url = url;
+      this.user = user;
+      this.passwd = passwd;
+      this.minSize = minSize;
+      this.maxSize = maxSize;
+      this.borrowTimeoutMillis = borrowTimeoutMillis;
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      this.validateAfterMillis = Math.min(1000L, idleTimeoutMillis);
+
+      for (int i = 0; i < minSize; ++i) {
+         Lease lease = open();
+         this.lock.lock();
+         try {
+            ++this.total;
+            this.idle.push(lease);
+         } finally {
+            this.lock.unlock();
+         }
+      } // end for
+
+      this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "pizzastore-pool-evictor");
+         t.setDaemon(true);
+         return t;
+      });
+      long period = Math.max(1000L, idleTimeoutMillis / 2);
+      this.evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+   }// end ConnectionPool
+
+   /**
+    * Borrows a connection, waiting up to the borrow timeout when every
+    * connection is in use.
+    *
+    * @return a lease that must be closed to return the connection
+    * @throws java.sql.SQLException when no connection became available in
+    *                               time or a new one could not be opened
+    */
+   public Lease borrow() throws SQLException {
+      long start = System.nanoTime();
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.borrowTimeoutMillis);
+      while (true) {
+         Lease lease = null;
+         boolean grow = false;
+         this.lock.lock();
+         try {
+            while (true) {
+               if (this.closed)
+                  throw new SQLException("Connection pool is closed");
+               if (!this.idle.isEmpty()) {
+                  lease = this.idle.pop();
+                  break;
+               }
+               if (this.total < this.maxSize) {
+                  ++this.total;
+                  grow = true;
+                  break;
+               }
+               long remaining = deadline - System.nanoTime();
+               if (remaining <= 0) {
+                  this.borrowTimeouts.incrementAndGet();
+                  recordWait(start);
+                  throw new SQLException("Timed out after " + this.borrowTimeoutMillis
+                        + " ms waiting for a database connection (" + this.maxSize + " in use)");
+               }
+               try {
+                  this.available.awaitNanos(remaining);
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new SQLException("Interrupted while waiting for a database connection");
+               }
+            } // end while
+         } finally {
+            this.lock.unlock();
+         }
+
+         if (grow) {
+            try {
+               lease = open();
+            } catch (SQLException e) {
+               discard(null);
+               throw e;
+            }
+         } else if (!validate(lease)) {
+            this.validationFailures.incrementAndGet();
+            discard(lease);
+            continue;
+         }
+         lease.suspect = false;
+         this.borrows.incrementAndGet();
+         recordWait(start);
+         return lease;
+      } // end while
+   }// end borrow
+
+   /**
+    * Returns a leased connection to the pool. Connections left inside an
+    * open transaction are rolled back first, closed connections are dropped.
+    * Statements the cache evicted inside a transaction are deallocated here.
+    */
+   private void release(Lease lease) {
+      try {
+         if (lease.connection.isClosed()) {
+            discard(lease);
+            return;
+         }
+         if (!lease.connection.getAutoCommit()) {
+            lease.connection.rollback();
+            lease.connection.setAutoCommit(true);
+         }
+      } catch (SQLException e) {
+         discard(lease);
+         return;
+      }
+      if (lease.statements.getPendingDeallocations() > 0)
+         lease.statements.deallocatePending();
+      lease.lastReturnedMillis = System.currentTimeMillis();
+      this.lock.lock();
+      try {
+         if (this.closed) {
+            --this.total;
+            closeQuietly(lease);
+            return;
+         }
+         this.idle.push(lease);
+         this.available.signal();
+      } finally {
+         this.lock.unlock();
+      }
+   }// end release
+
+   /**
+    * Checks a connection that is about to be handed out. Recently used
+    * connections that saw no errors are trusted without a round trip.
+    */
+   private boolean validate(Lease lease) {
+      try {
+         if (lease.connection.isClosed())
+            return false;
+         long idleFor = System.currentTimeMillis() - lease.lastReturnedMillis;
+         if (!lease.suspect && idleFor < this.validateAfterMillis)
+            return true;
+         PreparedStatement stmt = lease.statements.prepare(Queries.VALIDATE);
+         try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+         }
+      } catch (SQLException e) {
+         return false;
+      }
+   }// end validate
+
+   private Lease open() throws SQLException {
+      Connection connection = DriverManager.getConnection(this.url, this.user, this.passwd);
+      this.created.incrementAndGet();
+      return new Lease(this, connection);
+   }// end open
+
+   // closes a connection that will not return to the pool and frees its slot
+   private void discard(Lease lease) {
+      if (lease != null)
+         closeQuietly(lease);
+      this.lock.lock();
+      try {
+         --this.total;
+         this.available.signal();
+      } finally {
+         this.lock.unlock();
+      }
+   }// end discard
+
+   private void closeQuietly(Lease lease) {
+      lease.statements.close();
+      try {
+         lease.connection.close();
+      } catch (SQLException e) {
+         // ignored.
+      } // end try
+      this.destroyed.incrementAndGet();
+   }// end closeQuietly
+
+   private void recordWait(long start) {
+      long waited = System.nanoTime() - start;
+      this.borrowWaitNanos.addAndGet(waited);
+      this.maxBorrowWaitNanos.accumulateAndGet(waited, Math::max);
+   }// end recordWait
+
+   /**
+    * Closes idle connections above the minimum size that have not been used
+    * for the idle timeout.
+    */
+   private void evictIdle() {
+      List<Lease> evicted = new ArrayList<Lease>();
+      long now = System.currentTimeMillis();
+      this.lock.lock();
+      try {
+         // the deque is most-recent first, so stale connections are at the tail
+         Iterator<Lease> it = this.idle.descendingIterator();
+         while (it.hasNext() && this.total - evicted.size() > this.minSize) {
+            Lease lease = it.next();
+            if (now - lease.lastReturnedMillis < this.idleTimeoutMillis)
+               break;
+            it.remove();
+            evicted.add(lease);
+         } // end while
+         this.total -= evicted.size();
+      } finally {
+         this.lock.unlock();
+      }
+      for (Lease lease : evicted)
+         closeQuietly(lease);
+   }// end evictIdle
+
+   /**
+    * Closes every idle connection and stops handing out new ones. Leased
+    * connections are closed when they are returned.
+    */
+   public void close() {
+      List<Lease> remaining;
+      this.lock.lock();
+      try {
+         this.closed = true;
+         remaining = new ArrayList<Lease>(this.idle);
+         this.total -= this.idle.size();
+         this.idle.clear();
+         this.available.signalAll();
+      } finally {
+         this.lock.unlock();
+      }
+      this.evictor.shutdownNow();
+      for (Lease lease : remaining)
+         closeQuietly(lease);
+   }// end close
+
+   public int getMinSize() {
+      return this.minSize;
+   }
+
+   public int getMaxSize() {
+      return this.maxSize;
+   }
+
+   public int getTotalConnections() {
+      this.lock.lock();
+      try {
+         return this.total;
+      } finally {
+         this.lock.unlock();
+      }
+   }
+
+   public int getIdleConnections() {
+      this.lock.lock();
+      try {
+         return this.idle.size();
+      } finally {
+         this.lock.unlock();
+      }
+   }
+
+   public int getActiveConnections() {
+      this.lock.lock();
+      try {
+         return this.total - this.idle.size();
+      } finally {
+         this.lock.unlock();
+      }
+   }
+
+   public long getBorrowCount() {
+      return this.borrows.get();
+   }
+
+   public long getBorrowTimeoutCount() {
+      return this.borrowTimeouts.get();
+   }
+
+   public long getTotalBorrowWaitNanos() {
+      return this.borrowWaitNanos.get();
+   }
+
+   public long getMaxBorrowWaitNanos() {
+      return this.maxBorrowWaitNanos.get();
+   }
+
+   public long getCreatedCount() {
+      return this.created.get();
+   }
+
+   public long getDestroyedCount() {
+      return this.destroyed.get();
+   }
+
+   public long getValidationFailureCount() {
+      return this.validationFailures.get();
+   }
+
+}// end ConnectionPool
@@ -0,0 +1,48 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The size and borrow counters of a ConnectionPool, published over JMX as
+ * pizzastore:type=ConnectionPool.
+ *
+ */
+public interface ConnectionPoolMXBean {
+
+   int getMinSize();
+
+   int getMaxSize();
+
+   int getTotalConnections();
+
+   int getIdleConnections();
+
+   /**
+    * @return the connections leased right now
+    */
+   int getActiveConnections();
+
+   long getBorrowCount();
+
+   long getBorrowTimeoutCount();
+
+   long getTotalBorrowWaitNanos();
+
+   long getMaxBorrowWaitNanos();
+
+   long getCreatedCount();
+
+   long getDestroyedCount();
+
+   long getValidationFailureCount();
+
+}// end ConnectionPoolMXBean
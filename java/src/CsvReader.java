@@ -0,0 +1,182 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Streams the records of a CSV file one at a time, in the dialect of the
+ * files under data/: comma separated, fields optionally in double quotes
+ * with "" for a quote inside them, quoted fields may hold commas and line
+ * breaks, and lines end in LF or CRLF. Blank lines are skipped and spaces
+ * after a closing quote are ignored. The first record is the header.
+ * wasQuoted() tells a quoted empty field ("") from an empty one.
+ *
+ */
+public class CsvReader implements Closeable {
+
+   private final Reader in;
+   private final char[] buffer = new char[8192];
+   private int position = 0;
+   private int limit = 0;
+
+   private final String[] header;
+   private long recordNum = 0;
+
+   // the fields of the last record that were in double quotes
+   private final BitSet quotedFields = new BitSet();
+
+   /**
+    * Opens a CSV file and reads its header.
+    *
+    * @param file the file, UTF-8 encoded
+    * @throws java.io.IOException when the file cannot be read
+    */
+   public CsvReader(Path file) throws IOException {
+      this(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+   }// end CsvReader
+
+   /**
+    * Reads CSV text and its header.
+    *
+    * @param in the text
+    * @throws java.io.IOException when the text cannot be read
+    */
+   public CsvReader(Reader in) throws IOException {
+      this.in = in;
+      String[] first = next();
+      this.header = first == null ? new String[0] : first;
+      this.recordNum = 0;
+   }// end CsvReader
+
+   /**
+    * @return the column names from the first record
+    */
+   public String[] getHeader() {
+      return this.header.clone();
+   }
+
+   /**
+    * @param name a column name
+    * @return the position of the column, or -1 when there is none
+    */
+   public int column(String name) {
+      for (int i = 0; i < this.header.length; ++i) {
+         if (this.header[i].trim().equalsIgnoreCase(name))
+            return i;
+      }
+      return -1;
+   }// end column
+
+   /**
+    * @return the number of records read after the header
+    */
+   public long getRecordNum() {
+      return this.recordNum;
+   }
+
+   /**
+    * @param field the position of a field in the record last read
+    * @return true when the field was in double quotes, even if empty
+    */
+   public boolean wasQuoted(int field) {
+      return this.quotedFields.get(field);
+   }
+
+   /**
+    * Reads the next record.
+    *
+    * @return the fields of the record, or null at the end of the file
+    * @throws java.io.IOException when the file cannot be read or a quoted
+    *                             field is not closed
+    */
+   public String[] next() throws IOException {
+      List<String> fields = new ArrayList<String>();
+      StringBuilder field = new StringBuilder();
+      boolean quoted = false;
+      boolean wasQuoted = false;
+      this.quotedFields.clear();
+      int c;
+      while ((c = read()) >= 0) {
+         if (quoted) {
+            if (c != '"') {
+               field.append((char) c);
+            } else if (peek() == '"') {
+               read();
+               field.append('"');
+            } else {
+               quoted = false;
+            }
+         } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+            quoted = true;
+            wasQuoted = true;
+         } else if (c == ',') {
+            this.quotedFields.set(fields.size(), wasQuoted);
+            fields.add(field.toString());
+            field.setLength(0);
+            wasQuoted = false;
+         } else if (c == '\n' || c == '\r') {
+            if (c == '\r' && peek() == '\n')
+               read();
+            if (fields.isEmpty() && field.length() == 0 && !wasQuoted)
+               continue; // blank line
+            this.quotedFields.set(fields.size(), wasQuoted);
+            fields.add(field.toString());
+            ++this.recordNum;
+            return fields.toArray(new String[0]);
+         } else if (!(wasQuoted && c == ' ')) {
+            field.append((char) c);
+         }
+      } // end while
+      if (quoted)
+         throw new IOException("Unterminated quoted field in record " + (this.recordNum + 1));
+      if (fields.isEmpty() && field.length() == 0 && !wasQuoted)
+         return null;
+      this.quotedFields.set(fields.size(), wasQuoted);
+      fields.add(field.toString());
+      ++this.recordNum;
+      return fields.toArray(new String[0]);
+   }// end next
+
+   public void close() throws IOException {
+      this.in.close();
+   }
+
+   private int read() throws IOException {
+      if (this.position == this.limit && !fill())
+         return -1;
+      return this.buffer[this.position++];
+   }// end read
+
+   private int peek() throws IOException {
+      if (this.position == this.limit && !fill())
+         return -1;
+      return this.buffer[this.position];
+   }// end peek
+
+   private boolean fill() throws IOException {
+      int n = this.in.read(this.buffer, 0, this.buffer.length);
+      if (n <= 0)
+         return false;
+      this.position = 0;
+      this.limit = n;
+      return true;
+   }// end fill
+
+}// end CsvReader
@@ -0,0 +1,22 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * A row of the FoodOrder table.
+ *
+ */
+public record FoodOrder(int orderID, String login, int storeID, BigDecimal totalPrice, Timestamp orderTimestamp,
+      String orderStatus) {
+}// end FoodOrder
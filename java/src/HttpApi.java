@@ -0,0 +1,570 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local HTTP interface to PizzaStoreService, served by the JDK's built-in
+ * HTTP server on the loopback address. Every exchange runs on its own
+ * thread from PizzaStoreService.newSessionExecutor(), so a request waiting
+ * on the database holds no thread another request could use. On a JVM
+ * without virtual threads that executor is bounded; an exchange it has no
+ * room for is answered with 503 on the accepting thread, without being read
+ * any further than its headers.
+ *
+ * Requests pass parameters in the query string or, for POST, as a form
+ * encoded body; a parameter may repeat. Responses are JSON, written straight
+ * to the connection with chunked encoding as they are encoded. Errors are
+ * returned as {"error": message} with a 4xx or 5xx status.
+ *
+ * <pre>
+ * POST /api/login          login, password           -> token, login, role
+ * POST /api/logout
+ * POST /api/users          login, password, phoneNum -> the new user
+ * GET  /api/menu           [type] [maxPrice] [sort]  -> items
+ * GET  /api/stores         [state | city] [open]     -> stores
+ * POST /api/orders         storeID, (item, quantity)... -> the new order
+ * GET  /api/orders         [store] [status] [customer] [after] -> a page of orders
+ * GET  /api/orders/recent                            -> the five newest orders
+ * GET  /api/orders/ID[,ID...]                        -> orders with their lines
+ * POST /api/orders/status  status, id...             -> orders updated
+ * </pre>
+ *
+ * Every call but login, logout, users, menu and stores needs the token from
+ * login in an "Authorization: Bearer TOKEN" header. A token expires after
+ * pizzastore.http.sessionIdleSeconds (default 1800) without use, and at most
+ * about pizzastore.http.maxSessions (default 10000) tokens are live, the
+ * least recently used being dropped to make room. A call with an unknown or
+ * expired token gets 401, except login and logout.
+ *
+ */
+public class HttpApi implements AutoCloseable {
+
+   private static final String PREFIX = "/api/";
+
+   private static final long SESSION_IDLE_MILLIS = TimeUnit.SECONDS
+         .toMillis(Long.getLong("pizzastore.http.sessionIdleSeconds", 1800));
+   private static final int MAX_SESSIONS = Integer.getInteger("pizzastore.http.maxSessions", 10000);
+
+   private final PizzaStoreService service;
+   private final HttpServer server;
+   private final ExecutorService executor;
+
+   // logged in sessions by token
+   private final Map<String, TokenSession> sessions = new ConcurrentHashMap<String, TokenSession>();
+   private final SecureRandom random = new SecureRandom();
+
+   // set while the accepting thread answers an exchange the executor rejected
+   private static final ThreadLocal<Boolean> OVERLOADED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+   // runs a rejected exchange on the accepting thread, which only answers 503
+   private static final RejectedExecutionHandler REJECT_BUSY = (task, executor) -> {
+      OVERLOADED.set(Boolean.TRUE);
+      try {
+         task.run();
+      } finally {
+         OVERLOADED.set(Boolean.FALSE);
+      }
+   };
+
+   // drops expired tokens
+   private final ScheduledExecutorService sweeper;
+
+   // a logged in session and when its token was last used
+   private static final class TokenSession {
+      final Session session;
+      volatile long lastUsedMillis = System.currentTimeMillis();
+
+      TokenSession(Session session) {
+         this.session = session;
+      }
+
+      boolean isExpired(long now) {
+         return now - this.lastUsedMillis >= SESSION_IDLE_MILLIS;
+      }
+   }// end TokenSession
+
+   /**
+    * Creates a new server. It does not accept connections until started.
+    *
+    * @param service the service to expose
+    * @param port    the port to listen on, 0 for any free port
+    * @param backlog the number of connections the socket queues before
+    *                refusing more
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public HttpApi(PizzaStoreService service, int port, int backlog) throws IOException {
+      this.service = service;
+      this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), backlog);
+      this.executor = PizzaStoreService.newSessionExecutor(REJECT_BUSY);
+      this.server.setExecutor(this.executor);
+      this.server.createContext(PREFIX, this::exchange);
+
+      this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "pizzastore-http-sessions");
+         t.setDaemon(true);
+         return t;
+      });
+      long period = Math.max(1000L, Math.min(60000L, SESSION_IDLE_MILLIS / 2));
+      this.sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+   }// end HttpApi
+
+   public void start() {
+      this.server.start();
+   }
+
+   public int getPort() {
+      return this.server.getAddress().getPort();
+   }
+
+   /**
+    * Stops accepting connections and waits up to a second for open
+    * exchanges to finish.
+    */
+   public void close() {
+      this.server.stop(1);
+      this.executor.shutdownNow();
+      this.sweeper.shutdownNow();
+   }// end close
+
+   /**
+    * Serves the API until the process is stopped.
+    *
+    * @param args the database name, port and user, optionally followed by the
+    *             HTTP port (pizzastore.http.port, default 8080)
+    * @throws Exception when the driver cannot be loaded or the port bound
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length != 3 && args.length != 4) {
+         System.err.println("Usage: java [-classpath <classpath>] " + HttpApi.class.getName()
+               + " <dbname> <port> <user> [<http port>]");
+         return;
+      } // end if
+
+      Class.forName("org.postgresql.Driver");
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], "");
+      int port = args.length == 4 ? Integer.parseInt(args[3]) : Integer.getInteger("pizzastore.http.port", 8080);
+      HttpApi api = new HttpApi(esql.getService(), port, Integer.getInteger("pizzastore.http.backlog", 4096));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         api.close();
+         esql.cleanup();
+      }));
+      api.start();
+      System.out.println("Serving http://localhost:" + api.getPort() + PREFIX);
+   }// end main
+
+   // a request with its parameters and the session of its token, if any
+   private record Request(String method, String path, Map<String, List<String>> params, Session session) {
+
+      String param(String name) {
+         List<String> values = this.params.get(name);
+         return values == null || values.isEmpty() || values.get(0).isEmpty() ? null : values.get(0);
+      }
+
+      List<String> params(String name) {
+         return this.params.getOrDefault(name, Collections.emptyList());
+      }
+
+      Integer intParam(String name) {
+         String value = param(name);
+         return value == null ? null : Integer.valueOf(value.trim());
+      }
+
+   }// end Request
+
+   // the JSON body of a successful response
+   private interface Body {
+      void write(JsonWriter json) throws IOException;
+   }
+
+   // ends a request with an error status
+   private static final class HttpError extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+
+      final int status;
+
+      HttpError(int status, String message) {
+         super(message);
+         this.status = status;
+      }
+   }// end HttpError
+
+   // serves one exchange
+   private void exchange(HttpExchange exchange) throws IOException {
+      try {
+         if (OVERLOADED.get()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, error("The server is busy, try again."));
+            return;
+         } // end if
+         Request request = null;
+         int status;
+         Body body;
+         try {
+            // malformed parameters are a bad request like any other
+            request = read(exchange);
+            body = route(request);
+            // users and orders are created, everything else is a plain success
+            boolean created = request.method().equals("POST")
+                  && (request.path().equals("users") || request.path().equals("orders"));
+            status = created ? 201 : 200;
+         } catch (HttpError e) {
+            status = e.status;
+            body = error(e.getMessage());
+         } catch (SecurityException e) {
+            status = request == null || request.session() == null ? 401 : 403;
+            body = error(e.getMessage());
+         } catch (IllegalArgumentException e) {
+            // includes NumberFormatException from bad numbers
+            status = 400;
+            body = error(e.getMessage());
+         } catch (SQLException | RuntimeException e) {
+            status = 500;
+            body = error(e.getMessage());
+         }
+         respond(exchange, status, body);
+      } finally {
+         exchange.close();
+      }
+   }// end exchange
+
+   // finds the endpoint for a request and runs it
+   private Body route(Request request) throws SQLException {
+      switch (request.method() + " " + request.path()) {
+         case "POST login":
+            return login(request);
+         case "POST logout":
+            return logout(request);
+         case "POST users":
+            return createUser(request);
+         case "GET menu":
+            return menu(request);
+         case "GET stores":
+            return stores(request);
+         case "POST orders":
+            return placeOrder(request);
+         case "GET orders":
+            return history(request);
+         case "GET orders/recent":
+            return orders(this.service.recentOrders(request.session()));
+         case "POST orders/status":
+            return updateStatus(request);
+         default:
+            if (request.method().equals("GET") && request.path().startsWith("orders/"))
+               return orderDetails(request, request.path().substring("orders/".length()));
+            throw new HttpError(404, "No such endpoint: " + request.method() + " " + PREFIX + request.path());
+      }// end switch
+   }// end route
+
+   private Body login(Request request) throws SQLException {
+      Session session = this.service.logIn(request.param("login"), request.param("password"));
+      if (session == null)
+         throw new HttpError(401, "Invalid login or password.");
+      byte[] bytes = new byte[24];
+      this.random.nextBytes(bytes);
+      String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+      if (this.sessions.size() >= MAX_SESSIONS)
+         makeRoom();
+      this.sessions.put(token, new TokenSession(session));
+      return json -> json.beginObject()
+            .name("token").value(token)
+            .name("login").value(session.getLogin())
+            .name("role").value(session.getRole())
+            .endObject();
+   }// end login
+
+   // drops expired tokens, then the least recently used one if still full
+   private void makeRoom() {
+      sweep();
+      if (this.sessions.size() < MAX_SESSIONS)
+         return;
+      Map.Entry<String, TokenSession> oldest = null;
+      for (Map.Entry<String, TokenSession> entry : this.sessions.entrySet())
+         if (oldest == null || entry.getValue().lastUsedMillis < oldest.getValue().lastUsedMillis)
+            oldest = entry;
+      if (oldest != null)
+         this.sessions.remove(oldest.getKey(), oldest.getValue());
+   }// end makeRoom
+
+   // drops every token unused for longer than the idle timeout
+   private void sweep() {
+      long now = System.currentTimeMillis();
+      this.sessions.values().removeIf(entry -> entry.isExpired(now));
+   }// end sweep
+
+   private Body logout(Request request) {
+      String token = request.param("token");
+      boolean found = token != null && this.sessions.remove(token) != null;
+      return json -> json.beginObject().name("loggedOut").value(found).endObject();
+   }// end logout
+
+   private Body createUser(Request request) throws SQLException {
+      User user = this.service.createUser(request.param("login"), request.param("password"),
+            request.param("phoneNum"));
+      return json -> json.beginObject()
+            .name("login").value(user.login())
+            .name("role").value(user.role())
+            .name("phoneNum").value(user.phoneNum())
+            .endObject();
+   }// end createUser
+
+   private Body menu(Request request) throws SQLException {
+      String maxPrice = request.param("maxPrice");
+      List<Item> items = this.service.menu(request.param("type"), maxPrice == null ? null : new BigDecimal(maxPrice),
+            request.param("sort"));
+      return json -> {
+         json.beginArray();
+         for (Item item : items) {
+            json.beginObject()
+                  .name("itemName").value(item.itemName())
+                  .name("ingredients").value(item.ingredients())
+                  .name("typeOfItem").value(item.typeOfItem().trim())
+                  .name("price").value(item.price())
+                  .name("description").value(item.description())
+                  .endObject();
+         }
+         json.endArray();
+      };
+   }// end menu
+
+   private Body stores(Request request) throws SQLException {
+      StoreDirectory stores = this.service.stores();
+      List<Store> listing = request.param("state") != null ? stores.inState(request.param("state"))
+            : request.param("city") != null ? stores.inCity(request.param("city")) : stores.getStores();
+      boolean openOnly = "true".equals(request.param("open"));
+      return json -> {
+         json.beginArray();
+         for (Store store : listing) {
+            if (openOnly && !store.isOpen())
+               continue;
+            json.beginObject()
+                  .name("storeID").value(store.storeID())
+                  .name("address").value(store.address())
+                  .name("city").value(store.city())
+                  .name("state").value(store.state())
+                  .name("isOpen").value(store.isOpen())
+                  .name("reviewScore").value(store.reviewScore())
+                  .endObject();
+         }
+         json.endArray();
+      };
+   }// end stores
+
+   private Body placeOrder(Request request) throws SQLException {
+      Integer storeID = request.intParam("storeID");
+      List<String> names = request.params("item");
+      List<String> quantities = request.params("quantity");
+      if (storeID == null || names.isEmpty() || names.size() != quantities.size())
+         throw new IllegalArgumentException("Expected storeID and one quantity for every item.");
+
+      MenuSnapshot menu = this.service.menu();
+      Cart cart = new Cart(storeID);
+      for (int i = 0; i < names.size(); ++i) {
+         Item item = menu.item(names.get(i));
+         if (item == null)
+            throw new IllegalArgumentException("Item not found: " + names.get(i));
+         cart.add(item, Integer.parseInt(quantities.get(i).trim()));
+      } // end for
+      int orderID = this.service.placeOrder(request.session(), cart);
+      return json -> json.beginObject()
+            .name("orderID").value(orderID)
+            .name("storeID").value(cart.getStoreID())
+            .name("totalPrice").value(cart.getTotal())
+            .name("orderStatus").value(OrderStatus.INCOMPLETE)
+            .endObject();
+   }// end placeOrder
+
+   // a page of the history; "after" is the cursor returned with the page before
+   private Body history(Request request) throws SQLException {
+      OrderFilter filter = OrderFilter.NONE.withStoreID(request.intParam("store"))
+            .withOrderStatus(request.param("status") == null ? null : request.param("status").toLowerCase())
+            .withLogin(request.param("customer"));
+      OrderPager pager = this.service.orderHistory(request.session(), filter, PizzaStore.ORDER_PAGE_SIZE);
+      String after = request.param("after");
+      List<FoodOrder> page;
+      if (after == null) {
+         page = pager.first();
+      } else {
+         int split = after.lastIndexOf('~');
+         if (split < 0)
+            throw new IllegalArgumentException("Invalid cursor: " + after);
+         page = pager.olderThan(Timestamp.valueOf(after.substring(0, split)),
+               Integer.parseInt(after.substring(split + 1)));
+      }
+      FoodOrder last = pager.hasOlder() ? page.get(page.size() - 1) : null;
+      return json -> {
+         json.beginObject().name("orders");
+         writeOrders(json, page);
+         json.name("next").value(last == null ? null : last.orderTimestamp() + "~" + last.orderID());
+         json.endObject();
+      };
+   }// end history
+
+   private Body orders(List<FoodOrder> orders) {
+      return json -> writeOrders(json, orders);
+   }// end orders
+
+   private Body orderDetails(Request request, String ids) throws SQLException {
+      List<Integer> orderIDs = new ArrayList<Integer>();
+      for (String part : ids.split(","))
+         orderIDs.add(Integer.valueOf(part.trim()));
+      Map<Integer, OrderDetail> details = this.service.orderDetails(request.session(), orderIDs);
+      if (details.isEmpty())
+         throw new HttpError(404, "Order not found.");
+      return json -> {
+         json.beginArray();
+         for (OrderDetail detail : details.values()) {
+            json.beginObject();
+            writeOrderFields(json, detail.order());
+            json.name("lines").beginArray();
+            for (OrderLine line : detail.lines()) {
+               json.beginObject()
+                     .name("itemName").value(line.itemName())
+                     .name("quantity").value(line.quantity())
+                     .name("unitPrice").value(line.unitPrice())
+                     .name("subtotal").value(line.subtotal())
+                     .endObject();
+            }
+            json.endArray().endObject();
+         }
+         json.endArray();
+      };
+   }// end orderDetails
+
+   private Body updateStatus(Request request) throws SQLException {
+      List<Integer> orderIDs = new ArrayList<Integer>();
+      for (String id : request.params("id"))
+         orderIDs.add(Integer.valueOf(id.trim()));
+      List<Integer> changed = this.service.updateOrderStatus(request.session(), orderIDs, request.param("status"));
+      return json -> {
+         json.beginObject().name("updated").beginArray();
+         for (Integer orderID : changed)
+            json.value(orderID);
+         json.endArray().endObject();
+      };
+   }// end updateStatus
+
+   private static void writeOrders(JsonWriter json, List<FoodOrder> orders) throws IOException {
+      json.beginArray();
+      for (FoodOrder order : orders) {
+         json.beginObject();
+         writeOrderFields(json, order);
+         json.endObject();
+      }
+      json.endArray();
+   }// end writeOrders
+
+   private static void writeOrderFields(JsonWriter json, FoodOrder order) throws IOException {
+      json.name("orderID").value(order.orderID())
+            .name("login").value(order.login())
+            .name("storeID").value(order.storeID())
+            .name("totalPrice").value(order.totalPrice())
+            .name("orderTimestamp").value(order.orderTimestamp().toLocalDateTime().toString())
+            .name("orderStatus").value(order.orderStatus());
+   }// end writeOrderFields
+
+   private static Body error(String message) {
+      return json -> json.beginObject().name("error").value(message).endObject();
+   }// end error
+
+   // parses the path, parameters and token of an exchange
+   private Request read(HttpExchange exchange) throws IOException {
+      String method = exchange.getRequestMethod().toUpperCase();
+      String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+      if (path.endsWith("/"))
+         path = path.substring(0, path.length() - 1);
+
+      Map<String, List<String>> params = new HashMap<String, List<String>>();
+      parseForm(exchange.getRequestURI().getRawQuery(), params);
+      if (method.equals("POST")) {
+         try (InputStream body = exchange.getRequestBody()) {
+            parseForm(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+         }
+      }
+
+      String token = null;
+      String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+      if (authorization != null && authorization.startsWith("Bearer "))
+         token = authorization.substring("Bearer ".length()).trim();
+      if (token != null && path.equals("logout"))
+         params.put("token", Collections.singletonList(token));
+      Session session = null;
+      if (token != null && !path.equals("login") && !path.equals("logout")) {
+         TokenSession entry = this.sessions.get(token);
+         long now = System.currentTimeMillis();
+         if (entry == null || entry.isExpired(now)) {
+            if (entry != null)
+               this.sessions.remove(token, entry);
+            throw new HttpError(401, "Unknown or expired token, log in again.");
+         }
+         entry.lastUsedMillis = now;
+         session = entry.session;
+      }
+      return new Request(method, path, params, session);
+   }// end read
+
+   /*
+    * adds the pairs of an application/x-www-form-urlencoded string. Throws
+    * IllegalArgumentException on a malformed % escape.
+    */
+   private static void parseForm(String form, Map<String, List<String>> params) {
+      if (form == null || form.isEmpty())
+         return;
+      for (String pair : form.split("&")) {
+         if (pair.isEmpty())
+            continue;
+         int eq = pair.indexOf('=');
+         String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+         String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+         params.computeIfAbsent(name, key -> new ArrayList<String>()).add(value);
+      } // end for
+   }// end parseForm
+
+   // sends the status and streams the body with chunked encoding
+   private static void respond(HttpExchange exchange, int status, Body body) throws IOException {
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      exchange.sendResponseHeaders(status, 0);
+      BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 8192);
+      JsonWriter json = new JsonWriter(out);
+      body.write(json);
+      json.flush();
+      out.close();
+   }// end respond
+
+}// end HttpApi
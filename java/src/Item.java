@@ -0,0 +1,20 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+
+/**
+ * A row of the Items table.
+ *
+ */
+public record Item(String itemName, String ingredients, String typeOfItem, BigDecimal price, String description) {
+}// end Item
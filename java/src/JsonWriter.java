@@ -0,0 +1,188 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Writes JSON text straight to a Writer as values are added, so a large
+ * result is never built up in memory first. Separators between members are
+ * written by the writer; callers only open and close objects and arrays and
+ * add names and values in order.
+ *
+ */
+public class JsonWriter {
+
+   private final Writer out;
+
+   // per open object or array, whether it has a member yet
+   private boolean[] nonEmpty = new boolean[16];
+   private int depth = 0;
+
+   // a name was written and its value is next
+   private boolean afterName = false;
+
+   /**
+    * Creates a new writer.
+    *
+    * @param out receives the JSON text
+    */
+   public JsonWriter(Writer out) {
+      this.out = out;
+   }// end JsonWriter
+
+   public JsonWriter beginObject() throws IOException {
+      return open('{');
+   }
+
+   public JsonWriter endObject() throws IOException {
+      return close('}');
+   }
+
+   public JsonWriter beginArray() throws IOException {
+      return open('[');
+   }
+
+   public JsonWriter endArray() throws IOException {
+      return close(']');
+   }
+
+   /**
+    * Writes the name of the next object member.
+    *
+    * @param name the member name
+    * @return this writer
+    * @throws java.io.IOException when the text cannot be written
+    */
+   public JsonWriter name(String name) throws IOException {
+      separate();
+      string(name);
+      this.out.write(':');
+      this.afterName = true;
+      return this;
+   }// end name
+
+   public JsonWriter value(String value) throws IOException {
+      if (value == null)
+         return nullValue();
+      separate();
+      string(value);
+      return this;
+   }
+
+   public JsonWriter value(long value) throws IOException {
+      separate();
+      this.out.write(Long.toString(value));
+      return this;
+   }
+
+   public JsonWriter value(boolean value) throws IOException {
+      separate();
+      this.out.write(value ? "true" : "false");
+      return this;
+   }
+
+   public JsonWriter value(BigDecimal value) throws IOException {
+      if (value == null)
+         return nullValue();
+      separate();
+      this.out.write(value.toPlainString());
+      return this;
+   }
+
+   public JsonWriter value(Double value) throws IOException {
+      if (value == null || value.isNaN() || value.isInfinite())
+         return nullValue();
+      separate();
+      this.out.write(value.toString());
+      return this;
+   }
+
+   public JsonWriter nullValue() throws IOException {
+      separate();
+      this.out.write("null");
+      return this;
+   }
+
+   /**
+    * Writes out anything buffered by the underlying Writer.
+    *
+    * @throws java.io.IOException when the text cannot be written
+    */
+   public void flush() throws IOException {
+      this.out.flush();
+   }// end flush
+
+   private JsonWriter open(char bracket) throws IOException {
+      separate();
+      this.out.write(bracket);
+      if (this.depth == this.nonEmpty.length) {
+         boolean[] grown = new boolean[this.depth * 2];
+         System.arraycopy(this.nonEmpty, 0, grown, 0, this.depth);
+         this.nonEmpty = grown;
+      }
+      this.nonEmpty[this.depth++] = false;
+      return this;
+   }// end open
+
+   private JsonWriter close(char bracket) throws IOException {
+      if (this.depth == 0 || this.afterName)
+         throw new IllegalStateException("nothing to close");
+      --this.depth;
+      this.out.write(bracket);
+      return this;
+   }// end close
+
+   // writes the comma before every member but the first
+   private void separate() throws IOException {
+      if (this.afterName) {
+         this.afterName = false;
+         return;
+      }
+      if (this.depth > 0) {
+         if (this.nonEmpty[this.depth - 1])
+            this.out.write(',');
+         this.nonEmpty[this.depth - 1] = true;
+      }
+   }// end separate
+
+   // writes a quoted, escaped string
+   private void string(String value) throws IOException {
+      this.out.write('"');
+      int start = 0;
+      for (int i = 0; i < value.length(); ++i) {
+         char c = value.charAt(i);
+         String escape;
+         if (c == '"')
+            escape = "\\\"";
+         else if (c == '\\')
+            escape = "\\\\";
+         else if (c == '\n')
+            escape = "\\n";
+         else if (c == '\r')
+            escape = "\\r";
+         else if (c == '\t')
+            escape = "\\t";
+         else if (c < 0x20 || c == '\u2028' || c == '\u2029')
+            escape = String.format("\\u%04x", (int) c);
+         else
+            continue;
+         this.out.write(value, start, i - start);
+         this.out.write(escape);
+         start = i + 1;
+      } // end for
+      this.out.write(value, start, value.length() - start);
+      this.out.write('"');
+   }// end string
+
+}// end JsonWriter
@@ -0,0 +1,134 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies that many threads record into without locking.
+ * Each power of two is split into SUB_BUCKETS linear buckets, so a reported
+ * percentile is never more than 1/SUB_BUCKETS (about 6%) above the true
+ * value, and the whole range of a long fits in under a thousand counters.
+ * Recording costs one bucket calculation and three atomic increments.
+ *
+ * Percentiles are read while other threads may still be recording, so they
+ * describe some moment during the read rather than one exact instant.
+ *
+ */
+public class LatencyHistogram {
+
+   // linear buckets per power of two, must be a power of two itself
+   private static final int SUB_BITS = 4;
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+   // values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS per power
+   private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   private final LongAdder totalNanos = new LongAdder();
+   private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+   /**
+    * Records one latency.
+    *
+    * @param nanos the latency in nanoseconds, negative values count as 0
+    */
+   public void record(long nanos) {
+      long value = Math.max(nanos, 0L);
+      this.counts.incrementAndGet(bucket(value));
+      this.totalNanos.add(value);
+      this.maxNanos.accumulate(value);
+   }// end record
+
+   /**
+    * @return the number of latencies recorded
+    */
+   public long getCount() {
+      long count = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+         count += this.counts.get(i);
+      return count;
+   }// end getCount
+
+   public long getTotalNanos() {
+      return this.totalNanos.sum();
+   }
+
+   public long getMaxNanos() {
+      return this.maxNanos.get();
+   }
+
+   /**
+    * @return the mean latency in nanoseconds, 0 when nothing was recorded
+    */
+   public double getMeanNanos() {
+      long count = getCount();
+      return count == 0 ? 0.0 : (double) getTotalNanos() / count;
+   }// end getMeanNanos
+
+   /**
+    * Returns the latency below which a fraction of the recorded latencies
+    * fall, as the upper end of the bucket it lands in.
+    *
+    * @param fraction the fraction, e.g. 0.99 for the 99th percentile
+    * @return the latency in nanoseconds, 0 when nothing was recorded
+    */
+   public long percentile(double fraction) {
+      long[] snapshot = new long[BUCKETS];
+      long count = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+         snapshot[i] = this.counts.get(i);
+         count += snapshot[i];
+      } // end for
+      if (count == 0)
+         return 0;
+
+      long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+         seen += snapshot[i];
+         if (seen >= rank)
+            return Math.min(upperBound(i), getMaxNanos());
+      } // end for
+      return getMaxNanos();
+   }// end percentile
+
+   /**
+    * Clears every count.
+    */
+   public void reset() {
+      for (int i = 0; i < BUCKETS; ++i)
+         this.counts.set(i, 0);
+      this.totalNanos.reset();
+      this.maxNanos.reset();
+   }// end reset
+
+   // the bucket a value is counted in
+   private static int bucket(long value) {
+      if (value < SUB_BUCKETS)
+         return (int) value;
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+   }// end bucket
+
+   // the largest value counted in a bucket
+   private static long upperBound(int bucket) {
+      if (bucket < SUB_BUCKETS)
+         return bucket;
+      int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+      long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+      return lower + (1L << (exponent - SUB_BITS)) - 1;
+   }// end upperBound
+
+}// end LatencyHistogram
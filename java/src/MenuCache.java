@@ -0,0 +1,57 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+
+/**
+ * Process-wide cache of the menu. Changes made through this process are
+ * written through with put(); changes made elsewhere are found by the poll
+ * of SnapshotCache.
+ *
+ */
+public class MenuCache extends SnapshotCache<MenuSnapshot> {
+
+   /**
+    * Creates a new cache. Nothing is loaded until the first read.
+    *
+    * @param esql        the store used to load the menu
+    * @param pollSeconds seconds between checks for changes made outside
+    *                    this process, or 0 to never check
+    */
+   public MenuCache(PizzaStore esql, long pollSeconds) {
+      super(esql, Queries.MENU_FINGERPRINT, "pizzastore-menu-poll", pollSeconds);
+   }// end MenuCache
+
+   @Override
+   protected MenuSnapshot load(long version, String fingerprint) throws SQLException {
+      return new MenuSnapshot(version, fingerprint,
+            this.esql.queryList(Queries.MENU_BY_TYPE_AND_NAME, RowMappers.ITEM));
+   }// end load
+
+   /**
+    * Writes an added or changed item through to the cache once it has been
+    * committed to the database. The new snapshot has no fingerprint, so the
+    * next poll reloads it once to confirm it matches the table. A snapshot
+    * swapped in concurrently is not overwritten; the item is applied to it
+    * instead.
+    *
+    * @param item the item as it now is in the database
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public void put(Item item) throws SQLException {
+      MenuSnapshot next;
+      do {
+         next = get().with(item, nextVersion());
+      } while (swap(next) != next);
+   }// end put
+
+}// end MenuCache
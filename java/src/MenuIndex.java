@@ -0,0 +1,179 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers the viewMenu filters (type, maximum price, price order) over one
+ * MenuSnapshot without a query. Items are identified by their position in
+ * the snapshot, which is ordered by type and then by name, so every type is
+ * one contiguous range of positions. For the whole menu and for each type
+ * the index keeps the positions sorted by price with their prices alongside,
+ * so the price filter is a binary search for the cut-off and the price
+ * orders are that prefix read forwards or backwards.
+ *
+ * The index is built once per snapshot and never modified. A selection is a
+ * view over the index arrays; only the price filter without a price order
+ * copies the matching positions, to put them back in name order.
+ *
+ */
+public final class MenuIndex {
+
+   // positions sorted by price, with the matching prices
+   private static final class PriceOrder {
+      final int[] positions;
+      final BigDecimal[] prices;
+
+      PriceOrder(Item[] items, int from, int to) {
+         Integer[] boxed = new Integer[to - from];
+         for (int i = 0; i < boxed.length; i++)
+            boxed[i] = from + i;
+         Arrays.sort(boxed, Comparator.comparing((Integer p) -> items[p].price()));
+
+         this.positions = new int[boxed.length];
+         this.prices = new BigDecimal[boxed.length];
+         for (int i = 0; i < boxed.length; i++) {
+            this.positions[i] = boxed[i];
+            this.prices[i] = items[boxed[i]].price();
+         } // end for
+      }// end PriceOrder
+
+      // number of leading entries priced at or below maxPrice
+      int countAtMost(BigDecimal maxPrice) {
+         int low = 0;
+         int high = this.prices.length;
+         while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.prices[mid].compareTo(maxPrice) <= 0)
+               low = mid + 1;
+            else
+               high = mid;
+         } // end while
+         return low;
+      }// end countAtMost
+   }// end PriceOrder
+
+   // the positions of one type, and those positions by price
+   private static final class TypeRange {
+      final int from;
+      final int to;
+      final PriceOrder byPrice;
+
+      TypeRange(Item[] items, int from, int to) {
+         this.from = from;
+         this.to = to;
+         this.byPrice = new PriceOrder(items, from, to);
+      }
+   }// end TypeRange
+
+   // read-only list over a run of positions, optionally through an array
+   private static final class Selection extends AbstractList<Item> {
+      private final Item[] items;
+      private final int[] positions;
+      private final int from;
+      private final int size;
+      private final boolean reverse;
+
+      Selection(Item[] items, int[] positions, int from, int size, boolean reverse) {
+         this.items = items;
+         this.positions = positions;
+         this.from = from;
+         this.size = size;
+         this.reverse = reverse;
+      }
+
+      @Override
+      public Item get(int index) {
+         if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+         int i = this.from + (this.reverse ? this.size - 1 - index : index);
+         return this.items[this.positions == null ? i : this.positions[i]];
+      }
+
+      @Override
+      public int size() {
+         return this.size;
+      }
+   }// end Selection
+
+   private final Item[] items;
+   private final PriceOrder byPrice;
+   private final Map<String, TypeRange> byType;
+
+   /**
+    * Builds the index.
+    *
+    * @param items the snapshot's items, ordered by trimmed type and then by
+    *              name
+    */
+   MenuIndex(Item[] items) {
+      this.items = items;
+      this.byPrice = new PriceOrder(items, 0, items.length);
+
+      Map<String, TypeRange> byType = new HashMap<String, TypeRange>();
+      int from = 0;
+      while (from < items.length) {
+         String type = items[from].typeOfItem().trim();
+         int to = from + 1;
+         while (to < items.length && items[to].typeOfItem().trim().equals(type))
+            to++;
+         byType.put(type, new TypeRange(items, from, to));
+         from = to;
+      } // end while
+      this.byType = byType;
+   }// end MenuIndex
+
+   /**
+    * Selects the items matching the viewMenu filters.
+    *
+    * @param type      the trimmed type to keep, or null for every type
+    * @param maxPrice  the highest price to keep, or null for every price
+    * @param sortOrder "ASC" or "DESC" to sort by price, anything else to keep
+    *                  the type and name order
+    * @return a read-only list of the matching items
+    */
+   public List<Item> select(String type, BigDecimal maxPrice, String sortOrder) {
+      int from = 0;
+      int to = this.items.length;
+      PriceOrder prices = this.byPrice;
+      if (type != null) {
+         TypeRange range = this.byType.get(type);
+         if (range == null)
+            return Collections.emptyList();
+         from = range.from;
+         to = range.to;
+         prices = range.byPrice;
+      } // end if
+
+      boolean asc = sortOrder.equals("ASC");
+      boolean desc = sortOrder.equals("DESC");
+      if (asc || desc) {
+         int count = maxPrice == null ? prices.positions.length : prices.countAtMost(maxPrice);
+         return new Selection(this.items, prices.positions, 0, count, desc);
+      } // end if
+      if (maxPrice == null)
+         return new Selection(this.items, null, from, to - from, false);
+
+      // back to name order: the matching positions, sorted
+      int[] matching = Arrays.copyOf(prices.positions, prices.countAtMost(maxPrice));
+      Arrays.sort(matching);
+      return new Selection(this.items, matching, 0, matching.length, false);
+   }// end select
+
+}// end MenuIndex
@@ -0,0 +1,116 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the Items table. Snapshots are never modified; a
+ * change to the menu produces a new snapshot with a higher version, so a
+ * reader holding one always sees a consistent menu.
+ *
+ */
+public final class MenuSnapshot implements Snapshot {
+
+   // the order placeOrder lists the menu in
+   private static final Comparator<Item> BY_TYPE_AND_NAME = Comparator
+         .comparing((Item item) -> item.typeOfItem().trim())
+         .thenComparing(Item::itemName);
+
+   private final long version;
+   private final String fingerprint;
+   private final List<Item> items;
+   private final Map<String, Item> byName;
+   private final MenuIndex index;
+
+   /**
+    * Creates a new snapshot.
+    *
+    * @param version     the version stamp, increasing with every change
+    * @param fingerprint the server-side fingerprint of the rows, or null when
+    *                    the snapshot was derived locally from a write
+    * @param items       the menu items, in any order
+    */
+   MenuSnapshot(long version, String fingerprint, List<Item> items) {
+      List<Item> sorted = new ArrayList<Item>(items);
+      sorted.sort(BY_TYPE_AND_NAME);
+      Map<String, Item> byName = new HashMap<String, Item>();
+      for (Item item : sorted)
+         byName.put(item.itemName().trim(), item);
+
+      this.version = version;
+      this.fingerprint = fingerprint;
+      this.items = Collections.unmodifiableList(sorted);
+      this.byName = Collections.unmodifiableMap(byName);
+      this.index = new MenuIndex(sorted.toArray(new Item[0]));
+   }// end MenuSnapshot
+
+   @Override
+   public long getVersion() {
+      return this.version;
+   }
+
+   @Override
+   public String getFingerprint() {
+      return this.fingerprint;
+   }
+
+   /**
+    * @return every item, ordered by type and then by name
+    */
+   public List<Item> getItems() {
+      return this.items;
+   }
+
+   /**
+    * Looks up an item by name, ignoring surrounding whitespace.
+    *
+    * @param itemName the item name
+    * @return the item, or null when it is not on the menu
+    */
+   public Item item(String itemName) {
+      return this.byName.get(itemName.trim());
+   }
+
+   /**
+    * Selects the items viewMenu shows for a set of filters, using the
+    * snapshot's MenuIndex.
+    *
+    * @param type      the trimmed type to keep, or null for every type
+    * @param maxPrice  the highest price to keep, or null for every price
+    * @param sortOrder "ASC" or "DESC" to sort by price, anything else to keep
+    *                  the type and name order
+    * @return a read-only list of the matching items
+    */
+   public List<Item> select(String type, BigDecimal maxPrice, String sortOrder) {
+      return this.index.select(type, maxPrice, sortOrder);
+   }// end select
+
+   /**
+    * Returns a snapshot with one item added or replaced.
+    *
+    * @param item    the new or changed item
+    * @param version the version of the new snapshot
+    * @return the new snapshot
+    */
+   MenuSnapshot with(Item item, long version) {
+      Map<String, Item> changed = new HashMap<String, Item>(this.byName);
+      changed.put(item.itemName().trim(), item);
+      return new MenuSnapshot(version, null, new ArrayList<Item>(changed.values()));
+   }// end with
+
+}// end MenuSnapshot
@@ -0,0 +1,33 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A FoodOrder header together with its lines, ordered by item name.
+ *
+ */
+public record OrderDetail(FoodOrder order, List<OrderLine> lines) {
+
+   /**
+    * @return the sum of the line subtotals, which the order total trigger
+    *         keeps totalPrice equal to
+    */
+   public BigDecimal calculatedTotal() {
+      BigDecimal total = BigDecimal.ZERO;
+      for (OrderLine line : this.lines)
+         total = total.add(line.subtotal());
+      return total;
+   }// end calculatedTotal
+
+}// end OrderDetail
@@ -0,0 +1,34 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * Optional filters on the order history. A null field does not filter.
+ *
+ */
+public record OrderFilter(Integer storeID, String orderStatus, String login) {
+
+   // every order
+   public static final OrderFilter NONE = new OrderFilter(null, null, null);
+
+   public OrderFilter withStoreID(Integer storeID) {
+      return new OrderFilter(storeID, this.orderStatus, this.login);
+   }
+
+   public OrderFilter withOrderStatus(String orderStatus) {
+      return new OrderFilter(this.storeID, orderStatus, this.login);
+   }
+
+   public OrderFilter withLogin(String login) {
+      return new OrderFilter(this.storeID, this.orderStatus, login);
+   }
+
+}// end OrderFilter
@@ -0,0 +1,72 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out FoodOrder IDs from blocks leased off the FoodOrder_orderID_seq
+ * sequence (hi/lo allocation). The sequence increments by BLOCK_SIZE, so
+ * each nextval reserves the range [value, value + BLOCK_SIZE) for this
+ * process alone. IDs inside a block are handed out without a round trip,
+ * and no two processes or threads can ever receive the same ID. IDs left in
+ * a block when the process exits are skipped, never reused.
+ *
+ * Threads are serialized with a ReentrantLock rather than a monitor, so a
+ * virtual thread waiting for a block to be leased does not pin its carrier
+ * thread.
+ *
+ */
+public class OrderIdAllocator {
+
+   // must match INCREMENT BY of FoodOrder_orderID_seq in create_tables.sql
+   public static final int BLOCK_SIZE = 50;
+
+   private final PizzaStore esql;
+   private final ReentrantLock lock = new ReentrantLock();
+
+   // next ID to hand out and the first ID past the current block
+   private long next = 0;
+   private long limit = 0;
+
+   /**
+    * Creates a new allocator. No block is leased until the first ID is
+    * requested.
+    *
+    * @param esql the store used to lease blocks from the sequence
+    */
+   public OrderIdAllocator(PizzaStore esql) {
+      this.esql = esql;
+   }// end OrderIdAllocator
+
+   /**
+    * Returns a new, unique order ID, leasing a new block from the sequence
+    * when the current one is used up.
+    *
+    * @return the order ID
+    * @throws java.sql.SQLException when a new block cannot be leased
+    */
+   public int nextID() throws SQLException {
+      this.lock.lock();
+      try {
+         if (this.next >= this.limit) {
+            Long start = this.esql.queryOne(Queries.ORDER_ID_BLOCK, RowMappers.LONG);
+            this.next = start;
+            this.limit = start + BLOCK_SIZE;
+         }
+         return Math.toIntExact(this.next++);
+      } finally {
+         this.lock.unlock();
+      }
+   }// end nextID
+
+}// end OrderIdAllocator
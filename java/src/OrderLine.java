@@ -0,0 +1,28 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+
+/**
+ * A row of the ItemsInOrder table joined with the unit price of its item.
+ *
+ */
+public record OrderLine(int orderID, String itemName, int quantity, BigDecimal unitPrice) {
+
+   /**
+    * @return unitPrice times quantity
+    */
+   public BigDecimal subtotal() {
+      return this.unitPrice.multiply(BigDecimal.valueOf(this.quantity));
+   }
+
+}// end OrderLine
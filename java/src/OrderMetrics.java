@@ -0,0 +1,126 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts orders placed and read by PizzaStoreService. Every update is a
+ * LongAdder increment, a LatencyHistogram record or a RateMeter mark, so
+ * sessions placing orders at the same time never wait on each other here.
+ *
+ */
+public class OrderMetrics implements OrderMetricsMXBean {
+
+   private final LongAdder orders = new LongAdder();
+   private final LongAdder failures = new LongAdder();
+   private final LongAdder items = new LongAdder();
+   private final LongAdder lines = new LongAdder();
+   private final RateMeter orderRate = new RateMeter(60);
+   private final LatencyHistogram placeOrder = new LatencyHistogram();
+   private final LatencyHistogram orderInfo = new LatencyHistogram();
+
+   /**
+    * Records an order written to the database.
+    *
+    * @param startNanos System.nanoTime() when placing the order started
+    * @param cart       the items ordered
+    */
+   public void orderPlaced(long startNanos, Cart cart) {
+      this.placeOrder.record(System.nanoTime() - startNanos);
+      this.orders.increment();
+      this.items.add(cart.getQuantity());
+      this.lines.add(cart.size());
+      this.orderRate.mark(1);
+   }// end orderPlaced
+
+   public void orderFailed() {
+      this.failures.increment();
+   }
+
+   /**
+    * Records a read of orders with their lines.
+    *
+    * @param startNanos System.nanoTime() when the read started
+    */
+   public void orderInfoRead(long startNanos) {
+      this.orderInfo.record(System.nanoTime() - startNanos);
+   }// end orderInfoRead
+
+   public long getOrdersPlaced() {
+      return this.orders.sum();
+   }
+
+   public long getOrderFailures() {
+      return this.failures.sum();
+   }
+
+   public double getOrdersPerSecond() {
+      return this.orderRate.getRate();
+   }
+
+   public double getItemsPerOrder() {
+      long count = this.orders.sum();
+      return count == 0 ? 0.0 : (double) this.items.sum() / count;
+   }
+
+   public double getLinesPerOrder() {
+      long count = this.orders.sum();
+      return count == 0 ? 0.0 : (double) this.lines.sum() / count;
+   }
+
+   public double getPlaceOrderMeanMillis() {
+      return this.placeOrder.getMeanNanos() / 1e6;
+   }
+
+   public double getPlaceOrderP50Millis() {
+      return this.placeOrder.percentile(0.50) / 1e6;
+   }
+
+   public double getPlaceOrderP99Millis() {
+      return this.placeOrder.percentile(0.99) / 1e6;
+   }
+
+   public double getPlaceOrderMaxMillis() {
+      return this.placeOrder.getMaxNanos() / 1e6;
+   }
+
+   public long getOrderInfoCount() {
+      return this.orderInfo.getCount();
+   }
+
+   public double getOrderInfoMeanMillis() {
+      return this.orderInfo.getMeanNanos() / 1e6;
+   }
+
+   public double getOrderInfoP50Millis() {
+      return this.orderInfo.percentile(0.50) / 1e6;
+   }
+
+   public double getOrderInfoP99Millis() {
+      return this.orderInfo.percentile(0.99) / 1e6;
+   }
+
+   public double getOrderInfoMaxMillis() {
+      return this.orderInfo.getMaxNanos() / 1e6;
+   }
+
+   public void reset() {
+      this.orders.reset();
+      this.failures.reset();
+      this.items.reset();
+      this.lines.reset();
+      this.orderRate.reset();
+      this.placeOrder.reset();
+      this.orderInfo.reset();
+   }// end reset
+
+}// end OrderMetrics
@@ -0,0 +1,64 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * Order throughput and the latency of placing and reading orders, published
+ * over JMX as pizzastore:type=Orders. Latencies are in milliseconds and
+ * cover everything since the start or the last reset.
+ *
+ */
+public interface OrderMetricsMXBean {
+
+   long getOrdersPlaced();
+
+   long getOrderFailures();
+
+   /**
+    * @return orders placed per second over the last minute
+    */
+   double getOrdersPerSecond();
+
+   /**
+    * @return the mean quantity of items per order placed
+    */
+   double getItemsPerOrder();
+
+   /**
+    * @return the mean number of distinct items per order placed
+    */
+   double getLinesPerOrder();
+
+   double getPlaceOrderMeanMillis();
+
+   double getPlaceOrderP50Millis();
+
+   double getPlaceOrderP99Millis();
+
+   double getPlaceOrderMaxMillis();
+
+   long getOrderInfoCount();
+
+   double getOrderInfoMeanMillis();
+
+   double getOrderInfoP50Millis();
+
+   double getOrderInfoP99Millis();
+
+   double getOrderInfoMaxMillis();
+
+   /**
+    * Clears every counter, rate and latency.
+    */
+   void reset();
+
+}// end OrderMetricsMXBean
@@ -0,0 +1,176 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages through the order history, newest first, with keyset pagination on
+ * (orderTimestamp, orderID). The pager remembers the first and last order of
+ * the current page; the next page starts after the last and the previous
+ * page ends before the first, so no page ever skips or counts rows it does
+ * not show. One extra row is fetched per page to tell whether there is
+ * another page in that direction.
+ *
+ */
+public class OrderPager {
+
+   private final PizzaStore esql;
+   private final OrderFilter filter;
+   private final int pageSize;
+
+   private List<FoodOrder> page = Collections.emptyList();
+   private boolean hasOlder = false;
+   private boolean hasNewer = false;
+
+   /**
+    * Creates a new pager. Nothing is read until the first page is asked for.
+    *
+    * @param esql     the store to read from
+    * @param filter   the filters to apply
+    * @param pageSize the number of orders per page
+    */
+   public OrderPager(PizzaStore esql, OrderFilter filter, int pageSize) {
+      if (pageSize < 1)
+         throw new IllegalArgumentException("pageSize must be at least 1: " + pageSize);
+      this.esql = esql;
+      this.filter = filter;
+      this.pageSize = pageSize;
+   }// end OrderPager
+
+   /**
+    * Reads the newest page.
+    *
+    * @return the orders on the page, newest first
+    * @throws java.sql.SQLException when the page cannot be read
+    */
+   public List<FoodOrder> first() throws SQLException {
+      List<FoodOrder> rows = fetch(Queries.PAGE_FIRST, null);
+      this.hasOlder = rows.size() > this.pageSize;
+      this.hasNewer = false;
+      this.page = trim(rows);
+      return this.page;
+   }// end first
+
+   /**
+    * Reads the page of orders older than the current one. The current page
+    * is kept when there are none.
+    *
+    * @return the orders on the page, newest first
+    * @throws java.sql.SQLException when the page cannot be read
+    */
+   public List<FoodOrder> next() throws SQLException {
+      if (this.page.isEmpty())
+         return first();
+      List<FoodOrder> rows = fetch(Queries.PAGE_OLDER, this.page.get(this.page.size() - 1));
+      if (rows.isEmpty()) {
+         this.hasOlder = false;
+         return this.page;
+      } // end if
+      this.hasOlder = rows.size() > this.pageSize;
+      this.hasNewer = true;
+      this.page = trim(rows);
+      return this.page;
+   }// end next
+
+   /**
+    * Reads the page of orders newer than the current one. When fewer than a
+    * full page remain, the newest page is read instead.
+    *
+    * @return the orders on the page, newest first
+    * @throws java.sql.SQLException when the page cannot be read
+    */
+   public List<FoodOrder> previous() throws SQLException {
+      if (this.page.isEmpty())
+         return first();
+      List<FoodOrder> rows = fetch(Queries.PAGE_NEWER, this.page.get(0));
+      if (rows.size() <= this.pageSize)
+         return first();
+      // newer rows come back oldest first
+      List<FoodOrder> newer = new ArrayList<FoodOrder>(rows.subList(0, this.pageSize));
+      Collections.reverse(newer);
+      this.hasOlder = true;
+      this.hasNewer = true;
+      this.page = Collections.unmodifiableList(newer);
+      return this.page;
+   }// end previous
+
+   /**
+    * Reads the page of orders older than a given order. A client that does
+    * not keep the pager between requests, such as an HTTP client, keeps its
+    * place by sending back the key of the last order it was shown.
+    *
+    * @param orderTimestamp the timestamp of the last order shown
+    * @param orderID        the ID of the last order shown
+    * @return the orders on the page, newest first
+    * @throws java.sql.SQLException when the page cannot be read
+    */
+   public List<FoodOrder> olderThan(Timestamp orderTimestamp, int orderID) throws SQLException {
+      List<FoodOrder> rows = fetch(Queries.PAGE_OLDER, new FoodOrder(orderID, null, 0, null, orderTimestamp, null));
+      this.hasOlder = rows.size() > this.pageSize;
+      this.hasNewer = true;
+      this.page = trim(rows);
+      return this.page;
+   }// end olderThan
+
+   /**
+    * @return the orders on the current page, newest first
+    */
+   public List<FoodOrder> getPage() {
+      return this.page;
+   }
+
+   public boolean hasOlder() {
+      return this.hasOlder;
+   }
+
+   public boolean hasNewer() {
+      return this.hasNewer;
+   }
+
+   public OrderFilter getFilter() {
+      return this.filter;
+   }
+
+   public int getPageSize() {
+      return this.pageSize;
+   }
+
+   // reads up to pageSize + 1 orders starting from the key of an order
+   private List<FoodOrder> fetch(int position, FoodOrder key) throws SQLException {
+      List<Object> params = new ArrayList<Object>();
+      if (this.filter.storeID() != null)
+         params.add(this.filter.storeID());
+      if (this.filter.orderStatus() != null)
+         params.add(this.filter.orderStatus());
+      if (this.filter.login() != null)
+         params.add(this.filter.login());
+      if (key != null) {
+         params.add(key.orderTimestamp());
+         params.add(key.orderID());
+      } // end if
+      params.add(this.pageSize + 1);
+
+      QueryTemplate query = Queries.orderPage(this.filter.storeID() != null, this.filter.orderStatus() != null,
+            this.filter.login() != null, position);
+      return this.esql.queryList(query, RowMappers.FOOD_ORDER, params.toArray());
+   }// end fetch
+
+   // drops the extra row fetched to look ahead
+   private List<FoodOrder> trim(List<FoodOrder> rows) {
+      return Collections.unmodifiableList(rows.size() > this.pageSize ? rows.subList(0, this.pageSize) : rows);
+   }// end trim
+
+}// end OrderPager
@@ -0,0 +1,45 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The values FoodOrder.orderStatus may be set to.
+ *
+ */
+public final class OrderStatus {
+
+   public static final String COMPLETE = "complete";
+   public static final String INCOMPLETE = "incomplete";
+
+   // every status an order may be moved to
+   public static final Set<String> ALLOWED = Set.of(COMPLETE, INCOMPLETE);
+
+   private OrderStatus() {
+   }
+
+   /**
+    * Normalizes a status as entered and checks it is allowed.
+    *
+    * @param status the status
+    * @return the stored form of the status
+    * @throws IllegalArgumentException when the status is not allowed
+    */
+   public static String require(String status) {
+      String normalized = status == null ? "" : status.trim().toLowerCase(Locale.ROOT);
+      if (!ALLOWED.contains(normalized))
+         throw new IllegalArgumentException("Invalid status '" + status + "', expected one of " + ALLOWED);
+      return normalized;
+   }// end require
+
+}// end OrderStatus
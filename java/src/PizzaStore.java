@@ -13,16 +13,36 @@
 import java.sql.DriverManager;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.format.DateTimeFormatter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.Math;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * This class defines a simple embedded SQL utility class that is designed to
@@ -31,29 +51,64 @@ import java.lang.Math;
  */
 public class PizzaStore {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // how order timestamps are displayed
+   private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+   // pool of physical database connections shared by every session
+   private ConnectionPool _pool = null;
+
+   // hands out new FoodOrder IDs
+   private final OrderIdAllocator _orderIDs = new OrderIdAllocator(this);
+
+   // snapshot of the menu, polled for outside changes every
+   // pizzastore.menu.pollSeconds seconds (0 disables the poll)
+   private final MenuCache _menu = new MenuCache(this, Long.getLong("pizzastore.menu.pollSeconds", 30L));
+
+   // directory of stores, polled for openings and closings every
+   // pizzastore.stores.pollSeconds seconds (0 disables the poll)
+   private final StoreCache _stores = new StoreCache(this, Long.getLong("pizzastore.stores.pollSeconds", 30L));
+
+   // the store operations, shared by the console and every other client
+   private final PizzaStoreService _service = new PizzaStoreService(this);
+
+   // latency, rows and bytes of every statement by template; statements over
+   // pizzastore.slowQuery.millis are also appended to pizzastore.slowQuery.log
+   private final QueryStats _stats = new QueryStats(Long.getLong("pizzastore.slowQuery.millis", 200L),
+         System.getProperty("pizzastore.slowQuery.log") == null ? null
+               : Paths.get(System.getProperty("pizzastore.slowQuery.log")));
+
+   // stores listed per page by the store picker and viewStores
+   private static final int STORE_PAGE_SIZE = Integer.getInteger("pizzastore.stores.pageSize", 20);
+
+   // orders listed per page by viewAllOrders
+   static final int ORDER_PAGE_SIZE = Integer.getInteger("pizzastore.orders.pageSize", 20);
 
    // handling the keyboard inputs through a BufferedReader
    // This variable can be global for convenience.
    static BufferedReader in = new BufferedReader(
          new InputStreamReader(System.in));
 
-   private String currentUserLogin = null;
-   private String currentUserRole = null;
+   // the logged in user, or null
+   private Session session = null;
 
-   public void setCurrentUser(String login, String role) {
-      this.currentUserLogin = login;
-      this.currentUserRole = role;
+   public Session getSession() {
+      return this.session;
+   }
+
+   public void setSession(Session session) {
+      this.session = session;
    }
 
    /**
-    * Creates a new instance of PizzaStore
+    * Creates a new instance of PizzaStore. The connection pool is sized from
+    * the pizzastore.pool.min, pizzastore.pool.max,
+    * pizzastore.pool.borrowTimeoutMillis and pizzastore.pool.idleTimeoutMillis
+    * system properties.
     *
-    * @param hostname the MySQL or PostgreSQL server hostname
-    * @param database the name of the database
-    * @param username the user name used to login to the database
-    * @param password the user login password
+    * @param dbname the name of the database
+    * @param dbport the port the PostgreSQL server listens on
+    * @param user   the user name used to login to the database
+    * @param passwd the user login password
     * @throws java.sql.SQLException when failed to make a connection.
     */
    public PizzaStore(String dbname, String dbport, String user, String passwd) throws SQLException {
@@ -64,8 +119,20 @@ public class PizzaStore {
          String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
          System.out.println("Connection URL: " + url + "\n");
 
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
+         // open the pool of physical connections
+         this._pool = new ConnectionPool(url, user, passwd,
+               Integer.getInteger("pizzastore.pool.min", 1),
+               Integer.getInteger("pizzastore.pool.max", 8),
+               Long.getLong("pizzastore.pool.borrowTimeoutMillis", 5000L),
+               Long.getLong("pizzastore.pool.idleTimeoutMillis", 60000L));
+         // opt-in plan capture of statements over pizzastore.explain.millis
+         Long explainMillis = Long.getLong("pizzastore.explain.millis");
+         if (explainMillis != null) {
+            this._stats.setPlanCapture(new PlanCapture(this._pool, explainMillis,
+                  Integer.getInteger("pizzastore.explain.perMinute", 6),
+                  Long.getLong("pizzastore.explain.intervalSeconds", 600L)));
+         } // end if
+         registerMBeans();
          System.out.println("Done");
       } catch (Exception e) {
          System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
@@ -74,6 +141,36 @@ public class PizzaStore {
       } // end catch
    }// end PizzaStore
 
+   public ConnectionPool getPool() {
+      return this._pool;
+   }
+
+   public OrderIdAllocator getOrderIDs() {
+      return this._orderIDs;
+   }
+
+   public MenuCache getMenu() {
+      return this._menu;
+   }
+
+   public StoreCache getStores() {
+      return this._stores;
+   }
+
+   public PizzaStoreService getService() {
+      return this._service;
+   }
+
+   // numbers the instances in this JVM, so each registers its own MBeans
+   private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+   // MBeans registered by this instance, unregistered by cleanup
+   private final List<ObjectName> _mbeans = new ArrayList<ObjectName>();
+
+   public QueryStats getStats() {
+      return this._stats;
+   }
+
    /**
     * Method to execute an update SQL statement. Update SQL instructions
     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
@@ -82,14 +179,19 @@ public class PizzaStore {
     * @throws java.sql.SQLException when update failed
     */
    public void executeUpdate(String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement();
-
-      // issues the update instruction
-      stmt.executeUpdate(sql);
-
-      // close the instruction
-      stmt.close();
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         // creates a statement object
+         try (Statement stmt = lease.getConnection().createStatement()) {
+            // issues the update instruction
+            long start = System.nanoTime();
+            int rowCount = stmt.executeUpdate(sql);
+            this._stats.record(sql, start, rowCount, 0);
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(sql);
+            throw e;
+         }
+      }
    }// end executeUpdate
 
    /**
@@ -102,12 +204,272 @@ public class PizzaStore {
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQueryAndPrintResult(String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement();
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         // creates a statement object
+         try (Statement stmt = lease.getConnection().createStatement()) {
+            long start = System.nanoTime();
+            long[] bytes = new long[1];
+            int rowCount;
+            try (ResultSet rs = stmt.executeQuery(query)) {
+               rowCount = printResult(rs, bytes);
+            }
+            this._stats.record(query, start, rowCount, bytes[0]);
+            return rowCount;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(query);
+            throw e;
+         }
+      }
+   }// end executeQueryAndPrintResult
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT). This
+    * method issues the query to the DBMS and returns the results as
+    * a list of records. Each record in turn is a list of attribute values
+    *
+    * @param query the input query string
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult(String query) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         // creates a statement object
+         try (Statement stmt = lease.getConnection().createStatement()) {
+            long start = System.nanoTime();
+            List<List<String>> result;
+            try (ResultSet rs = stmt.executeQuery(query)) {
+               result = collectResult(rs);
+            }
+            this._stats.record(query, start, result.size(), textBytes(result));
+            return result;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(query);
+            throw e;
+         }
+      }
+   }// end executeQueryAndReturnResult
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT). This
+    * method issues the query to the DBMS and returns the number of results
+    *
+    * @param query the input query string
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery(String query) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         // creates a statement object
+         try (Statement stmt = lease.getConnection().createStatement()) {
+            long start = System.nanoTime();
+            int rowCount;
+            try (ResultSet rs = stmt.executeQuery(query)) {
+               rowCount = countResult(rs);
+            }
+            this._stats.record(query, start, rowCount, 0);
+            return rowCount;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(query);
+            throw e;
+         }
+      }
+   }// end executeQuery
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery(query);
+   /**
+    * Binds positional parameters to a prepared statement. Parameters are
+    * bound in order, null values are sent as SQL NULL.
+    *
+    * @param stmt   the prepared statement
+    * @param params the parameter values
+    * @throws java.sql.SQLException when a value cannot be bound
+    */
+   static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+      for (int i = 0; i < params.length; ++i) {
+         Object value = params[i];
+         int index = i + 1;
+         if (value == null)
+            stmt.setNull(index, Types.VARCHAR);
+         else if (value instanceof Integer)
+            stmt.setInt(index, (Integer) value);
+         else if (value instanceof Long)
+            stmt.setLong(index, (Long) value);
+         else if (value instanceof BigDecimal)
+            stmt.setBigDecimal(index, (BigDecimal) value);
+         else if (value instanceof Double)
+            stmt.setDouble(index, (Double) value);
+         else if (value instanceof Boolean)
+            stmt.setBoolean(index, (Boolean) value);
+         else if (value instanceof Timestamp)
+            stmt.setTimestamp(index, (Timestamp) value);
+         else
+            stmt.setString(index, value.toString());
+      } // end for
+   }// end bind
 
+   /**
+    * Method to execute an update SQL statement from a query template. The
+    * prepared statement is taken from the statement cache of the leased
+    * connection.
+    *
+    * @param template the query template
+    * @param params   the values bound to the template placeholders
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate(QueryTemplate template, Object... params) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         try {
+            return executeUpdate(lease, template, params);
+         } catch (SQLException e) {
+            lease.markSuspect();
+            throw e;
+         }
+      }
+   }// end executeUpdate
+
+   /**
+    * Method to execute an update SQL statement from a query template on a
+    * connection that is already leased, normally as one statement of a
+    * transaction.
+    *
+    * @param lease    the leased connection
+    * @param template the query template
+    * @param params   the values bound to the template placeholders
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate(ConnectionPool.Lease lease, QueryTemplate template, Object... params)
+         throws SQLException {
+      try {
+         PreparedStatement stmt = lease.getStatements().prepare(template);
+         bind(stmt, params);
+         long start = System.nanoTime();
+         int rowCount = stmt.executeUpdate();
+         this._stats.record(template, params, start, rowCount, 0);
+         return rowCount;
+      } catch (SQLException e) {
+         this._stats.recordFailure(template);
+         throw e;
+      }
+   }// end executeUpdate
+
+   /**
+    * Method to execute a query template and return the results as a list of
+    * records. Each record in turn is a list of attribute values
+    *
+    * @param template the query template
+    * @param params   the values bound to the template placeholders
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult(QueryTemplate template, Object... params)
+         throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         try {
+            PreparedStatement stmt = lease.getStatements().prepare(template);
+            bind(stmt, params);
+            long start = System.nanoTime();
+            List<List<String>> result;
+            try (ResultSet rs = stmt.executeQuery()) {
+               result = collectResult(rs);
+            }
+            this._stats.record(template, params, start, result.size(), textBytes(result));
+            return result;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(template);
+            throw e;
+         }
+      }
+   }// end executeQueryAndReturnResult
+
+   /**
+    * Method to execute a query template and decode every row into a typed
+    * value.
+    *
+    * @param template the query template
+    * @param mapper   decodes one row
+    * @param params   the values bound to the template placeholders
+    * @return the decoded rows in result order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> List<T> queryList(QueryTemplate template, RowMapper<T> mapper, Object... params) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         try {
+            PreparedStatement stmt = lease.getStatements().prepare(template);
+            bind(stmt, params);
+            long start = System.nanoTime();
+            List<T> result = new ArrayList<T>();
+            try (ResultSet rs = stmt.executeQuery()) {
+               while (rs.next()) {
+                  result.add(mapper.map(rs));
+               } // end while
+            }
+            this._stats.record(template, params, start, result.size(), 0);
+            return result;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(template);
+            throw e;
+         }
+      }
+   }// end queryList
+
+   /**
+    * Method to execute a query template and decode its first row.
+    *
+    * @param template the query template
+    * @param mapper   decodes the row
+    * @param params   the values bound to the template placeholders
+    * @return the decoded first row, or null when the query returned nothing
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> T queryOne(QueryTemplate template, RowMapper<T> mapper, Object... params) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         try {
+            PreparedStatement stmt = lease.getStatements().prepare(template);
+            bind(stmt, params);
+            long start = System.nanoTime();
+            T result = null;
+            int rowCount = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+               if (rs.next()) {
+                  result = mapper.map(rs);
+                  rowCount = 1;
+               }
+            }
+            this._stats.record(template, params, start, rowCount, 0);
+            return result;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(template);
+            throw e;
+         }
+      }
+   }// end queryOne
+
+   /**
+    * Method to test whether a row exists. The template must select a single
+    * boolean, normally as SELECT EXISTS (...), so the server stops at the
+    * first matching row and only one value crosses the wire.
+    *
+    * @param template an EXISTS query template
+    * @param params   the values bound to the template placeholders
+    * @return true when a matching row exists
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public boolean exists(QueryTemplate template, Object... params) throws SQLException {
+      Boolean found = queryOne(template, RowMappers.BOOLEAN, params);
+      return found != null && found;
+   }// end exists
+
+   /*
+    * iterates through the result set and output them to standard out.
+    */
+   private static int printResult(ResultSet rs, long[] bytes) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set. The metadata
        ** contains row and column info.
@@ -116,7 +478,6 @@ public class PizzaStore {
       int numCol = rsmd.getColumnCount();
       int rowCount = 0;
 
-      // iterates through the result set and output them to standard out.
       boolean outputHeader = true;
       while (rs.next()) {
          if (outputHeader) {
@@ -126,125 +487,364 @@ public class PizzaStore {
             System.out.println();
             outputHeader = false;
          }
-         for (int i = 1; i <= numCol; ++i)
-            System.out.print(rs.getString(i) + "\t");
+         for (int i = 1; i <= numCol; ++i) {
+            String value = rs.getString(i);
+            if (value != null)
+               bytes[0] += QueryStats.utf8Length(value);
+            System.out.print(value + "\t");
+         }
          System.out.println();
          ++rowCount;
       } // end while
-      stmt.close();
       return rowCount;
-   }// end executeQuery
+   }// end printResult
 
-   /**
-    * Method to execute an input query SQL instruction (i.e. SELECT). This
-    * method issues the query to the DBMS and returns the results as
-    * a list of records. Each record in turn is a list of attribute values
-    *
-    * @param query the input query string
-    * @return the query result as a list of records
-    * @throws java.sql.SQLException when failed to execute the query
+   /*
+    * iterates through the result set and saves the data returned by the query.
     */
-   public List<List<String>> executeQueryAndReturnResult(String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery(query);
-
-      /*
-       ** obtains the metadata object for the returned result set. The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData();
-      int numCol = rsmd.getColumnCount();
-      int rowCount = 0;
-
-      // iterates through the result set and saves the data returned by the query.
-      boolean outputHeader = false;
+   private static List<List<String>> collectResult(ResultSet rs) throws SQLException {
+      int numCol = rs.getMetaData().getColumnCount();
       List<List<String>> result = new ArrayList<List<String>>();
       while (rs.next()) {
-         List<String> record = new ArrayList<String>();
+         List<String> record = new ArrayList<String>(numCol);
          for (int i = 1; i <= numCol; ++i)
             record.add(rs.getString(i));
          result.add(record);
       } // end while
-      stmt.close();
       return result;
-   }// end executeQueryAndReturnResult
+   }// end collectResult
 
-   /**
-    * Method to execute an input query SQL instruction (i.e. SELECT). This
-    * method issues the query to the DBMS and returns the number of results
-    *
-    * @param query the input query string
-    * @return the number of rows returned
-    * @throws java.sql.SQLException when failed to execute the query
+   /*
+    * adds up the UTF-8 length of every value in a collected result.
     */
-   public int executeQuery(String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery(query);
+   private static long textBytes(List<List<String>> result) {
+      long bytes = 0;
+      for (List<String> record : result)
+         for (String value : record)
+            if (value != null)
+               bytes += QueryStats.utf8Length(value);
+      return bytes;
+   }// end textBytes
 
+   /*
+    * iterates through the result set and count nuber of results.
+    */
+   private static int countResult(ResultSet rs) throws SQLException {
       int rowCount = 0;
-
-      // iterates through the result set and count nuber of results.
       while (rs.next()) {
          rowCount++;
       } // end while
-      stmt.close();
       return rowCount;
-   }
+   }// end countResult
+
+   /**
+    * Method to run several statements as one transaction on a single leased
+    * connection. The transaction commits when the callback returns and rolls
+    * back when it throws.
+    *
+    * @param callback the work to run
+    * @return the value returned by the callback
+    * @throws java.sql.SQLException when a statement or the commit failed
+    */
+   public <T> T inTransaction(TransactionCallback<T> callback) throws SQLException {
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         Connection connection = lease.getConnection();
+         try {
+            connection.setAutoCommit(false);
+            T result = callback.run(lease);
+            connection.commit();
+            connection.setAutoCommit(true);
+            return result;
+         } catch (SQLException e) {
+            // the pool rolls back the open transaction when the lease is returned
+            lease.markSuspect();
+            throw e;
+         }
+      }
+   }// end inTransaction
+
+   /**
+    * Method to write a cart as a new order. The FoodOrder header and every
+    * ItemsInOrder line are written in one transaction, the lines as a single
+    * multi-row INSERT, so placing an order costs the same few round trips
+    * however many items it has. totalPrice starts at 0 and is raised by the
+    * statement-level trigger on ItemsInOrder, which fires once for the
+    * insert.
+    *
+    * @param login the customer placing the order
+    * @param cart  the items ordered, must not be empty
+    * @return the ID of the new order
+    * @throws java.sql.SQLException when the order could not be written
+    */
+   public int checkout(String login, Cart cart) throws SQLException {
+      final int orderID = this._orderIDs.nextID();
+      return inTransaction(lease -> {
+         executeUpdate(lease, Queries.ORDER_INSERT, orderID, login, cart.getStoreID());
+
+         List<OrderLine> orderLines = cart.getLines(orderID);
+         Object[] params = new Object[orderLines.size() * 3];
+         int i = 0;
+         for (OrderLine line : orderLines) {
+            params[i++] = line.orderID();
+            params[i++] = line.itemName();
+            params[i++] = line.quantity();
+         }
+         executeUpdate(lease, Queries.orderLineInsert(orderLines.size()), params);
+         return orderID;
+      });
+   }// end checkout
+
+   /**
+    * Method to read one order with its lines in a single query. When a login
+    * is given the order is only returned if it belongs to that customer, so
+    * the permission check costs no extra round trip.
+    *
+    * @param orderID the order
+    * @param login   the customer the order must belong to, or null for staff
+    * @return the order, or null when it does not exist or is not the
+    *         customer's
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public OrderDetail orderDetail(int orderID, String login) throws SQLException {
+      Map<Integer, OrderDetail> details = login == null
+            ? readOrderDetails(Queries.ORDER_DETAIL, orderID)
+            : readOrderDetails(Queries.ORDER_DETAIL_FOR_LOGIN, orderID, login);
+      return details.get(orderID);
+   }// end orderDetail
+
+   /**
+    * Method to read several orders with their lines. Each batch of up to
+    * Queries.MAX_IN_LIST orders is one query; the IN list is padded by
+    * repeating the last ID so only a few statement shapes exist.
+    *
+    * @param orderIDs the orders, duplicates are read once
+    * @param login    the customer the orders must belong to, or null for staff
+    * @return the orders found, in the order they were asked for
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public Map<Integer, OrderDetail> orderDetails(Collection<Integer> orderIDs, String login) throws SQLException {
+      List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(orderIDs));
+      Map<Integer, OrderDetail> found = new HashMap<Integer, OrderDetail>();
+      for (int from = 0; from < ids.size(); from += Queries.MAX_IN_LIST) {
+         List<Integer> batch = ids.subList(from, Math.min(from + Queries.MAX_IN_LIST, ids.size()));
+         List<Object> params = new ArrayList<Object>();
+         addInList(params, batch);
+         if (login != null)
+            params.add(login);
+         found.putAll(readOrderDetails(Queries.orderDetails(batch.size(), login != null), params.toArray()));
+      } // end for
+
+      Map<Integer, OrderDetail> details = new LinkedHashMap<Integer, OrderDetail>();
+      for (Integer id : ids) {
+         OrderDetail detail = found.get(id);
+         if (detail != null)
+            details.put(id, detail);
+      } // end for
+      return details;
+   }// end orderDetails
+
+   /**
+    * Method to move many orders to a new status in one transaction, one
+    * UPDATE ... RETURNING per Queries.MAX_IN_LIST orders. Orders that do not
+    * exist or already have the status are left alone and not returned, so
+    * no existence check is needed beforehand.
+    *
+    * @param orderIDs the orders to update
+    * @param status   the new status, one of OrderStatus.ALLOWED
+    * @return the orders whose status changed
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public List<Integer> updateOrderStatus(Collection<Integer> orderIDs, String status) throws SQLException {
+      String newStatus = OrderStatus.require(status);
+      List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(orderIDs));
+      if (ids.isEmpty())
+         return ids;
+      return inTransaction(lease -> {
+         List<Integer> changed = new ArrayList<Integer>();
+         for (int from = 0; from < ids.size(); from += Queries.MAX_IN_LIST) {
+            List<Integer> batch = ids.subList(from, Math.min(from + Queries.MAX_IN_LIST, ids.size()));
+            List<Object> params = new ArrayList<Object>();
+            params.add(newStatus);
+            addInList(params, batch);
+            params.add(newStatus);
+            changed.addAll(returning(lease, Queries.orderSetStatus(batch.size()), params.toArray()));
+         } // end for
+         return changed;
+      });
+   }// end updateOrderStatus
+
+   /**
+    * Method to move every order of a store from one status to another in a
+    * single UPDATE ... RETURNING.
+    *
+    * @param storeID    the store
+    * @param fromStatus the status the orders have now
+    * @param toStatus   the new status, one of OrderStatus.ALLOWED
+    * @return the orders whose status changed
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public List<Integer> updateOrderStatus(int storeID, String fromStatus, String toStatus) throws SQLException {
+      Object[] params = { OrderStatus.require(toStatus), storeID, OrderStatus.require(fromStatus) };
+      return inTransaction(lease -> returning(lease, Queries.ORDER_SET_STATUS_BY_STORE, params));
+   }// end updateOrderStatus
+
+   // runs an UPDATE ... RETURNING orderID on a leased connection
+   private List<Integer> returning(ConnectionPool.Lease lease, QueryTemplate template, Object[] params)
+         throws SQLException {
+      try {
+         PreparedStatement stmt = lease.getStatements().prepare(template);
+         bind(stmt, params);
+         long start = System.nanoTime();
+         List<Integer> ids = new ArrayList<Integer>();
+         try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next())
+               ids.add(RowMappers.INTEGER.map(rs));
+         }
+         this._stats.record(template, params, start, ids.size(), 0);
+         return ids;
+      } catch (SQLException e) {
+         this._stats.recordFailure(template);
+         throw e;
+      }
+   }// end returning
+
+   // adds an IN list of orderIDs, padded to its bucket with the last ID
+   private static void addInList(List<Object> params, List<Integer> orderIDs) {
+      params.addAll(orderIDs);
+      for (int i = orderIDs.size(); i < Queries.inListBucket(orderIDs.size()); ++i)
+         params.add(orderIDs.get(orderIDs.size() - 1));
+   }// end addInList
+
+   /*
+    * groups the rows of an order detail query by order. The result is a
+    * handful of lines per order, so it is read in one go with queryList; the
+    * header of each order is decoded from its first row.
+    */
+   private Map<Integer, OrderDetail> readOrderDetails(QueryTemplate template, Object... params) throws SQLException {
+      Map<Integer, FoodOrder> headers = new LinkedHashMap<Integer, FoodOrder>();
+      Map<Integer, List<OrderLine>> lines = new HashMap<Integer, List<OrderLine>>();
+      List<OrderLine> rows = queryList(template, rs -> {
+         int orderID = rs.getInt(1);
+         if (!headers.containsKey(orderID)) {
+            headers.put(orderID, RowMappers.FOOD_ORDER.map(rs));
+            lines.put(orderID, new ArrayList<OrderLine>());
+         }
+         return RowMappers.ORDER_DETAIL_LINE.map(rs);
+      }, params);
+      for (OrderLine line : rows)
+         if (line != null)
+            lines.get(line.orderID()).add(line);
+
+      Map<Integer, OrderDetail> details = new LinkedHashMap<Integer, OrderDetail>();
+      for (FoodOrder order : headers.values())
+         details.put(order.orderID(),
+               new OrderDetail(order, Collections.unmodifiableList(lines.get(order.orderID()))));
+      return details;
+   }// end readOrderDetails
 
    /**
     * Method to fetch the last value from sequence. This
     * method issues the query to the DBMS and returns the current
-    * value of sequence used for autogenerated keys
+    * value of sequence used for autogenerated keys. currval is session
+    * local, so this only sees nextval calls made on the same pooled
+    * connection.
     *
     * @param sequence name of the DB sequence
     * @return current value of a sequence
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int getCurrSeqVal(String sequence) throws SQLException {
-      Statement stmt = this._connection.createStatement();
-
-      ResultSet rs = stmt.executeQuery(String.format("Select currval('%s')", sequence));
-      if (rs.next())
-         return rs.getInt(1);
-      return -1;
+      try (ConnectionPool.Lease lease = this._pool.borrow()) {
+         try {
+            PreparedStatement stmt = lease.getStatements().prepare(Queries.SEQUENCE_CURRVAL);
+            bind(stmt, new Object[] { sequence });
+            long start = System.nanoTime();
+            int value = -1;
+            try (ResultSet rs = stmt.executeQuery()) {
+               if (rs.next())
+                  value = rs.getInt(1);
+            }
+            this._stats.record(Queries.SEQUENCE_CURRVAL, new Object[] { sequence }, start, value == -1 ? 0 : 1, 0);
+            return value;
+         } catch (SQLException e) {
+            lease.markSuspect();
+            this._stats.recordFailure(Queries.SEQUENCE_CURRVAL);
+            throw e;
+         }
+      }
    }
 
-   /**
-    * Method to close the physical connection if it is open.
+   /*
+    * publishes the pool, cache, statement and order metrics as platform
+    * MBeans in the pizzastore domain, for jconsole or any other JMX client.
+    * A second instance in the same JVM adds instance=N to its names.
     */
-   public void cleanup() {
+   private void registerMBeans() {
+      int instance = INSTANCES.getAndIncrement();
+      String suffix = instance == 0 ? "" : ",instance=" + instance;
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
       try {
-         if (this._connection != null) {
-            this._connection.close();
-         } // end if
-      } catch (SQLException e) {
-         // ignored.
+         registerMBean(server, "pizzastore:type=ConnectionPool" + suffix, this._pool);
+         registerMBean(server, "pizzastore:type=Cache,name=menu" + suffix, this._menu);
+         registerMBean(server, "pizzastore:type=Cache,name=stores" + suffix, this._stores);
+         registerMBean(server, "pizzastore:type=Statements" + suffix, this._stats);
+         registerMBean(server, "pizzastore:type=Orders" + suffix, this._service.getOrderMetrics());
+      } catch (JMException e) {
+         System.err.println("Unable to publish the JMX metrics: " + e.getMessage());
       } // end try
+   }// end registerMBeans
+
+   private void registerMBean(MBeanServer server, String name, Object mbean) throws JMException {
+      ObjectName objectName = new ObjectName(name);
+      server.registerMBean(mbean, objectName);
+      this._mbeans.add(objectName);
+   }// end registerMBean
+
+   /**
+    * Method to close the pooled physical connections.
+    */
+   public void cleanup() {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      for (ObjectName name : this._mbeans) {
+         try {
+            server.unregisterMBean(name);
+         } catch (JMException e) {
+            // ignored, already gone.
+         } // end try
+      } // end for
+      this._mbeans.clear();
+      PlanCapture plans = this._stats.getPlanCapture();
+      if (plans != null) {
+         this._stats.setPlanCapture(null);
+         plans.close();
+      } // end if
+      this._menu.close();
+      this._stores.close();
+      if (this._pool != null) {
+         this._pool.close();
+      } // end if
    }// end cleanup
 
    /**
     * The main execution method
     *
     * @param args the command line arguments this inclues the <mysql|pgsql> <login
-    *             file>
+    *             file>, optionally followed by command files to run headless
+    *             (see ScriptRunner), or - to read commands from standard input
     */
    public static void main(String[] args) {
-      if (args.length != 3) {
+      if (args.length < 3) {
          System.err.println(
                "Usage: " +
                      "java [-classpath <classpath>] " +
                      PizzaStore.class.getName() +
-                     " <dbname> <port> <user>");
+                     " <dbname> <port> <user> [<script file>|- ...]");
          return;
       } // end if
 
-      Greeting();
+      if (args.length == 3) {
+         Greeting();
+      }
       PizzaStore esql = null;
       try {
          // use postgres JDBC driver.
@@ -256,7 +856,18 @@ public class PizzaStore {
          String user = args[2];
          esql = new PizzaStore(dbname, dbport, user, "");
          // nobody is logged in yet
-         esql.setCurrentUser("", "");
+         esql.setSession(null);
+
+         if (args.length > 3) {
+            // replay the command files, each as its own session, instead of
+            // reading the menus
+            int failures = ScriptRunner.runAll(esql.getService(), Arrays.asList(args).subList(3, args.length),
+                  System.out);
+            if (failures > 0) {
+               System.err.println(failures + " command(s) failed");
+            }
+            return;
+         }
 
          boolean keepon = true;
          while (keepon) {
@@ -281,7 +892,7 @@ public class PizzaStore {
                   System.out.println("Unrecognized choice!");
                   break;
             }// end switch
-            if (!esql.currentUserRole.isEmpty()) {
+            if (esql.session != null) {
                boolean usermenu = true;
                while (usermenu) {
                   System.out.println("");
@@ -297,16 +908,17 @@ public class PizzaStore {
                                                                    // see detailed information about the order
                   System.out.println("8. View Stores");
 
-                  if (!esql.currentUserRole.equals("customer")) {
+                  if (!esql.session.isCustomer()) {
                      // **the following functionalities should only be able to be used by drivers &
                      // managers**
                      System.out.println("9. Update Order Status");
                   }
 
                   // **the following functionalities should ony be able to be used by managers**
-                  if (esql.currentUserRole.equals("manager")) {
+                  if (esql.session.isManager()) {
                      System.out.println("10. Update Menu");
                      System.out.println("11. Update User");
+                     System.out.println("12. View Query Statistics");
                   }
 
                   System.out.println(".........................");
@@ -337,7 +949,7 @@ public class PizzaStore {
                         viewStores(esql);
                         break;
                      case 9:
-                        if (!esql.currentUserRole.equals("customer")) {
+                        if (!esql.session.isCustomer()) {
                            updateOrderStatus(esql);
                         } else {
                            System.out
@@ -345,22 +957,29 @@ public class PizzaStore {
                         }
                         break;
                      case 10:
-                        if (esql.currentUserRole.equals("manager")) {
+                        if (esql.session.isManager()) {
                            updateMenu(esql);
                         } else {
                            System.out.println("Unauthorized access! Only managers can update the menu.");
                         }
                         break;
                      case 11:
-                        if (esql.currentUserRole.equals("manager")) {
+                        if (esql.session.isManager()) {
                            updateUser(esql);
                         } else {
                            System.out.println("Unauthorized access! Only managers can update users.");
                         }
                         break;
+                     case 12:
+                        if (esql.session.isManager()) {
+                           viewQueryStats(esql);
+                        } else {
+                           System.out.println("Unauthorized access! Only managers can view query statistics.");
+                        }
+                        break;
                      case 20:
                         usermenu = false;
-                        esql.setCurrentUser("", "");
+                        esql.setSession(null);
                         break;
                      default:
                         System.out.println("Unrecognized choice!");
@@ -385,6 +1004,13 @@ public class PizzaStore {
       } // end try
    }// end main
 
+   /*
+    * Formats an order timestamp the way the database prints it
+    **/
+   static String formatTimestamp(Timestamp timestamp) {
+      return timestamp.toLocalDateTime().format(TIMESTAMP_FORMAT);
+   }// end formatTimestamp
+
    public static void Greeting() {
       System.out.println(
             "\n\n*******************************************************\n" +
@@ -422,24 +1048,20 @@ public class PizzaStore {
          System.out.println("CREATE USER");
          System.out.println("-------------");
          System.out.print("Enter your login: ");
-         String login = in.readLine().trim();
+         String login = Session.normalize(in.readLine());
+         if (login.isEmpty()) {
+            System.out.println("The login cannot be empty.");
+            return;
+         }
 
          System.out.print("Enter your password: ");
-         String password = in.readLine().trim();
+         String password = Session.normalize(in.readLine());
 
          System.out.print("Enter your phone number: ");
          String phoneNum = in.readLine().trim();
 
-         String role = "customer";
-         String favoriteItems = "NULL";
-
          try {
-            String query = String.format(
-                  "INSERT INTO Users (login, password, role, favoriteItems, phoneNum) " +
-                        "VALUES ('%s', '%s', '%s', NULL, '%s');",
-                  login, password, role, phoneNum);
-
-            esql.executeUpdate(query);
+            esql.getService().createUser(login, password, phoneNum);
             System.out.println("User created successfully in the database!");
             System.out.println("\n");
          } catch (SQLException e) {
@@ -462,27 +1084,20 @@ public class PizzaStore {
          System.out.println("LOGIN");
          System.out.println("-------------");
          System.out.print("Enter your login: ");
-         String login = in.readLine().trim();
+         String login = Session.normalize(in.readLine());
 
          System.out.print("Enter your password: ");
-         String password = in.readLine().trim();
-
-         String query = String.format(
-               "SELECT login, role FROM Users WHERE TRIM(login) = TRIM('%s') AND TRIM(password) = TRIM('%s');",
-               login, password);
+         String password = Session.normalize(in.readLine());
 
-         List<List<String>> result = esql.executeQueryAndReturnResult(query);
-
-         if (result.size() > 0) {
-            String userLogin = result.get(0).get(0).trim();
-            String role = result.get(0).get(1).trim();
+         Session session = esql.getService().logIn(login, password);
 
+         if (session != null) {
             System.out.println("Login successful!");
-            System.out.println("Welcome, " + userLogin + "! Your role is: " + role);
+            System.out.println("Welcome, " + session.getLogin() + "! Your role is: " + session.getRole());
             System.out.println("");
 
-            // Set the current user in the PizzaStore instance
-            esql.setCurrentUser(userLogin, role);
+            // the session keeps the profile row for the rest of the login
+            esql.setSession(session);
             return;
 
          } else {
@@ -500,32 +1115,24 @@ public class PizzaStore {
    // view profile
    public static void viewProfile(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("No user is currently logged in.");
             return;
          }
 
-         String query = String.format(
-               "SELECT login, role, phoneNum, favoriteItems FROM Users WHERE login = '%s' AND role = '%s';",
-               esql.currentUserLogin, esql.currentUserRole);
-
-         List<List<String>> result = esql.executeQueryAndReturnResult(query);
+         // the profile row was loaded at login
+         User profile = esql.session.getUser();
 
-         if (result.isEmpty()) {
-            System.out.println("No profile found for the user: " + esql.currentUserLogin);
-         } else {
-            // Display profile details
-            List<String> profile = result.get(0);
-            System.out.println("");
-            System.out.println("USER PROFILE");
-            System.out.println("-------------");
-            System.out.println("Login: " + profile.get(0));
-            System.out.println("Role: " + profile.get(1));
-            System.out.println("Phone Number: " + profile.get(2));
-            System.out.println("Favorite Items: " + (profile.get(3) != null ? profile.get(3) : "None"));
-            System.out.println("-------------");
-         }
-      } catch (SQLException e) {
+         // Display profile details
+         System.out.println("");
+         System.out.println("USER PROFILE");
+         System.out.println("-------------");
+         System.out.println("Login: " + profile.login());
+         System.out.println("Role: " + profile.role());
+         System.out.println("Phone Number: " + profile.phoneNum());
+         System.out.println("Favorite Items: " + (profile.favoriteItems() != null ? profile.favoriteItems() : "None"));
+         System.out.println("-------------");
+      } catch (Exception e) {
          System.err.println("Error retrieving user profile: " + e.getMessage());
       }
    }
@@ -533,7 +1140,7 @@ public class PizzaStore {
    // update profile
    public static void updateProfile(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to update your profile.");
             return;
          }
@@ -549,35 +1156,31 @@ public class PizzaStore {
             System.out.println(".........................");
             System.out.println("4. Go back");
 
+            // changes are written through to the session's copy of the row
+            User profile = esql.session.getUser();
             switch (readChoice()) {
                case 0:
                   viewProfile(esql);
                   break;
                case 1:
                   System.out.print("Enter new password: ");
-                  String newPassword = in.readLine().trim();
-                  String passwordQuery = String.format(
-                        "UPDATE Users SET password = '%s' WHERE login = '%s'",
-                        newPassword, esql.currentUserLogin);
-                  esql.executeUpdate(passwordQuery);
+                  String newPassword = Session.normalize(in.readLine());
+                  updateOwnProfile(esql, new User(profile.login(), newPassword, profile.role(),
+                        profile.favoriteItems(), profile.phoneNum()));
                   System.out.println("Password updated successfully!");
                   break;
                case 2:
                   System.out.print("Enter new phone number: ");
                   String newPhone = in.readLine().trim();
-                  String phoneQuery = String.format(
-                        "UPDATE Users SET phoneNum = '%s' WHERE login = '%s'",
-                        newPhone, esql.currentUserLogin);
-                  esql.executeUpdate(phoneQuery);
+                  updateOwnProfile(esql, new User(profile.login(), profile.password(), profile.role(),
+                        profile.favoriteItems(), newPhone));
                   System.out.println("Phone number updated successfully!");
                   break;
                case 3:
                   System.out.print("Enter your favorite items (comma-separated): ");
                   String favorites = in.readLine().trim();
-                  String favoritesQuery = String.format(
-                        "UPDATE Users SET favoriteItems = '%s' WHERE login = '%s'",
-                        favorites, esql.currentUserLogin);
-                  esql.executeUpdate(favoritesQuery);
+                  updateOwnProfile(esql, new User(profile.login(), profile.password(), profile.role(),
+                        favorites, profile.phoneNum()));
                   System.out.println("Favorite items updated successfully!");
                   break;
                case 4:
@@ -591,6 +1194,15 @@ public class PizzaStore {
       }
    }
 
+   // writes a change to the logged in user's own row through to the session
+   private static void updateOwnProfile(PizzaStore esql, User updated) throws SQLException {
+      User stored = esql.getService().updateUser(esql.session, updated);
+      if (stored == null) {
+         throw new IllegalStateException("Your account no longer exists.");
+      }
+      esql.setSession(new Session(stored));
+   }
+
    // view menu
    public static void viewMenu(PizzaStore esql) {
       try {
@@ -621,47 +1233,30 @@ public class PizzaStore {
 
             switch (readChoice()) {
                case 0:
-                  // Build the query
-                  String query = "SELECT itemName, ingredients, typeOfItem, price, description FROM Items";
-                  boolean hasWhereClause = false;
-
-                  if (!currentTypeFilter.isEmpty()) {
-                     query += " WHERE TRIM(typeOfItem) = \'" + currentTypeFilter.trim() + "\'";
-                     hasWhereClause = true;
-                  }
-                  if (!currentPriceFilter.isEmpty()) {
-                     query += (hasWhereClause ? " AND" : " WHERE") + " price <= " + currentPriceFilter;
-                     hasWhereClause = true;
-                  }
-                  if (!currentSortOrder.isEmpty()) {
-                     query += " ORDER BY price " + currentSortOrder;
-                  }
-
-                  // Execute and display results
-                  List<List<String>> result = esql.executeQueryAndReturnResult(query);
-                  if (result.isEmpty()) {
-                     System.out.println("\nNo items available in the menu. Please select a different filter.");
-                  } else {
+                  // Filter the cached menu, no query is needed
+                  List<Item> items = esql.getService().menu(currentTypeFilter,
+                        currentPriceFilter.isEmpty() ? null : new BigDecimal(currentPriceFilter),
+                        currentSortOrder);
 
+                  if (!items.isEmpty()) {
                      System.out.println("");
                      System.out.println("FILTERED MENU");
                      System.out.println("-------------");
-                     for (List<String> item : result) {
-                        String itemName = item.get(0);
-                        String ingredients = item.get(1);
-                        String typeOfItem = item.get(2);
-                        String price = item.get(3);
-                        String description = item.get(4);
-
-                        System.out.println("Item: " + itemName);
-                        System.out.println("Ingredients: " + ingredients);
-                        System.out.println("Type: " + typeOfItem);
-                        System.out.println("Price: $" + price);
-                        System.out
-                              .println("Description: " + (description != null && !description.isEmpty() ? description
-                                    : "No description available."));
-                        System.out.println("-----------");
-                     }
+                  }
+                  for (Item item : items) {
+                     String description = item.description();
+
+                     System.out.println("Item: " + item.itemName());
+                     System.out.println("Ingredients: " + item.ingredients());
+                     System.out.println("Type: " + item.typeOfItem());
+                     System.out.println("Price: $" + item.price());
+                     System.out
+                           .println("Description: " + (description != null && !description.isEmpty() ? description
+                                 : "No description available."));
+                     System.out.println("-----------");
+                  }
+                  if (items.isEmpty()) {
+                     System.out.println("\nNo items available in the menu. Please select a different filter.");
                   }
                   break;
                case 1:
@@ -675,6 +1270,12 @@ public class PizzaStore {
                   // Filter by price
                   System.out.print("Enter maximum price to filter (e.g., 10.00): ");
                   String price = in.readLine().trim();
+                  try {
+                     new BigDecimal(price);
+                  } catch (NumberFormatException e) {
+                     System.out.println("Invalid price: " + price);
+                     break;
+                  }
                   currentPriceFilter = price;
                   System.out.println("Filter set to price: $" + price);
                   break;
@@ -709,104 +1310,82 @@ public class PizzaStore {
    // place order
    public static void placeOrder(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to place an order.");
             return;
          }
 
-         System.out.println("\nAVAILABLE STORES");
-         System.out.println("----------------");
-
-         String storeQuery = "SELECT storeID, address, city, state, isOpen FROM Store ORDER BY isOpen DESC";
-         List<List<String>> stores = esql.executeQueryAndReturnResult(storeQuery);
-
-         if (stores.isEmpty()) {
+         // the picker pages through the open stores of the cached directory
+         StoreDirectory stores = esql.getService().stores();
+         if (stores.getStores().isEmpty()) {
             System.out.println("No stores available to order from.");
             return;
          }
 
-         List<Integer> openStoreIDs = new ArrayList<>();
-         for (List<String> store : stores) {
-            int storeID = Integer.parseInt(store.get(0));
-            String address = store.get(1);
-            String city = store.get(2);
-            String state = store.get(3);
-            String isOpen = store.get(4);
-
-            System.out.printf("Store ID: %d - %s, %s, %s - %s\n",
-                  storeID, address, city, state,
-                  (isOpen.equals("yes") ? "OPEN" : "CLOSED"));
-
-            if (isOpen.equals("yes")) {
-               openStoreIDs.add(storeID);
-            }
-         }
-
-         if (openStoreIDs.isEmpty()) {
+         List<Store> openStores = stores.getOpenStores();
+         if (openStores.isEmpty()) {
             System.out.println("Sorry, no stores are currently open for ordering.");
             return;
          }
 
-         System.out.print("\nEnter the Store ID you want to order from (q to quit): ");
-         String idChoice = in.readLine().trim();
-         if (idChoice.equals("q")) {
-            return;
-         }
-         int selectedStoreID = Integer.parseInt(idChoice);
-
-         if (!openStoreIDs.contains(selectedStoreID)) {
-            System.out.println("Invalid store selection or the store is closed.");
-            return;
-         }
+         int selectedStoreID = -1;
+         int page = 0;
+         int pages = StoreDirectory.pageCount(openStores, STORE_PAGE_SIZE);
+         while (selectedStoreID < 0) {
+            System.out.println("\nAVAILABLE STORES (page " + (page + 1) + " of " + pages + ")");
+            System.out.println("----------------");
+            for (Store store : StoreDirectory.page(openStores, page, STORE_PAGE_SIZE)) {
+               System.out.printf("Store ID: %d - %s, %s, %s - OPEN\n",
+                     store.storeID(), store.address(), store.city(), store.state());
+            }
 
-         String maxOrderIDQuery = "SELECT MAX(orderID) FROM FoodOrder";
-         int newOrderID = 10000;
+            System.out.print("\nEnter the Store ID you want to order from (n/p for next/previous page, q to quit): ");
+            String idChoice = in.readLine().trim();
+            if (idChoice.equals("q")) {
+               return;
+            }
+            if (idChoice.equals("n")) {
+               page = Math.min(page + 1, pages - 1);
+               continue;
+            }
+            if (idChoice.equals("p")) {
+               page = Math.max(page - 1, 0);
+               continue;
+            }
+            int storeID = Integer.parseInt(idChoice);
 
-         List<List<String>> maxIDResult = esql.executeQueryAndReturnResult(maxOrderIDQuery);
-         if (!maxIDResult.isEmpty() && maxIDResult.get(0).get(0) != null) {
-            newOrderID = Integer.parseInt(maxIDResult.get(0).get(0)) + 1;
+            if (!stores.isOpen(storeID)) {
+               System.out.println("Invalid store selection or the store is closed.");
+               return;
+            }
+            selectedStoreID = storeID;
          }
 
-         String initOrderQuery = String.format(
-               "INSERT INTO FoodOrder (orderID, login, storeID, orderTimestamp, totalPrice, orderStatus) " +
-                     "VALUES (%d, '%s', %d, TO_CHAR(NOW(), 'YYYY-MM-DD HH24:MI:SS')::timestamp, 0.00, 'incomplete')",
-               newOrderID, esql.currentUserLogin, selectedStoreID);
-
-         esql.executeUpdate(initOrderQuery);
-         System.out.println("\nStarted a new order with ID: " + newOrderID);
-
+         // items are collected locally and written in one transaction at checkout
+         Cart cart = new Cart(selectedStoreID);
          boolean continueShopping = true;
 
          while (continueShopping) {
             System.out.println("\nMENU ITEMS");
             System.out.println("----------");
 
-            String menuQuery = String.format(
-                  "SELECT itemName, price, ingredients, typeOfItem FROM Items " +
-                        "ORDER BY typeOfItem, itemName");
-
-            List<List<String>> menuItems = esql.executeQueryAndReturnResult(menuQuery);
-
-            if (menuItems.isEmpty()) {
-               System.out.println("No items available on the menu.");
-               String deleteOrderQuery = String.format("DELETE FROM FoodOrder WHERE orderID = %d", newOrderID);
-               esql.executeUpdate(deleteOrderQuery);
-               return;
-            }
-
+            // the menu comes from the cache, which is already ordered by type
+            MenuSnapshot menu = esql.getService().menu();
             String currentType = "";
-            for (List<String> item : menuItems) {
-               String itemName = item.get(0);
-               double price = Double.parseDouble(item.get(1));
-               String ingredients = item.get(2);
-               String type = item.get(3);
+            for (Item item : menu.getItems()) {
+               String type = item.typeOfItem().trim();
 
                if (!type.equals(currentType)) {
                   System.out.println("\n" + type.toUpperCase() + ":");
                   currentType = type;
                }
 
-               System.out.printf("- %s ($%.2f) - %s\n", itemName, price, ingredients);
+               System.out.printf("- %s ($%.2f) - %s\n", item.itemName(), item.price(), item.ingredients());
+            }
+
+            if (menu.getItems().isEmpty()) {
+               System.out.println("No items available on the menu.");
+               return;
             }
 
             System.out.print("\nEnter the item name (or type 'done' to finish ordering): ");
@@ -817,66 +1396,48 @@ public class PizzaStore {
                continue;
             }
 
-            String itemCheckQuery = String.format(
-                  "SELECT price FROM Items WHERE TRIM(itemName) = TRIM('%s')",
-                  itemName);
-
-            List<List<String>> itemCheck = esql.executeQueryAndReturnResult(itemCheckQuery);
+            Item item = menu.item(itemName);
 
-            if (itemCheck.isEmpty()) {
+            if (item == null) {
                System.out.println("Item not found. Please try again.");
                continue;
             }
 
-            double itemPrice = Double.parseDouble(itemCheck.get(0).get(0));
-
             System.out.print("Enter quantity: ");
-            int quantity = Integer.parseInt(in.readLine().trim());
+            String quantityInput = in.readLine().trim();
+            int quantity;
+            try {
+               quantity = Integer.parseInt(quantityInput);
+            } catch (NumberFormatException e) {
+               System.out.println("Invalid quantity: " + quantityInput);
+               continue;
+            }
 
             if (quantity <= 0) {
                System.out.println("Quantity must be greater than zero.");
                continue;
             }
 
-            String addItemQuery = String.format(
-                  "INSERT INTO ItemsInOrder (orderID, itemName, quantity) " +
-                        "VALUES (%d, '%s', %d)",
-                  newOrderID, itemName, quantity);
+            BigDecimal subtotal = cart.add(item, quantity);
 
-            esql.executeUpdate(addItemQuery);
-
-            double subtotal = itemPrice * quantity;
-
-            String totalPriceQuery = String.format("SELECT totalPrice FROM FoodOrder WHERE orderID = %d", newOrderID);
-            List<List<String>> totalPriceResult = esql.executeQueryAndReturnResult(totalPriceQuery);
-            double totalPrice = Double.parseDouble(totalPriceResult.get(0).get(0));
-
-            System.out.printf("Added %d x %s (Subtotal: $%.2f; Total: $%.2f)\n", quantity, itemName, subtotal,
-                  totalPrice);
+            System.out.printf("Added %d x %s (Subtotal: $%.2f; Total: $%.2f)\n", quantity, item.itemName(), subtotal,
+                  cart.getTotal());
          }
 
-         String totalPriceQuery = String.format("SELECT totalPrice FROM FoodOrder WHERE orderID = %d", newOrderID);
-         List<List<String>> totalPriceResult = esql.executeQueryAndReturnResult(totalPriceQuery);
+         if (cart.isEmpty()) {
+            System.out.println("Order cancelled - no items were added.");
+            return;
+         }
 
-         if (!totalPriceResult.isEmpty()) {
-            double totalPrice = Double.parseDouble(totalPriceResult.get(0).get(0));
+         int newOrderID = esql.getService().placeOrder(esql.session, cart);
 
-            if (totalPrice > 0) {
-               System.out.println("\nORDER SUMMARY");
-               System.out.println("-------------");
-               System.out.println("Order ID: " + newOrderID);
-               System.out.println("Store ID: " + selectedStoreID);
-               System.out.printf("Total Price: $%.2f\n", totalPrice);
-               System.out.println("Status: incomplete");
-               System.out.println("\nThank you for your order!");
-            } else {
-               String deleteOrderQuery = String.format("DELETE FROM FoodOrder WHERE orderID = %d", newOrderID);
-               esql.executeUpdate(deleteOrderQuery);
-               System.out.println("Order cancelled - no items were added.");
-            }
-         } else {
-            System.out.println("Error: Unable to retrieve total price for order.");
-         }
+         System.out.println("\nORDER SUMMARY");
+         System.out.println("-------------");
+         System.out.println("Order ID: " + newOrderID);
+         System.out.println("Store ID: " + selectedStoreID);
+         System.out.printf("Total Price: $%.2f\n", cart.getTotal());
+         System.out.println("Status: incomplete");
+         System.out.println("\nThank you for your order!");
 
       } catch (Exception e) {
          System.err.println("Error placing order: " + e.getMessage());
@@ -886,138 +1447,169 @@ public class PizzaStore {
    // view all order
    public static void viewAllOrders(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to view orders.");
             return;
          }
 
-         String query;
-
-         if (esql.currentUserRole.equals("customer")) {
-            // customer
-            query = String.format(
-                  "SELECT orderID, storeID, orderTimestamp, totalPrice, orderStatus " +
-                        "FROM FoodOrder " +
-                        "WHERE login = '%s' " +
-                        "ORDER BY orderTimestamp DESC;",
-                  esql.currentUserLogin);
-         } else {
-            // manager + driver
-            query = "SELECT orderID, login, storeID, orderTimestamp, totalPrice, orderStatus " +
-                  "FROM FoodOrder " +
-                  "ORDER BY orderTimestamp DESC;";
-         }
+         // customers only ever see their own orders, the service applies the filter
+         boolean customer = esql.session.isCustomer();
+         OrderFilter filter = OrderFilter.NONE;
+         OrderPager pager = esql.getService().orderHistory(esql.session, filter, ORDER_PAGE_SIZE);
+         List<FoodOrder> orders = pager.first();
 
-         List<List<String>> result = esql.executeQueryAndReturnResult(query);
+         while (true) {
+            printOrderPage(orders, !customer, pager.getFilter());
 
-         if (result.isEmpty()) {
-            System.out.println("\nNo orders found.");
-         } else {
             System.out.println("");
-            System.out.println("ORDER HISTORY");
-            System.out.println("-------------");
+            System.out.println("1. Next page (older)" + (pager.hasOlder() ? "" : " - this is the last page"));
+            System.out.println("2. Previous page (newer)" + (pager.hasNewer() ? "" : " - this is the first page"));
+            if (!customer) {
+               System.out.println("3. Filter by store");
+               System.out.println("4. Filter by status");
+               System.out.println("5. Filter by customer");
+               System.out.println("6. Clear filters");
+            }
+            System.out.println("7. Go back");
 
-            // customer
-            if (esql.currentUserRole.equals("customer")) {
-               System.out.println("OrderID\tStoreID\tTimestamp\t\tTotal Price\tStatus");
-               System.out.println("----------------------------------------------------------");
-               for (List<String> order : result) {
-                  System.out.printf("%-8s%-8s%-24s$%-14s%-20s\n",
-                        order.get(0), // orderID
-                        order.get(1), // storeID
-                        order.get(2), // orderTimestamp
-                        order.get(3), // totalPrice
-                        order.get(4) // orderStatus
-                  );
-               }
-            } else {
-               // managers + drivers
-               System.out.println("OrderID Customer\tStoreID\tTimestamp\t\tTotal Price\tStatus");
-               System.out
-                     .println("------------------------------------------------------------------------------------");
-               for (List<String> order : result) {
-                  System.out.printf("%-8s%-16s%-8s%-24s$%-14s%-20s\n",
-                        order.get(0), // orderID
-                        order.get(1), // login
-                        order.get(2), // storeID
-                        order.get(3), // orderTimestamp
-                        order.get(4), // totalPrice
-                        order.get(5) // orderStatus
-                  );
-               }
+            int choice = readChoice();
+            if (customer && choice >= 3 && choice <= 6) {
+               choice = 0;
+            }
+            switch (choice) {
+               case 1:
+                  orders = pager.next();
+                  break;
+               case 2:
+                  orders = pager.previous();
+                  break;
+               case 3:
+                  System.out.print("Enter store ID (blank for any): ");
+                  String storeInput = in.readLine().trim();
+                  filter = filter.withStoreID(storeInput.isEmpty() ? null : Integer.parseInt(storeInput));
+                  pager = esql.getService().orderHistory(esql.session, filter, ORDER_PAGE_SIZE);
+                  orders = pager.first();
+                  break;
+               case 4:
+                  System.out.print("Enter status, e.g. complete or incomplete (blank for any): ");
+                  String statusInput = in.readLine().trim().toLowerCase();
+                  filter = filter.withOrderStatus(statusInput.isEmpty() ? null : statusInput);
+                  pager = esql.getService().orderHistory(esql.session, filter, ORDER_PAGE_SIZE);
+                  orders = pager.first();
+                  break;
+               case 5:
+                  System.out.print("Enter customer login (blank for any): ");
+                  String loginInput = in.readLine().trim();
+                  filter = filter.withLogin(loginInput.isEmpty() ? null : loginInput);
+                  pager = esql.getService().orderHistory(esql.session, filter, ORDER_PAGE_SIZE);
+                  orders = pager.first();
+                  break;
+               case 6:
+                  filter = OrderFilter.NONE;
+                  pager = esql.getService().orderHistory(esql.session, filter, ORDER_PAGE_SIZE);
+                  orders = pager.first();
+                  break;
+               case 7:
+                  return;
+               default:
+                  System.out.println("Unrecognized choice!");
             }
-            System.out.println("-------------");
          }
       } catch (Exception e) {
          System.err.println("Error viewing order history: " + e.getMessage());
       }
    }
 
+   // prints one page of the order history, with the customer for staff
+   private static void printOrderPage(List<FoodOrder> orders, boolean withCustomer, OrderFilter filter) {
+      System.out.println("");
+      System.out.println("ORDER HISTORY");
+      System.out.println("-------------");
+      if (withCustomer) {
+         System.out.println("Store: " + (filter.storeID() == null ? "Any" : filter.storeID())
+               + "  Status: " + (filter.orderStatus() == null ? "Any" : filter.orderStatus())
+               + "  Customer: " + (filter.login() == null ? "Any" : filter.login()));
+      }
+      if (orders.isEmpty()) {
+         System.out.println("\nNo orders found.");
+         return;
+      }
+
+      if (withCustomer) {
+         System.out.println("OrderID Customer\tStoreID\tTimestamp\t\tTotal Price\tStatus");
+         System.out.println("------------------------------------------------------------------------------------");
+      } else {
+         System.out.println("OrderID\tStoreID\tTimestamp\t\tTotal Price\tStatus");
+         System.out.println("----------------------------------------------------------");
+      }
+      for (FoodOrder order : orders) {
+         if (withCustomer) {
+            System.out.printf("%-8d%-16s%-8d%-24s$%-14s%-20s\n",
+                  order.orderID(),
+                  order.login(),
+                  order.storeID(),
+                  formatTimestamp(order.orderTimestamp()),
+                  order.totalPrice(),
+                  order.orderStatus());
+         } else {
+            System.out.printf("%-8d%-8d%-24s$%-14s%-20s\n",
+                  order.orderID(),
+                  order.storeID(),
+                  formatTimestamp(order.orderTimestamp()),
+                  order.totalPrice(),
+                  order.orderStatus());
+         }
+      }
+      System.out.println("-------------");
+   }
+
    // view recent order
    public static void viewRecentOrders(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to view orders.");
             return;
          }
 
-         String query;
-
-         if (esql.currentUserRole.equals("customer")) {
-            // customers
-            query = String.format(
-                  "SELECT orderID, storeID, orderTimestamp, totalPrice, orderStatus " +
-                        "FROM FoodOrder " +
-                        "WHERE login = '%s' " +
-                        "ORDER BY orderTimestamp DESC " +
-                        "LIMIT 5;",
-                  esql.currentUserLogin);
-         } else {
-            // manager + driver
-            query = "SELECT orderID, login, storeID, orderTimestamp, totalPrice, orderStatus " +
-                  "FROM FoodOrder " +
-                  "ORDER BY orderTimestamp DESC " +
-                  "LIMIT 5;";
-         }
+         // customers get their own orders, managers and drivers everyone's
+         boolean customer = esql.session.isCustomer();
+         List<FoodOrder> orders = esql.getService().recentOrders(esql.session);
 
-         List<List<String>> result = esql.executeQueryAndReturnResult(query);
-
-         if (result.isEmpty()) {
-            System.out.println("\nNo recent orders found.");
-         } else {
+         if (!orders.isEmpty()) {
             System.out.println("");
             System.out.println("RECENT ORDERS (Last 5)");
             System.out.println("---------------------");
-
-            // customer
-            if (esql.currentUserRole.equals("customer")) {
+            if (customer) {
                System.out.println("OrderID\tStoreID\tTimestamp\t\tTotal Price\tStatus");
                System.out.println("----------------------------------------------------------");
-               for (List<String> order : result) {
-                  System.out.printf("%-8s%-8s%-24s$%-14s%-20s\n",
-                        order.get(0), // orderID
-                        order.get(1), // storeID
-                        order.get(2), // orderTimestamp
-                        order.get(3), // totalPrice
-                        order.get(4) // orderStatus
-                  );
-               }
             } else {
-               // managers + drivers
                System.out.println("OrderID Customer\tStoreID\tTimestamp\t\tTotal Price\tStatus");
                System.out
                      .println("------------------------------------------------------------------------------------");
-               for (List<String> order : result) {
-                  System.out.printf("%-8s%-16s%-8s%-24s$%-14s%-20s\n",
-                        order.get(0), // orderID
-                        order.get(1), // login
-                        order.get(2), // storeID
-                        order.get(3), // orderTimestamp
-                        order.get(4), // totalPrice
-                        order.get(5) // orderStatus
-                  );
-               }
             }
+         }
+         for (FoodOrder order : orders) {
+            if (customer) {
+               System.out.printf("%-8d%-8d%-24s$%-14s%-20s\n",
+                     order.orderID(),
+                     order.storeID(),
+                     formatTimestamp(order.orderTimestamp()),
+                     order.totalPrice(),
+                     order.orderStatus());
+            } else {
+               System.out.printf("%-8d%-16s%-8d%-24s$%-14s%-20s\n",
+                     order.orderID(),
+                     order.login(),
+                     order.storeID(),
+                     formatTimestamp(order.orderTimestamp()),
+                     order.totalPrice(),
+                     order.orderStatus());
+            }
+         }
+
+         if (orders.isEmpty()) {
+            System.out.println("\nNo recent orders found.");
+         } else {
             System.out.println("---------------------");
          }
       } catch (Exception e) {
@@ -1028,98 +1620,38 @@ public class PizzaStore {
    // view order info
    public static void viewOrderInfo(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to view order information.");
             return;
          }
 
-         System.out.print("Enter the Order ID you want to view: ");
-         String orderID = in.readLine().trim();
-
-         // First check if the order exists and if the user has permission to view it
-         String checkQuery;
-
-         if (esql.currentUserRole.equals("customer")) {
-            // Customers can only view their own orders
-            checkQuery = String.format(
-                  "SELECT COUNT(*) FROM FoodOrder WHERE orderID = %s AND login = '%s';",
-                  orderID, esql.currentUserLogin);
-         } else {
-            // Managers and drivers can view all orders
-            checkQuery = String.format(
-                  "SELECT COUNT(*) FROM FoodOrder WHERE orderID = %s;",
-                  orderID);
-         }
-
-         int count = Integer.parseInt(esql.executeQueryAndReturnResult(checkQuery).get(0).get(0));
-
-         if (count == 0) {
-            if (esql.currentUserRole.equals("customer")) {
-               System.out.println("Order not found or you don't have permission to view this order.");
-            } else {
-               System.out.println("Order not found.");
+         System.out.print("Enter the Order ID(s) you want to view (comma-separated): ");
+         String orderIDInput = in.readLine().trim();
+         List<Integer> orderIDs = new ArrayList<Integer>();
+         for (String part : orderIDInput.split(",")) {
+            try {
+               orderIDs.add(Integer.parseInt(part.trim()));
+            } catch (NumberFormatException e) {
+               System.out.println("Invalid Order ID: " + part.trim());
+               return;
             }
-            return;
-         }
-
-         // Get the basic order information
-         String orderQuery = String.format(
-               "SELECT login, storeID, orderTimestamp, totalPrice, orderStatus " +
-                     "FROM FoodOrder WHERE orderID = %s;",
-               orderID);
-
-         List<List<String>> orderResult = esql.executeQueryAndReturnResult(orderQuery);
-
-         if (orderResult.isEmpty()) {
-            System.out.println("Error retrieving order information.");
-            return;
          }
 
-         List<String> orderInfo = orderResult.get(0);
-         String customerLogin = orderInfo.get(0);
-         String storeID = orderInfo.get(1);
-         String timestamp = orderInfo.get(2);
-         String totalPrice = orderInfo.get(3);
-         String status = orderInfo.get(4);
-
-         // Get the ordered items with quantities
-         String itemsQuery = String.format(
-               "SELECT i.itemName, o.quantity, i.price " +
-                     "FROM ItemsInOrder o JOIN Items i ON o.itemName = i.itemName " +
-                     "WHERE o.orderID = %s;",
-               orderID);
-
-         List<List<String>> itemsResult = esql.executeQueryAndReturnResult(itemsQuery);
-
-         // Display all the order information
-         System.out.println("\nORDER DETAILS - Order #" + orderID);
-         System.out.println("--------------------------------------------------------------------------");
-         System.out.println("Customer: " + customerLogin);
-         System.out.println("Store: " + storeID);
-         System.out.println("Date/Time: " + timestamp);
-         System.out.println("Status: " + status);
-         System.out.println("Total Price: $" + totalPrice);
-         System.out.println("\n");
-         System.out.println("----------------------------------------------------------------");
-         System.out.printf("%-30s %-10s %-10s %-10s\n", "Item", "Quantity", "Unit Price", "Subtotal");
-         System.out.println("----------------------------------------------------------------");
-
-         if (itemsResult.isEmpty()) {
-            System.out.println("No items found for this order.");
-         } else {
-            double calculatedTotal = 0.0;
-            for (List<String> item : itemsResult) {
-               String itemName = item.get(0);
-               int quantity = Integer.parseInt(item.get(1));
-               double unitPrice = Double.parseDouble(item.get(2));
-               double subtotal = quantity * unitPrice;
-               calculatedTotal += subtotal;
-
-               System.out.printf("%-30s %-10d $%-9.2f $%-9.2f\n",
-                     itemName, quantity, unitPrice, subtotal);
+         // customers can only view their own orders, checked by the same query
+         boolean customer = esql.session.isCustomer();
+         Map<Integer, OrderDetail> details = esql.getService().orderDetails(esql.session, orderIDs);
+
+         for (Integer orderID : new LinkedHashSet<Integer>(orderIDs)) {
+            OrderDetail detail = details.get(orderID);
+            if (detail == null) {
+               if (customer) {
+                  System.out.println("Order " + orderID + " not found or you don't have permission to view this order.");
+               } else {
+                  System.out.println("Order " + orderID + " not found.");
+               }
+               continue;
             }
-            System.out.println("----------------------------------------------------------------");
-            System.out.printf("%-52s $%-9.2f\n", "Calculated Total:", calculatedTotal);
+            printOrderDetail(detail);
          }
 
       } catch (Exception e) {
@@ -1127,32 +1659,97 @@ public class PizzaStore {
       }
    }
 
+   // prints an order header followed by its lines
+   private static void printOrderDetail(OrderDetail detail) {
+      FoodOrder order = detail.order();
+      System.out.println("\nORDER DETAILS - Order #" + order.orderID());
+      System.out.println("--------------------------------------------------------------------------");
+      System.out.println("Customer: " + order.login());
+      System.out.println("Store: " + order.storeID());
+      System.out.println("Date/Time: " + formatTimestamp(order.orderTimestamp()));
+      System.out.println("Status: " + order.orderStatus());
+      System.out.println("Total Price: $" + order.totalPrice());
+      System.out.println("\n");
+      System.out.println("----------------------------------------------------------------");
+      System.out.printf("%-30s %-10s %-10s %-10s\n", "Item", "Quantity", "Unit Price", "Subtotal");
+      System.out.println("----------------------------------------------------------------");
+
+      for (OrderLine line : detail.lines()) {
+         System.out.printf("%-30s %-10d $%-9.2f $%-9.2f\n",
+               line.itemName(), line.quantity(), line.unitPrice(), line.subtotal());
+      }
+
+      if (detail.lines().isEmpty()) {
+         System.out.println("No items found for this order.");
+      } else {
+         System.out.println("----------------------------------------------------------------");
+         System.out.printf("%-52s $%-9.2f\n", "Calculated Total:", detail.calculatedTotal());
+      }
+   }
+
    // view store
    public static void viewStores(PizzaStore esql) {
       try {
-         String query = "SELECT storeID, address, city, state, isOpen, reviewScore FROM Store";
-         List<List<String>> result = esql.executeQueryAndReturnResult(query);
-
-         if (result.isEmpty()) {
-            System.out.println("No stores available.");
-         } else {
-            System.out.println("");
-            System.out.println("AVAILABLE STORES");
-            System.out.println("----------------");
+         // pages through the cached directory, optionally by state or city
+         StoreDirectory stores = esql.getService().stores();
+         List<Store> listing = stores.getStores();
+         String filter = "All stores";
+         int page = 0;
 
-            for (List<String> store : result) {
-               String storeID = store.get(0);
-               String address = store.get(1);
-               String city = store.get(2);
-               String state = store.get(3);
-               String isOpen = store.get(4);
-               String reviewScore = store.get(5);
-
-               System.out.println("Store ID: " + storeID);
-               System.out.println("Location: " + address + ", " + city + ", " + state);
-               System.out.println("Review Score: " + reviewScore);
-               System.out.println("Status: " + (isOpen.equals("1") ? "OPEN" : "CLOSED"));
+         while (true) {
+            int pages = StoreDirectory.pageCount(listing, STORE_PAGE_SIZE);
+            if (listing.isEmpty()) {
+               System.out.println("\nNo stores available.");
+            } else {
+               System.out.println("");
+               System.out.println("AVAILABLE STORES - " + filter + " (page " + (page + 1) + " of " + pages + ")");
                System.out.println("----------------");
+               for (Store store : StoreDirectory.page(listing, page, STORE_PAGE_SIZE)) {
+                  System.out.println("Store ID: " + store.storeID());
+                  System.out.println("Location: " + store.address() + ", " + store.city() + ", " + store.state());
+                  System.out.println("Review Score: " + (store.reviewScore() != null ? store.reviewScore() : "None"));
+                  System.out.println("Status: " + (store.isOpen() ? "OPEN" : "CLOSED"));
+                  System.out.println("----------------");
+               }
+            }
+
+            System.out.println("1. Next page");
+            System.out.println("2. Previous page");
+            System.out.println("3. Filter by state");
+            System.out.println("4. Filter by city");
+            System.out.println("5. Show all stores");
+            System.out.println("6. Go back");
+
+            switch (readChoice()) {
+               case 1:
+                  page = Math.min(page + 1, pages - 1);
+                  break;
+               case 2:
+                  page = Math.max(page - 1, 0);
+                  break;
+               case 3:
+                  System.out.print("Enter state: ");
+                  String state = in.readLine().trim();
+                  listing = stores.inState(state);
+                  filter = "State: " + state;
+                  page = 0;
+                  break;
+               case 4:
+                  System.out.print("Enter city: ");
+                  String city = in.readLine().trim();
+                  listing = stores.inCity(city);
+                  filter = "City: " + city;
+                  page = 0;
+                  break;
+               case 5:
+                  listing = stores.getStores();
+                  filter = "All stores";
+                  page = 0;
+                  break;
+               case 6:
+                  return;
+               default:
+                  System.out.println("Unrecognized choice!");
             }
          }
       } catch (Exception e) {
@@ -1163,7 +1760,7 @@ public class PizzaStore {
    // update order status
    public static void updateOrderStatus(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to update an order status.");
             return;
          }
@@ -1175,52 +1772,60 @@ public class PizzaStore {
             System.out.println("0. View all orders");
             System.out.println("1. View recent orders");
             System.out.println("2. Quit");
+            System.out.println("3. Update several orders by ID");
+            System.out.println("4. Update every order of a store with a given status");
             System.out.println("10000 (or higher). Update that Specific OrderID");
 
             int choice = readChoice();
 
-            if (choice == 0) {
-               viewAllOrders(esql);
-            } else if (choice == 1) {
-               viewRecentOrders(esql);
-            } else if (choice == 2) {
-               return;
-            } else if (choice >= 10000) {
-               String orderID = String.valueOf(choice);
-
-               String checkQuery = String.format(
-                     "SELECT COUNT(*) FROM FoodOrder WHERE orderID = '%s';",
-                     orderID);
-
-               try {
-                  List<List<String>> result = esql.executeQueryAndReturnResult(checkQuery);
-                  int count = Integer.parseInt(result.get(0).get(0));
-
-                  if (count == 0) {
-                     System.out.println("Order ID not found.");
-                     continue;
+            try {
+               List<Integer> changed;
+               if (choice == 0) {
+                  viewAllOrders(esql);
+                  continue;
+               } else if (choice == 1) {
+                  viewRecentOrders(esql);
+                  continue;
+               } else if (choice == 2) {
+                  return;
+               } else if (choice == 3) {
+                  System.out.print("Enter the Order IDs (comma-separated): ");
+                  List<Integer> orderIDs = new ArrayList<Integer>();
+                  for (String part : in.readLine().split(",")) {
+                     if (!part.trim().isEmpty()) {
+                        orderIDs.add(Integer.parseInt(part.trim()));
+                     }
                   }
-
-                  System.out.print("Enter the new status (complete/incomplete): ");
-                  String newStatus = in.readLine().trim().toLowerCase();
-
-                  if (!newStatus.equals("complete") && !newStatus.equals("incomplete")) {
-                     System.out.println("Invalid status. Please enter 'complete' or 'incomplete'.");
+                  String newStatus = OrderStatus.require(readStatus("Enter the new status (complete/incomplete): "));
+                  changed = esql.getService().updateOrderStatus(esql.session, orderIDs, newStatus);
+                  orderIDs.removeAll(changed);
+                  if (!orderIDs.isEmpty()) {
+                     System.out.println("Not found or already " + newStatus + ": " + orderIDs);
+                  }
+               } else if (choice == 4) {
+                  System.out.print("Enter the Store ID: ");
+                  int storeID = Integer.parseInt(in.readLine().trim());
+                  String fromStatus = OrderStatus.require(readStatus("Enter the current status (complete/incomplete): "));
+                  String toStatus = OrderStatus.require(readStatus("Enter the new status (complete/incomplete): "));
+                  changed = esql.getService().updateOrderStatus(esql.session, storeID, fromStatus, toStatus);
+               } else if (choice >= 10000) {
+                  String newStatus = OrderStatus.require(readStatus("Enter the new status (complete/incomplete): "));
+                  changed = esql.getService().updateOrderStatus(esql.session, Collections.singletonList(choice),
+                        newStatus);
+                  if (changed.isEmpty()) {
+                     System.out.println("Order ID not found or already " + newStatus + ".");
                      continue;
                   }
-
-                  String updateQuery = String.format(
-                        "UPDATE FoodOrder SET orderStatus = '%s' WHERE orderID = '%s';",
-                        newStatus, orderID);
-
-                  esql.executeUpdate(updateQuery);
-                  System.out.println("Order status updated successfully.");
-                  return;
-               } catch (Exception e) {
-                  System.out.println("Error while processing order update: " + e.getMessage());
+               } else {
+                  System.out.println("Invalid input. Please enter 0-4, or an Order ID 10000 or higher.");
+                  continue;
                }
-            } else {
-               System.out.println("Invalid input. Please enter 0, 1, 2, or an Order ID 10000 or higher.");
+
+               System.out.println(changed.size() + " order(s) updated" + (changed.isEmpty() ? "." : ": " + changed));
+            } catch (IllegalArgumentException e) {
+               System.out.println(e.getMessage());
+            } catch (Exception e) {
+               System.out.println("Error while processing order update: " + e.getMessage());
             }
          }
       } catch (Exception e) {
@@ -1228,9 +1833,15 @@ public class PizzaStore {
       }
    }
 
+   // prompts for an order status
+   private static String readStatus(String prompt) throws IOException {
+      System.out.print(prompt);
+      return in.readLine();
+   }
+
    public static void updateMenu(PizzaStore esql) {
       try {
-         if (esql.currentUserLogin.isEmpty()) {
+         if (esql.session == null) {
             System.out.println("You must be logged in to update the menu.");
             return;
          }
@@ -1253,9 +1864,8 @@ public class PizzaStore {
                   System.out.print("Enter the name of the item to update: ");
                   String itemName = in.readLine().trim();
 
-                  String query1 = String.format("SELECT * FROM Items WHERE itemName = '%s';", itemName);
-                  int rowCount = esql.executeQuery(query1);
-                  if (rowCount == 0) {
+                  Item item = esql.getService().menu().item(itemName);
+                  if (item == null) {
                      System.out.println("Item not found.");
                      continue;
                   }
@@ -1267,38 +1877,47 @@ public class PizzaStore {
                   System.out.println("4. Description");
 
                   int updateChoice = readChoice();
-                  String attribute = "";
-                  String newValue = "";
+                  Item updated;
 
                   switch (updateChoice) {
                      case 1:
                         System.out.print("Enter new ingredients: ");
-                        newValue = in.readLine().trim();
-                        attribute = "ingredients";
+                        updated = new Item(item.itemName(), in.readLine().trim(), item.typeOfItem(), item.price(),
+                              item.description());
                         break;
                      case 2:
                         System.out.print("Enter new type: ");
-                        newValue = in.readLine().trim();
-                        attribute = "typeOfItem";
+                        updated = new Item(item.itemName(), item.ingredients(), in.readLine().trim(), item.price(),
+                              item.description());
                         break;
                      case 3:
                         System.out.print("Enter new price: ");
-                        newValue = in.readLine().trim();
-                        attribute = "price";
+                        String newPrice = in.readLine().trim();
+                        BigDecimal price;
+                        try {
+                           price = new BigDecimal(newPrice).setScale(2, RoundingMode.HALF_UP);
+                        } catch (NumberFormatException e) {
+                           System.out.println("Invalid price: " + newPrice);
+                           continue;
+                        }
+                        updated = new Item(item.itemName(), item.ingredients(), item.typeOfItem(), price,
+                              item.description());
                         break;
                      case 4:
                         System.out.print("Enter new description: ");
-                        newValue = in.readLine().trim();
-                        attribute = "description";
+                        updated = new Item(item.itemName(), item.ingredients(), item.typeOfItem(), item.price(),
+                              in.readLine().trim());
                         break;
                      default:
                         System.out.println("Invalid choice.");
                         continue;
                   }
 
-                  String updateQuery = String.format("UPDATE Items SET %s = '%s' WHERE itemName = '%s';", attribute,
-                        newValue, itemName);
-                  esql.executeUpdate(updateQuery);
+                  // the service writes the change through to the cached menu
+                  if (esql.getService().updateItem(esql.session, updated) == null) {
+                     System.out.println("Item not found.");
+                     continue;
+                  }
                   System.out.println("Item updated successfully.");
                   break;
 
@@ -1306,9 +1925,7 @@ public class PizzaStore {
                   System.out.print("Enter new item name: ");
                   String newItemName = in.readLine().trim();
 
-                  String checkQuery = String.format("SELECT * FROM Items WHERE itemName = '%s';", newItemName);
-                  int rowCountCheck = esql.executeQuery(checkQuery);
-                  if (rowCountCheck > 0) {
+                  if (esql.getService().menu().item(newItemName) != null) {
                      System.out.println("An item with this name already exists.");
                      continue;
                   }
@@ -1318,14 +1935,19 @@ public class PizzaStore {
                   System.out.print("Enter type of item: ");
                   String typeOfItem = in.readLine().trim();
                   System.out.print("Enter price: ");
-                  String price = in.readLine().trim();
+                  String priceInput = in.readLine().trim();
+                  BigDecimal price;
+                  try {
+                     price = new BigDecimal(priceInput).setScale(2, RoundingMode.HALF_UP);
+                  } catch (NumberFormatException e) {
+                     System.out.println("Invalid price: " + priceInput);
+                     continue;
+                  }
                   System.out.print("Enter description: ");
                   String description = in.readLine().trim();
 
-                  String insertQuery = String.format(
-                        "INSERT INTO Items (itemName, ingredients, typeOfItem, price, description) VALUES ('%s', '%s', '%s', %s, '%s');",
-                        newItemName, ingredients, typeOfItem, price, description);
-                  esql.executeUpdate(insertQuery);
+                  esql.getService().addItem(esql.session,
+                        new Item(newItemName, ingredients, typeOfItem, price, description));
                   System.out.println("New item added successfully.");
                   break;
 
@@ -1349,12 +1971,9 @@ public class PizzaStore {
 
          while (!validUser) {
             System.out.print("Enter the login of the user to update: ");
-            currentUserLogin = in.readLine().trim();
+            currentUserLogin = Session.normalize(in.readLine());
 
-            String checkUserQuery = String.format("SELECT * FROM Users WHERE login = '%s';", currentUserLogin);
-            int userExists = esql.executeQuery(checkUserQuery);
-
-            if (userExists > 0) {
+            if (esql.getService().userExists(esql.session, currentUserLogin)) {
                validUser = true;
             } else {
                System.out.println("User not found. Please try again.");
@@ -1378,36 +1997,35 @@ public class PizzaStore {
             int choice = readChoice();
             switch (choice) {
                case 0:
-                  String viewQuery = String.format("SELECT * FROM Users WHERE login = '%s';", currentUserLogin);
-                  List<List<String>> userDetails = esql.executeQueryAndReturnResult(viewQuery);
+                  User record = esql.getService().user(esql.session, currentUserLogin);
 
                   System.out.println("\nUser Details:");
-                  for (List<String> record : userDetails) {
-                     System.out.println("Login: " + record.get(0));
-                     System.out.println("Password: " + record.get(1));
-                     System.out.println("Role: " + record.get(2));
-                     System.out.println("Favorite Items: " + record.get(3));
-                     System.out.println("Phone Number: " + record.get(4));
+                  if (record != null) {
+                     System.out.println("Login: " + record.login());
+                     System.out.println("Password: " + record.password());
+                     System.out.println("Role: " + record.role());
+                     System.out.println("Favorite Items: " + record.favoriteItems());
+                     System.out.println("Phone Number: " + record.phoneNum());
                   }
                   break;
 
                case 1:
                   System.out.print("Enter new password: ");
-                  String newPassword = in.readLine().trim();
+                  String newPassword = Session.normalize(in.readLine());
 
-                  String updatePasswordQuery = String.format("UPDATE Users SET password = '%s' WHERE login = '%s';",
-                        newPassword, currentUserLogin);
-                  esql.executeUpdate(updatePasswordQuery);
+                  User target = requireUser(esql, currentUserLogin);
+                  esql.getService().updateUser(esql.session, new User(target.login(), newPassword, target.role(),
+                        target.favoriteItems(), target.phoneNum()));
                   System.out.println("Password updated successfully.");
                   break;
 
                case 2:
                   System.out.print("Enter new role: ");
-                  String newRole = in.readLine().trim();
+                  String newRole = in.readLine().trim().toLowerCase();
 
-                  String updateRoleQuery = String.format("UPDATE Users SET role = '%s' WHERE login = '%s';", newRole,
-                        currentUserLogin);
-                  esql.executeUpdate(updateRoleQuery);
+                  target = requireUser(esql, currentUserLogin);
+                  esql.getService().updateUser(esql.session, new User(target.login(), target.password(), newRole,
+                        target.favoriteItems(), target.phoneNum()));
                   System.out.println("Role updated successfully.");
                   break;
 
@@ -1415,9 +2033,9 @@ public class PizzaStore {
                   System.out.print("Enter new favorite items: ");
                   String newFavorites = in.readLine().trim();
 
-                  String updateFavoritesQuery = String.format(
-                        "UPDATE Users SET favoriteItems = '%s' WHERE login = '%s';", newFavorites, currentUserLogin);
-                  esql.executeUpdate(updateFavoritesQuery);
+                  target = requireUser(esql, currentUserLogin);
+                  esql.getService().updateUser(esql.session, new User(target.login(), target.password(), target.role(),
+                        newFavorites, target.phoneNum()));
                   System.out.println("Favorite items updated successfully.");
                   break;
 
@@ -1425,9 +2043,9 @@ public class PizzaStore {
                   System.out.print("Enter new phone number: ");
                   String newPhoneNum = in.readLine().trim();
 
-                  String updatePhoneQuery = String.format("UPDATE Users SET phoneNum = '%s' WHERE login = '%s';",
-                        newPhoneNum, currentUserLogin);
-                  esql.executeUpdate(updatePhoneQuery);
+                  target = requireUser(esql, currentUserLogin);
+                  esql.getService().updateUser(esql.session, new User(target.login(), target.password(), target.role(),
+                        target.favoriteItems(), newPhoneNum));
                   System.out.println("Phone number updated successfully.");
                   break;
 
@@ -1435,13 +2053,9 @@ public class PizzaStore {
                   validUser = false;
                   while (!validUser) {
                      System.out.print("Enter the login of the new user to update: ");
-                     currentUserLogin = in.readLine().trim();
-
-                     String checkNewUserQuery = String.format("SELECT * FROM Users WHERE login = '%s';",
-                           currentUserLogin);
-                     int newUserExists = esql.executeQuery(checkNewUserQuery);
+                     currentUserLogin = Session.normalize(in.readLine());
 
-                     if (newUserExists > 0) {
+                     if (esql.getService().userExists(esql.session, currentUserLogin)) {
                         validUser = true;
                      } else {
                         System.out.println("User not found. Please try again.");
@@ -1455,6 +2069,11 @@ public class PizzaStore {
                default:
                   System.out.println("Invalid input. Please enter a valid option.");
             }
+
+            // a manager updating their own row refreshes their session
+            if (choice >= 1 && choice <= 4 && currentUserLogin.equals(esql.session.getLogin())) {
+               esql.setSession(new Session(esql.getService().user(esql.session, currentUserLogin)));
+            }
          }
 
       } catch (Exception e) {
@@ -1462,4 +2081,87 @@ public class PizzaStore {
       }
    }
 
+   public static void viewQueryStats(PizzaStore esql) {
+      try {
+         QueryStats stats = esql.getService().queryStats(esql.session);
+         while (true) {
+            System.out.println("\nQUERY STATISTICS");
+            System.out.println("----------------");
+            System.out.println("1. View statistics by query");
+            System.out.println("2. View recent slow queries (over " + stats.getSlowMillis() + " ms)");
+            System.out.println("3. View captured query plans");
+            System.out.println("4. Reset statistics");
+            System.out.println("5. Quit");
+
+            switch (readChoice()) {
+               case 1:
+                  List<QueryStats.TemplateStats> templates = stats.getTemplates();
+                  if (templates.isEmpty()) {
+                     System.out.println("No queries recorded yet.");
+                     break;
+                  }
+                  System.out.printf("%-40s %8s %6s %10s %8s %8s %8s %8s %9s %10s%n", "query", "calls", "errors",
+                        "total ms", "mean ms", "p50 ms", "p99 ms", "max ms", "rows", "bytes");
+                  for (QueryStats.TemplateStats template : templates) {
+                     LatencyHistogram latency = template.getLatency();
+                     String name = template.getName();
+                     if (name.length() > 40)
+                        name = name.substring(0, 37) + "...";
+                     System.out.printf("%-40s %8d %6d %10.1f %8.2f %8.2f %8.2f %8.2f %9d %10d%n", name,
+                           latency.getCount(), template.getErrors(), latency.getTotalNanos() / 1e6,
+                           latency.getMeanNanos() / 1e6, latency.percentile(0.50) / 1e6,
+                           latency.percentile(0.99) / 1e6, latency.getMaxNanos() / 1e6, template.getRows(),
+                           template.getBytes());
+                  }
+                  break;
+               case 2:
+                  List<String> slow = stats.getSlowQueries();
+                  if (slow.isEmpty()) {
+                     System.out.println("No slow queries.");
+                  }
+                  for (String entry : slow) {
+                     System.out.println(entry);
+                  }
+                  break;
+               case 3:
+                  PlanCapture plans = stats.getPlanCapture();
+                  if (plans == null) {
+                     System.out.println("Plan capture is off, start with -Dpizzastore.explain.millis=N to plan "
+                           + "queries slower than N ms.");
+                     break;
+                  }
+                  System.out.println("Plans of queries over " + plans.getThresholdMillis() + " ms: "
+                        + plans.getCaptured() + " captured, " + plans.getDropped() + " skipped by the rate limit");
+                  for (QueryStats.TemplateStats template : stats.getTemplates()) {
+                     if (template.getPlan() == null)
+                        continue;
+                     System.out.println("\n" + template.getName());
+                     System.out.println(template.getPlanInfo());
+                     System.out.print(template.getPlan());
+                  }
+                  break;
+               case 4:
+                  stats.reset();
+                  System.out.println("Statistics reset.");
+                  break;
+               case 5:
+                  return;
+               default:
+                  System.out.println("Invalid input. Please enter a valid option.");
+            }
+         }
+      } catch (Exception e) {
+         System.err.println("Error viewing query statistics: " + e.getMessage());
+      }
+   }
+
+   // reads the user a manager is updating, failing when it no longer exists
+   private static User requireUser(PizzaStore esql, String login) throws SQLException {
+      User user = esql.getService().user(esql.session, login);
+      if (user == null) {
+         throw new IllegalStateException("User not found.");
+      }
+      return user;
+   }
+
 }// end PizzaStore
@@ -0,0 +1,438 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The operations of the pizza store, free of any console input or output.
+ * Every operation on behalf of a user takes that user's Session, checks the
+ * user's role and returns its result, so one instance serves any number of
+ * sessions at once. The service holds no per-user state; everything it
+ * shares (the connection pool, the menu and store caches and the order ID
+ * allocator) is safe to use from many threads.
+ *
+ * Invalid input is reported with IllegalArgumentException, and an operation
+ * the session's role may not perform with SecurityException.
+ *
+ */
+public class PizzaStoreService {
+
+   private final PizzaStore esql;
+
+   // orders placed and read, published over JMX by PizzaStore
+   private final OrderMetrics metrics = new OrderMetrics();
+
+   // threads and queued tasks of a session executor on a JVM without virtual
+   // threads, four threads per pooled connection by default
+   private static final int SESSION_THREADS = Integer.getInteger("pizzastore.sessions.threads",
+         4 * Integer.getInteger("pizzastore.pool.max", 8));
+   private static final int SESSION_QUEUE = Integer.getInteger("pizzastore.sessions.queue", 4 * SESSION_THREADS);
+
+   /**
+    * Creates a new service.
+    *
+    * @param esql the data access layer
+    */
+   public PizzaStoreService(PizzaStore esql) {
+      this.esql = esql;
+   }// end PizzaStoreService
+
+   public OrderMetrics getOrderMetrics() {
+      return this.metrics;
+   }
+
+   /**
+    * Creates an executor for running many sessions at once. A task that
+    * cannot be queued is rejected with a RejectedExecutionException.
+    *
+    * @return the executor, to be shut down by the caller
+    * @see #newSessionExecutor(RejectedExecutionHandler)
+    */
+   public static ExecutorService newSessionExecutor() {
+      return newSessionExecutor(new ThreadPoolExecutor.AbortPolicy());
+   }// end newSessionExecutor
+
+   /**
+    * Creates an executor for running many sessions at once. Each task gets a
+    * virtual thread when the JVM has them, so a session blocked on the
+    * database or on the connection pool holds no thread another session
+    * could use. Older JVMs fall back to pizzastore.sessions.threads daemon
+    * threads (default four per pooled connection) behind a queue of
+    * pizzastore.sessions.queue tasks (default four per thread); a task
+    * arriving when both are full goes to the rejection handler.
+    *
+    * @param rejected handles tasks the fallback pool has no room for
+    * @return the executor, to be shut down by the caller
+    */
+   public static ExecutorService newSessionExecutor(RejectedExecutionHandler rejected) {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+         AtomicInteger threads = new AtomicInteger();
+         ThreadPoolExecutor pool = new ThreadPoolExecutor(SESSION_THREADS, SESSION_THREADS, 60L, TimeUnit.SECONDS,
+               new ArrayBlockingQueue<Runnable>(SESSION_QUEUE), r -> {
+                  Thread t = new Thread(r, "pizzastore-session-" + threads.incrementAndGet());
+                  t.setDaemon(true);
+                  return t;
+               }, rejected);
+         pool.allowCoreThreadTimeOut(true);
+         return pool;
+      } // end try
+   }// end newSessionExecutor
+
+   /**
+    * Creates a customer account.
+    *
+    * @param login    the login, stored normalized
+    * @param password the password, stored normalized
+    * @param phoneNum the phone number
+    * @return the new user
+    * @throws java.sql.SQLException when the user could not be written, e.g.
+    *                               because the login is taken
+    */
+   public User createUser(String login, String password, String phoneNum) throws SQLException {
+      User user = new User(Session.normalize(login), Session.normalize(password), "customer", null,
+            phoneNum == null ? null : phoneNum.trim());
+      if (user.login() == null || user.login().isEmpty())
+         throw new IllegalArgumentException("The login cannot be empty.");
+      this.esql.executeUpdate(Queries.USER_INSERT, user.login(), user.password(), user.role(), user.phoneNum());
+      return user;
+   }// end createUser
+
+   /**
+    * Checks a user's credentials.
+    *
+    * @param login    the login as entered
+    * @param password the password as entered
+    * @return a session for the user, or null when the credentials are wrong
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public Session logIn(String login, String password) throws SQLException {
+      // stored logins are normalized, so this is a primary key lookup
+      User user = this.esql.queryOne(Queries.USER_LOGIN, RowMappers.USER, Session.normalize(login),
+            Session.normalize(password));
+      return user == null ? null : new Session(user);
+   }// end logIn
+
+   /**
+    * Reads a user. Managers may read anyone, other users only themselves.
+    *
+    * @param session the session asking
+    * @param login   the user to read
+    * @return the user, or null when there is no such user
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public User user(Session session, String login) throws SQLException {
+      String normalized = Session.normalize(login);
+      if (!requireSession(session).getLogin().equals(normalized))
+         requireManager(session);
+      return this.esql.queryOne(Queries.USER_BY_LOGIN, RowMappers.USER, normalized);
+   }// end user
+
+   /**
+    * Tests whether a user exists. Managers only.
+    *
+    * @param session the session asking
+    * @param login   the user
+    * @return true when the user exists
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public boolean userExists(Session session, String login) throws SQLException {
+      requireManager(session);
+      return this.esql.exists(Queries.USER_EXISTS, Session.normalize(login));
+   }// end userExists
+
+   /**
+    * Writes the fields of a user that differ from the stored row, in one
+    * transaction. Users may change their own password, phone number and
+    * favorite items; managers may change anything about anyone.
+    *
+    * @param session the session asking
+    * @param updated the user as it should be stored
+    * @return the stored user, or null when there is no such user
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public User updateUser(Session session, User updated) throws SQLException {
+      requireSession(session);
+      User stored = this.esql.queryOne(Queries.USER_BY_LOGIN, RowMappers.USER, Session.normalize(updated.login()));
+      if (stored == null || !stored.login().equals(session.getLogin())
+            || !Objects.equals(stored.role(), updated.role()))
+         requireManager(session);
+      if (stored == null)
+         return null;
+
+      User user = new User(stored.login(), Session.normalize(updated.password()), updated.role(),
+            updated.favoriteItems(), updated.phoneNum());
+      this.esql.inTransaction(lease -> {
+         if (!Objects.equals(stored.password(), user.password()))
+            update(lease, Queries.USER_SET_PASSWORD, user.password(), user.login());
+         if (!Objects.equals(stored.role(), user.role()))
+            update(lease, Queries.USER_SET_ROLE, user.role(), user.login());
+         if (!Objects.equals(stored.favoriteItems(), user.favoriteItems()))
+            update(lease, Queries.USER_SET_FAVORITES, user.favoriteItems(), user.login());
+         if (!Objects.equals(stored.phoneNum(), user.phoneNum()))
+            update(lease, Queries.USER_SET_PHONE, user.phoneNum(), user.login());
+         return null;
+      });
+      return user;
+   }// end updateUser
+
+   /**
+    * @return the current menu
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public MenuSnapshot menu() throws SQLException {
+      return this.esql.getMenu().get();
+   }// end menu
+
+   /**
+    * Filters the menu. No query is needed once the menu is cached.
+    *
+    * @param type      the item type, or null for any
+    * @param maxPrice  the highest price, or null for any
+    * @param sortOrder ASC or DESC to sort by price, anything else for menu
+    *                  order
+    * @return the matching items
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public List<Item> menu(String type, BigDecimal maxPrice, String sortOrder) throws SQLException {
+      return menu().select(type == null || type.trim().isEmpty() ? null : type.trim(), maxPrice,
+            sortOrder == null ? "" : sortOrder.toUpperCase());
+   }// end menu
+
+   /**
+    * Writes the fields of a menu item that differ from the cached item, in
+    * one transaction, and then into the cached menu. Managers only.
+    *
+    * @param session the session asking
+    * @param updated the item as it should be stored
+    * @return the stored item, or null when there is no such item
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public Item updateItem(Session session, Item updated) throws SQLException {
+      requireManager(session);
+      Item item = menu().item(updated.itemName());
+      if (item == null)
+         return null;
+
+      // -1 when nothing differs and no statement runs
+      int rows = this.esql.inTransaction(lease -> {
+         int count = -1;
+         if (!Objects.equals(item.ingredients(), updated.ingredients()))
+            count = update(lease, Queries.ITEM_SET_INGREDIENTS, updated.ingredients(), item.itemName());
+         if (!Objects.equals(item.typeOfItem(), updated.typeOfItem()))
+            count = update(lease, Queries.ITEM_SET_TYPE, updated.typeOfItem(), item.itemName());
+         if (item.price().compareTo(updated.price()) != 0)
+            count = update(lease, Queries.ITEM_SET_PRICE, updated.price(), item.itemName());
+         if (!Objects.equals(item.description(), updated.description()))
+            count = update(lease, Queries.ITEM_SET_DESCRIPTION, updated.description(), item.itemName());
+         return count;
+      });
+      if (rows == 0) {
+         // deleted by someone else since the menu was cached
+         this.esql.getMenu().reload();
+         return null;
+      }
+      Item stored = new Item(item.itemName(), updated.ingredients(), updated.typeOfItem(), updated.price(),
+            updated.description());
+      this.esql.getMenu().put(stored);
+      return stored;
+   }// end updateItem
+
+   /**
+    * Adds an item to the menu. Managers only.
+    *
+    * @param session the session asking
+    * @param item    the new item
+    * @return the item
+    * @throws java.sql.SQLException when failed to execute the insert
+    */
+   public Item addItem(Session session, Item item) throws SQLException {
+      requireManager(session);
+      if (item.itemName() == null || item.itemName().trim().isEmpty())
+         throw new IllegalArgumentException("The item name cannot be empty.");
+      if (menu().item(item.itemName()) != null)
+         throw new IllegalArgumentException("An item with this name already exists.");
+      this.esql.executeUpdate(Queries.ITEM_INSERT, item.itemName(), item.ingredients(), item.typeOfItem(),
+            item.price(), item.description());
+      this.esql.getMenu().put(item);
+      return item;
+   }// end addItem
+
+   /**
+    * @return the current store directory
+    * @throws java.sql.SQLException when the stores cannot be loaded
+    */
+   public StoreDirectory stores() throws SQLException {
+      return this.esql.getStores().get();
+   }// end stores
+
+   /**
+    * Places an order for the session's user.
+    *
+    * @param session the session placing the order
+    * @param cart    the items ordered, at an open store
+    * @return the ID of the new order
+    * @throws java.sql.SQLException when the order could not be written
+    */
+   public int placeOrder(Session session, Cart cart) throws SQLException {
+      long start = System.nanoTime();
+      requireSession(session);
+      if (cart.isEmpty())
+         throw new IllegalArgumentException("The order has no items.");
+      if (!stores().isOpen(cart.getStoreID()))
+         throw new IllegalArgumentException("Store " + cart.getStoreID() + " is closed or does not exist.");
+      int orderID;
+      try {
+         orderID = this.esql.checkout(session.getLogin(), cart);
+      } catch (SQLException e) {
+         this.metrics.orderFailed();
+         throw e;
+      }
+      this.metrics.orderPlaced(start, cart);
+      return orderID;
+   }// end placeOrder
+
+   /**
+    * Opens a pager over the order history. Customers only ever see their own
+    * orders, whatever the filter asks for.
+    *
+    * @param session  the session asking
+    * @param filter   the filters to apply
+    * @param pageSize the number of orders per page
+    * @return the pager, positioned before the first page
+    */
+   public OrderPager orderHistory(Session session, OrderFilter filter, int pageSize) {
+      requireSession(session);
+      if (session.isCustomer())
+         filter = OrderFilter.NONE.withLogin(session.getLogin());
+      return new OrderPager(this.esql, filter, pageSize);
+   }// end orderHistory
+
+   /**
+    * Reads the five most recent orders: the customer's own, or everyone's
+    * for staff.
+    *
+    * @param session the session asking
+    * @return the orders, newest first
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<FoodOrder> recentOrders(Session session) throws SQLException {
+      requireSession(session);
+      return session.isCustomer()
+            ? this.esql.queryList(Queries.ORDER_RECENT_CUSTOMER, RowMappers.FOOD_ORDER, session.getLogin())
+            : this.esql.queryList(Queries.ORDER_RECENT_ALL, RowMappers.FOOD_ORDER);
+   }// end recentOrders
+
+   /**
+    * Reads orders with their lines. Customers only get their own orders.
+    *
+    * @param session  the session asking
+    * @param orderIDs the orders, duplicates are read once
+    * @return the orders found, in the order they were asked for
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public Map<Integer, OrderDetail> orderDetails(Session session, Collection<Integer> orderIDs) throws SQLException {
+      long start = System.nanoTime();
+      requireSession(session);
+      String login = session.isCustomer() ? session.getLogin() : null;
+      Map<Integer, OrderDetail> details;
+      if (orderIDs.size() == 1) {
+         Integer orderID = orderIDs.iterator().next();
+         OrderDetail detail = this.esql.orderDetail(orderID, login);
+         details = detail == null ? Collections.emptyMap() : Collections.singletonMap(orderID, detail);
+      } else {
+         details = this.esql.orderDetails(orderIDs, login);
+      }
+      this.metrics.orderInfoRead(start);
+      return details;
+   }// end orderDetails
+
+   /**
+    * Moves orders to a new status. Drivers and managers only.
+    *
+    * @param session  the session asking
+    * @param orderIDs the orders to update
+    * @param status   the new status, one of OrderStatus.ALLOWED
+    * @return the orders whose status changed
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public List<Integer> updateOrderStatus(Session session, Collection<Integer> orderIDs, String status)
+         throws SQLException {
+      requireStaff(session);
+      return this.esql.updateOrderStatus(orderIDs, status);
+   }// end updateOrderStatus
+
+   /**
+    * Moves every order of a store from one status to another. Drivers and
+    * managers only.
+    *
+    * @param session    the session asking
+    * @param storeID    the store
+    * @param fromStatus the status the orders have now
+    * @param toStatus   the new status, one of OrderStatus.ALLOWED
+    * @return the orders whose status changed
+    * @throws java.sql.SQLException when failed to execute the update
+    */
+   public List<Integer> updateOrderStatus(Session session, int storeID, String fromStatus, String toStatus)
+         throws SQLException {
+      requireStaff(session);
+      return this.esql.updateOrderStatus(storeID, fromStatus, toStatus);
+   }// end updateOrderStatus
+
+   /**
+    * The statistics of every statement run so far, by query template.
+    * Managers only.
+    *
+    * @param session the session asking
+    * @return the live statistics
+    */
+   public QueryStats queryStats(Session session) {
+      requireManager(session);
+      return this.esql.getStats();
+   }// end queryStats
+
+   private static Session requireSession(Session session) {
+      if (session == null)
+         throw new SecurityException("You must be logged in.");
+      return session;
+   }// end requireSession
+
+   private static void requireStaff(Session session) {
+      if (requireSession(session).isCustomer())
+         throw new SecurityException("Unauthorized access! Only drivers and managers can update order status.");
+   }// end requireStaff
+
+   private static void requireManager(Session session) {
+      if (!requireSession(session).isManager())
+         throw new SecurityException("Unauthorized access! Only managers can do this.");
+   }// end requireManager
+
+   // runs one statement of a transaction
+   private int update(ConnectionPool.Lease lease, QueryTemplate template, Object... params) throws SQLException {
+      return this.esql.executeUpdate(lease, template, params);
+   }// end update
+
+}// end PizzaStoreService
@@ -0,0 +1,216 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Captures the plan of statements that run over a latency budget. A slow
+ * statement is run again as EXPLAIN (ANALYZE, BUFFERS) with the same
+ * parameters, inside a transaction that is always rolled back, so an update
+ * or delete is executed for its plan but leaves nothing behind. An INSERT is
+ * only planned, with plain EXPLAIN: run again it would insert the same key a
+ * second time, fail on it, and draw sequence values and fire triggers for
+ * nothing. The plan is stored with the statistics of its template in
+ * QueryStats.
+ *
+ * Capturing is kept from adding to the load that made the statement slow:
+ * plans are taken on one background thread with a short queue, so the slow
+ * caller never waits and excess requests are dropped; at most perMinute
+ * plans are taken in any minute; and a template whose plan was taken less
+ * than intervalSeconds ago is skipped. Quoted values in a plan are replaced
+ * by '?', so bound passwords do not show up in it.
+ *
+ */
+public class PlanCapture implements AutoCloseable {
+
+   private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+   // plan requests waiting for the capture thread, more are dropped
+   private static final int QUEUE_SIZE = 4;
+
+   private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+   private final ConnectionPool pool;
+   private final long thresholdNanos;
+   private final long spacingNanos;
+   private final long intervalNanos;
+   private final ThreadPoolExecutor executor;
+
+   // System.nanoTime() from which the next plan may be taken
+   private final AtomicLong nextAllowed = new AtomicLong(System.nanoTime());
+
+   private final LongAdder captured = new LongAdder();
+   private final LongAdder dropped = new LongAdder();
+
+   /**
+    * Creates a capture and its background thread.
+    *
+    * @param pool            the pool the plans are taken on
+    * @param thresholdMillis statements taking at least this long are planned
+    * @param perMinute       the most plans taken per minute
+    * @param intervalSeconds seconds before the plan of a template is taken
+    *                        again
+    */
+   public PlanCapture(ConnectionPool pool, long thresholdMillis, int perMinute, long intervalSeconds) {
+      if (perMinute <= 0)
+         throw new IllegalArgumentException("At least one plan per minute must be allowed.");
+      this.pool = pool;
+      this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+      this.spacingNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+      this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+      this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), r -> {
+               Thread t = new Thread(r, "pizzastore-plan-capture");
+               t.setDaemon(true);
+               return t;
+            }, (r, executor) -> this.dropped.increment());
+   }// end PlanCapture
+
+   public long getThresholdMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(this.thresholdNanos);
+   }
+
+   public long getCaptured() {
+      return this.captured.sum();
+   }
+
+   /**
+    * @return plan requests dropped by the rate limit or a full queue
+    */
+   public long getDropped() {
+      return this.dropped.sum();
+   }
+
+   /**
+    * Queues the plan of a statement when it was over the budget and the
+    * limits allow it. Returns at once.
+    *
+    * @param stats  the statistics the plan is stored with
+    * @param sql    the SQL text
+    * @param params the values bound to the placeholders, or null for
+    *               literal SQL
+    * @param nanos  how long the statement took
+    */
+   public void offer(QueryStats.TemplateStats stats, String sql, Object[] params, long nanos) {
+      if (nanos < this.thresholdNanos)
+         return;
+      long now = System.nanoTime();
+      if (!stats.isPlanDue(now, this.intervalNanos))
+         return;
+      long next = this.nextAllowed.get();
+      if (now - next < 0 || !this.nextAllowed.compareAndSet(next, now + this.spacingNanos)) {
+         this.dropped.increment();
+         return;
+      }
+      if (!stats.claimPlan(now, this.intervalNanos))
+         return;
+      final Object[] values = params == null ? null : params.clone();
+      this.executor.execute(() -> capture(stats, sql, values, nanos));
+   }// end offer
+
+   // runs the statement under EXPLAIN ANALYZE and stores the plan
+   private void capture(QueryStats.TemplateStats stats, String sql, Object[] params, long nanos) {
+      long start = System.nanoTime();
+      StringBuilder plan = new StringBuilder();
+      try (ConnectionPool.Lease lease = this.pool.borrow()) {
+         Connection connection = lease.getConnection();
+         try {
+            connection.setAutoCommit(false);
+            try {
+               explain(connection, (isInsert(sql) ? "EXPLAIN " : "EXPLAIN (ANALYZE, BUFFERS) ") + sql, params,
+                     plan);
+            } catch (SQLException e) {
+               // a statement EXPLAIN rejects leaves the connection usable
+               if (isConnectionFailure(connection, e))
+                  lease.markSuspect();
+               plan.setLength(0);
+               plan.append("EXPLAIN failed: ").append(e.getMessage());
+            } finally {
+               connection.rollback();
+               connection.setAutoCommit(true);
+            }
+         } catch (SQLException e) {
+            // the transaction around the plan could not be started or ended
+            lease.markSuspect();
+            plan.setLength(0);
+            plan.append("EXPLAIN failed: ").append(e.getMessage());
+         }
+      } catch (SQLException e) {
+         plan.setLength(0);
+         plan.append("EXPLAIN failed: ").append(e.getMessage());
+      } // end try
+      this.captured.increment();
+      stats.setPlan(STRING_LITERAL.matcher(plan).replaceAll("?"),
+            String.format("%s, statement took %.1f ms, explain took %.1f ms",
+                  LocalDateTime.now().format(TIMESTAMP_FORMAT), nanos / 1e6, (System.nanoTime() - start) / 1e6));
+   }// end capture
+
+   // true when the statement is an INSERT, which is planned without running
+   private static boolean isInsert(String sql) {
+      return sql.stripLeading().toUpperCase(Locale.ROOT).startsWith("INSERT");
+   }// end isInsert
+
+   // true when the failure is the connection's rather than the statement's:
+   // SQLSTATE class 08 or a connection that has been closed
+   private static boolean isConnectionFailure(Connection connection, SQLException e) {
+      String state = e.getSQLState();
+      if (state != null && state.startsWith("08"))
+         return true;
+      try {
+         return connection.isClosed();
+      } catch (SQLException closed) {
+         return true;
+      }
+   }// end isConnectionFailure
+
+   private static void explain(Connection connection, String sql, Object[] params, StringBuilder plan)
+         throws SQLException {
+      if (params == null) {
+         try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            read(rs, plan);
+         }
+      } else {
+         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            PizzaStore.bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+               read(rs, plan);
+            }
+         }
+      } // end if
+   }// end explain
+
+   private static void read(ResultSet rs, StringBuilder plan) throws SQLException {
+      while (rs.next())
+         plan.append(rs.getString(1)).append('\n');
+   }// end read
+
+   /**
+    * Stops the capture thread, dropping queued requests.
+    */
+   public void close() {
+      this.executor.shutdownNow();
+   }// end close
+
+}// end PlanCapture
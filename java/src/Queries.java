@@ -0,0 +1,350 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every SQL statement issued by PizzaStore, as named query templates.
+ *
+ */
+public final class Queries {
+
+   // every template defined below, in definition order
+   private static final List<QueryTemplate> ALL = new ArrayList<QueryTemplate>();
+
+   private static QueryTemplate define(String name, String sql) {
+      QueryTemplate template = new QueryTemplate(name, sql);
+      ALL.add(template);
+      return template;
+   }
+
+   // Users, columns in the order RowMappers.USER reads them
+   private static final String USER_COLUMNS = "SELECT login, password, role, favoriteItems, phoneNum FROM Users";
+
+   public static final QueryTemplate USER_INSERT = define("user.insert",
+         "INSERT INTO Users (login, password, role, favoriteItems, phoneNum) VALUES (?, ?, ?, NULL, ?)");
+
+   public static final QueryTemplate USER_LOGIN = define("user.login",
+         USER_COLUMNS + " WHERE login = ? AND password = ?");
+
+   public static final QueryTemplate USER_BY_LOGIN = define("user.byLogin",
+         USER_COLUMNS + " WHERE login = ?");
+
+   public static final QueryTemplate USER_EXISTS = define("user.exists",
+         "SELECT EXISTS (SELECT 1 FROM Users WHERE login = ?)");
+
+   public static final QueryTemplate USER_SET_PASSWORD = define("user.setPassword",
+         "UPDATE Users SET password = ? WHERE login = ?");
+
+   public static final QueryTemplate USER_SET_PHONE = define("user.setPhone",
+         "UPDATE Users SET phoneNum = ? WHERE login = ?");
+
+   public static final QueryTemplate USER_SET_FAVORITES = define("user.setFavorites",
+         "UPDATE Users SET favoriteItems = ? WHERE login = ?");
+
+   public static final QueryTemplate USER_SET_ROLE = define("user.setRole",
+         "UPDATE Users SET role = ? WHERE login = ?");
+
+   // Items, columns in the order RowMappers.ITEM reads them
+   private static final String MENU_COLUMNS = "SELECT itemName, ingredients, typeOfItem, price, description FROM Items";
+
+   public static final QueryTemplate MENU = define("menu.all", MENU_COLUMNS);
+   public static final QueryTemplate MENU_ASC = define("menu.all.asc", MENU_COLUMNS + " ORDER BY price ASC");
+   public static final QueryTemplate MENU_DESC = define("menu.all.desc", MENU_COLUMNS + " ORDER BY price DESC");
+
+   public static final QueryTemplate MENU_TYPE = define("menu.type",
+         MENU_COLUMNS + " WHERE typeOfItem = ?");
+   public static final QueryTemplate MENU_TYPE_ASC = define("menu.type.asc",
+         MENU_COLUMNS + " WHERE typeOfItem = ? ORDER BY price ASC");
+   public static final QueryTemplate MENU_TYPE_DESC = define("menu.type.desc",
+         MENU_COLUMNS + " WHERE typeOfItem = ? ORDER BY price DESC");
+
+   public static final QueryTemplate MENU_PRICE = define("menu.price",
+         MENU_COLUMNS + " WHERE price <= ?");
+   public static final QueryTemplate MENU_PRICE_ASC = define("menu.price.asc",
+         MENU_COLUMNS + " WHERE price <= ? ORDER BY price ASC");
+   public static final QueryTemplate MENU_PRICE_DESC = define("menu.price.desc",
+         MENU_COLUMNS + " WHERE price <= ? ORDER BY price DESC");
+
+   public static final QueryTemplate MENU_TYPE_PRICE = define("menu.typePrice",
+         MENU_COLUMNS + " WHERE typeOfItem = ? AND price <= ?");
+   public static final QueryTemplate MENU_TYPE_PRICE_ASC = define("menu.typePrice.asc",
+         MENU_COLUMNS + " WHERE typeOfItem = ? AND price <= ? ORDER BY price ASC");
+   public static final QueryTemplate MENU_TYPE_PRICE_DESC = define("menu.typePrice.desc",
+         MENU_COLUMNS + " WHERE typeOfItem = ? AND price <= ? ORDER BY price DESC");
+
+   public static final QueryTemplate MENU_BY_TYPE_AND_NAME = define("menu.byTypeAndName",
+         MENU_COLUMNS + " ORDER BY typeOfItem, itemName");
+
+   // changes whenever any row of Items changes, compared by MenuCache
+   public static final QueryTemplate MENU_FINGERPRINT = define("menu.fingerprint",
+         "SELECT COALESCE(md5(string_agg(concat_ws('|', itemName, ingredients, typeOfItem, price, description), "
+               + "';' ORDER BY itemName)), '') FROM Items");
+
+   public static final QueryTemplate ITEM_INSERT = define("item.insert",
+         "INSERT INTO Items (itemName, ingredients, typeOfItem, price, description) VALUES (?, ?, ?, ?, ?)");
+
+   public static final QueryTemplate ITEM_SET_INGREDIENTS = define("item.setIngredients",
+         "UPDATE Items SET ingredients = ? WHERE itemName = ?");
+
+   public static final QueryTemplate ITEM_SET_TYPE = define("item.setType",
+         "UPDATE Items SET typeOfItem = ? WHERE itemName = ?");
+
+   public static final QueryTemplate ITEM_SET_PRICE = define("item.setPrice",
+         "UPDATE Items SET price = ? WHERE itemName = ?");
+
+   public static final QueryTemplate ITEM_SET_DESCRIPTION = define("item.setDescription",
+         "UPDATE Items SET description = ? WHERE itemName = ?");
+
+   // Store, columns in the order RowMappers.STORE reads them
+   private static final String STORE_COLUMNS = "SELECT storeID, address, city, state, isOpen, reviewScore FROM Store";
+
+   public static final QueryTemplate STORES = define("store.all", STORE_COLUMNS);
+
+   // changes whenever any row of Store changes, compared by StoreCache
+   public static final QueryTemplate STORE_FINGERPRINT = define("store.fingerprint",
+         "SELECT COALESCE(md5(string_agg(concat_ws('|', storeID, address, city, state, isOpen, reviewScore), "
+               + "';' ORDER BY storeID)), '') FROM Store");
+
+   // FoodOrder, columns in the order RowMappers.FOOD_ORDER reads them
+   private static final String ORDER_COLUMNS = "SELECT orderID, login, storeID, totalPrice, orderTimestamp, orderStatus "
+         + "FROM FoodOrder";
+
+   public static final QueryTemplate ORDER_ID_BLOCK = define("order.idBlock",
+         "SELECT nextval('FoodOrder_orderID_seq')");
+
+   public static final QueryTemplate ORDER_INSERT = define("order.insert",
+         "INSERT INTO FoodOrder (orderID, login, storeID, orderTimestamp, totalPrice, orderStatus) "
+               + "VALUES (?, ?, ?, TO_CHAR(NOW(), 'YYYY-MM-DD HH24:MI:SS')::timestamp, 0.00, 'incomplete')");
+
+   public static final QueryTemplate ORDER_RECENT_CUSTOMER = define("order.recent.customer",
+         ORDER_COLUMNS + " WHERE login = ? ORDER BY orderTimestamp DESC, orderID DESC LIMIT 5");
+
+   public static final QueryTemplate ORDER_RECENT_ALL = define("order.recent.all",
+         ORDER_COLUMNS + " ORDER BY orderTimestamp DESC, orderID DESC LIMIT 5");
+
+   // keyset positions for orderPage
+   public static final int PAGE_FIRST = 0;
+   public static final int PAGE_OLDER = 1;
+   public static final int PAGE_NEWER = 2;
+
+   // variants of orderPage, by filters and keyset position
+   private static final ConcurrentHashMap<Integer, QueryTemplate> ORDER_PAGES =
+         new ConcurrentHashMap<Integer, QueryTemplate>();
+
+   // FoodOrder headers with their lines, one row per line and one row with
+   // null line columns for an order without lines. Columns 1-6 are read by
+   // RowMappers.FOOD_ORDER and the rest by RowMappers.ORDER_DETAIL_LINE.
+   private static final String ORDER_DETAIL_COLUMNS = "SELECT f.orderID, f.login, f.storeID, f.totalPrice, "
+         + "f.orderTimestamp, f.orderStatus, i.itemName, o.quantity, i.price FROM FoodOrder f "
+         + "LEFT JOIN (ItemsInOrder o JOIN Items i ON o.itemName = i.itemName) ON o.orderID = f.orderID";
+
+   public static final QueryTemplate ORDER_DETAIL = define("order.detail",
+         ORDER_DETAIL_COLUMNS + " WHERE f.orderID = ? ORDER BY i.itemName");
+
+   // the customer check is part of the query, so no separate lookup is needed
+   public static final QueryTemplate ORDER_DETAIL_FOR_LOGIN = define("order.detailForLogin",
+         ORDER_DETAIL_COLUMNS + " WHERE f.orderID = ? AND f.login = ? ORDER BY i.itemName");
+
+   // the most orderIDs in one IN list, see inListBucket
+   public static final int MAX_IN_LIST = 64;
+
+   // variants of orderDetails, by bucket size and customer check
+   private static final ConcurrentHashMap<Integer, QueryTemplate> ORDER_DETAILS =
+         new ConcurrentHashMap<Integer, QueryTemplate>();
+
+   // moves every order of a store from one status to another; parameters
+   // are the new status, the storeID and the old status
+   public static final QueryTemplate ORDER_SET_STATUS_BY_STORE = define("order.setStatusByStore",
+         "UPDATE FoodOrder SET orderStatus = ? WHERE storeID = ? AND orderStatus = ? RETURNING orderID");
+
+   // variants of orderSetStatus, by bucket size
+   private static final ConcurrentHashMap<Integer, QueryTemplate> ORDER_SET_STATUSES =
+         new ConcurrentHashMap<Integer, QueryTemplate>();
+
+   // ItemsInOrder
+   public static final QueryTemplate ORDER_LINE_INSERT = define("orderLine.insert",
+         "INSERT INTO ItemsInOrder (orderID, itemName, quantity) VALUES (?, ?, ?)");
+
+   // multi-row variants of ORDER_LINE_INSERT, by number of rows
+   private static final ConcurrentHashMap<Integer, QueryTemplate> ORDER_LINE_INSERTS =
+         new ConcurrentHashMap<Integer, QueryTemplate>();
+
+
+   // connection pool
+   public static final QueryTemplate VALIDATE = define("pool.validate", "SELECT 1");
+
+   // sequences
+   public static final QueryTemplate SEQUENCE_CURRVAL = define("sequence.currval",
+         "SELECT currval(CAST(? AS regclass))");
+
+   private Queries() {
+   }
+
+   /**
+    * Picks the menu template for a combination of filters.
+    *
+    * @param byType    whether a type filter is bound
+    * @param byPrice   whether a maximum price is bound
+    * @param sortOrder "", "ASC" or "DESC"
+    * @return the matching template
+    */
+   public static QueryTemplate menu(boolean byType, boolean byPrice, String sortOrder) {
+      int sort = sortOrder.equals("ASC") ? 1 : sortOrder.equals("DESC") ? 2 : 0;
+      QueryTemplate[] choices;
+      if (byType && byPrice)
+         choices = new QueryTemplate[] { MENU_TYPE_PRICE, MENU_TYPE_PRICE_ASC, MENU_TYPE_PRICE_DESC };
+      else if (byType)
+         choices = new QueryTemplate[] { MENU_TYPE, MENU_TYPE_ASC, MENU_TYPE_DESC };
+      else if (byPrice)
+         choices = new QueryTemplate[] { MENU_PRICE, MENU_PRICE_ASC, MENU_PRICE_DESC };
+      else
+         choices = new QueryTemplate[] { MENU, MENU_ASC, MENU_DESC };
+      return choices[sort];
+   }// end menu
+
+   /**
+    * Returns an INSERT into ItemsInOrder that writes several lines in one
+    * statement, three placeholders (orderID, itemName, quantity) per line.
+    * One statement means the order total trigger fires once for the whole
+    * order.
+    *
+    * @param lines the number of lines, at least 1
+    * @return the template for that many lines
+    */
+   public static QueryTemplate orderLineInsert(int lines) {
+      if (lines == 1)
+         return ORDER_LINE_INSERT;
+      return ORDER_LINE_INSERTS.computeIfAbsent(lines, n -> {
+         StringBuilder sql = new StringBuilder("INSERT INTO ItemsInOrder (orderID, itemName, quantity) VALUES ");
+         for (int i = 0; i < n; ++i)
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+         return new QueryTemplate("orderLine.insert.x" + n, sql.toString());
+      });
+   }// end orderLineInsert
+
+   /**
+    * Returns one page of the order history, newest first, keyed on
+    * (orderTimestamp, orderID). PAGE_OLDER pages start after a key and
+    * PAGE_NEWER pages before it; PAGE_NEWER rows come back oldest first.
+    * Every page is a range scan of one of the (..., orderTimestamp DESC,
+    * orderID DESC) indexes, however deep it is. The parameters are the
+    * chosen filters in the order storeID, orderStatus, login, then the key
+    * (orderTimestamp, orderID) unless PAGE_FIRST, then the row limit.
+    *
+    * @param byStore  whether to filter on storeID
+    * @param byStatus whether to filter on orderStatus
+    * @param byLogin  whether to filter on login
+    * @param position PAGE_FIRST, PAGE_OLDER or PAGE_NEWER
+    * @return the template for the page
+    */
+   public static QueryTemplate orderPage(boolean byStore, boolean byStatus, boolean byLogin, int position) {
+      int key = (byStore ? 1 : 0) | (byStatus ? 2 : 0) | (byLogin ? 4 : 0) | position << 3;
+      return ORDER_PAGES.computeIfAbsent(key, k -> {
+         StringBuilder name = new StringBuilder("order.page");
+         List<String> where = new ArrayList<String>();
+         if (byStore) {
+            name.append(".store");
+            where.add("storeID = ?");
+         }
+         if (byStatus) {
+            name.append(".status");
+            where.add("orderStatus = ?");
+         }
+         if (byLogin) {
+            name.append(".login");
+            where.add("login = ?");
+         }
+         if (position == PAGE_OLDER)
+            where.add("(orderTimestamp, orderID) < (?, ?)");
+         else if (position == PAGE_NEWER)
+            where.add("(orderTimestamp, orderID) > (?, ?)");
+         name.append(position == PAGE_FIRST ? ".first" : position == PAGE_OLDER ? ".older" : ".newer");
+
+         StringBuilder sql = new StringBuilder(ORDER_COLUMNS);
+         if (!where.isEmpty())
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+         sql.append(position == PAGE_NEWER
+               ? " ORDER BY orderTimestamp ASC, orderID ASC LIMIT ?"
+               : " ORDER BY orderTimestamp DESC, orderID DESC LIMIT ?");
+         return new QueryTemplate(name.toString(), sql.toString());
+      });
+   }// end orderPage
+
+   /**
+    * Returns the order detail query for several orders at once, an IN list
+    * of inListBucket(orders) placeholders followed by the login when byLogin
+    * is set.
+    *
+    * @param orders  the number of orders, 1 to MAX_IN_LIST
+    * @param byLogin whether only the orders of one customer are returned
+    * @return the template for the bucket
+    */
+   public static QueryTemplate orderDetails(int orders, boolean byLogin) {
+      int bucket = inListBucket(orders);
+      return ORDER_DETAILS.computeIfAbsent(byLogin ? -bucket : bucket, k -> {
+         StringBuilder sql = new StringBuilder(ORDER_DETAIL_COLUMNS).append(" WHERE f.orderID IN (");
+         for (int i = 0; i < bucket; ++i)
+            sql.append(i == 0 ? "?" : ", ?");
+         sql.append(byLogin ? ") AND f.login = ?" : ")").append(" ORDER BY f.orderID, i.itemName");
+         return new QueryTemplate((byLogin ? "order.detailsForLogin.x" : "order.details.x") + bucket, sql.toString());
+      });
+   }// end orderDetails
+
+   /**
+    * Returns the status update for several orders at once. The parameters
+    * are the new status, an IN list of inListBucket(orders) orderIDs and the
+    * new status again; orders already in that status are left alone, so the
+    * returned orderIDs are exactly the orders that changed.
+    *
+    * @param orders the number of orders, 1 to MAX_IN_LIST
+    * @return the template for the bucket
+    */
+   public static QueryTemplate orderSetStatus(int orders) {
+      int bucket = inListBucket(orders);
+      return ORDER_SET_STATUSES.computeIfAbsent(bucket, k -> {
+         StringBuilder sql = new StringBuilder("UPDATE FoodOrder SET orderStatus = ? WHERE orderID IN (");
+         for (int i = 0; i < bucket; ++i)
+            sql.append(i == 0 ? "?" : ", ?");
+         sql.append(") AND orderStatus IS DISTINCT FROM ? RETURNING orderID");
+         return new QueryTemplate("order.setStatus.x" + bucket, sql.toString());
+      });
+   }// end orderSetStatus
+
+   /**
+    * Returns the number of placeholders used for an IN list of orderIDs.
+    * Lists are padded up to a power of two by repeating an ID, so a handful
+    * of templates (and prepared statements) serve every list length.
+    *
+    * @param orders the number of orders, 1 to MAX_IN_LIST
+    * @return the number of placeholders
+    */
+   public static int inListBucket(int orders) {
+      if (orders < 1 || orders > MAX_IN_LIST)
+         throw new IllegalArgumentException("orders must be between 1 and " + MAX_IN_LIST + ": " + orders);
+      int bucket = 1;
+      while (bucket < orders)
+         bucket <<= 1;
+      return bucket;
+   }// end inListBucket
+
+   /**
+    * @return every template PizzaStore can issue
+    */
+   public static List<QueryTemplate> all() {
+      return Collections.unmodifiableList(ALL);
+   }
+
+}// end Queries
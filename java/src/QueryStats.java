@@ -0,0 +1,355 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of every statement run by PizzaStore, kept per query template:
+ * a latency histogram of the statement from execution to the last row read,
+ * the rows returned or affected, the UTF-8 bytes of text returned by the
+ * methods that return rows as strings, and the number of failures. Statements sent
+ * as literal SQL are counted under their text with every literal replaced
+ * by '?', so calls that differ only in their values share one entry.
+ *
+ * A statement that takes longer than the slow-query threshold is kept in a
+ * list of the most recent slow queries and, when a log file is given,
+ * appended to it. Only template SQL or normalized literal SQL is written,
+ * never the bound values, so passwords do not end up in the log.
+ *
+ */
+public class QueryStats implements QueryStatsMXBean {
+
+   /**
+    * The statistics of one query template.
+    */
+   public static final class TemplateStats {
+      private final String name;
+      private final LatencyHistogram latency = new LatencyHistogram();
+      private final LongAdder rows = new LongAdder();
+      private final LongAdder bytes = new LongAdder();
+      private final LongAdder errors = new LongAdder();
+
+      // System.nanoTime() when a plan was last asked for, 0 for never
+      private final AtomicLong planClaimed = new AtomicLong();
+      private volatile String plan;
+      private volatile String planInfo;
+
+      TemplateStats(String name) {
+         this.name = name;
+      }
+
+      public String getName() {
+         return this.name;
+      }
+
+      public LatencyHistogram getLatency() {
+         return this.latency;
+      }
+
+      public long getRows() {
+         return this.rows.sum();
+      }
+
+      public long getBytes() {
+         return this.bytes.sum();
+      }
+
+      public long getErrors() {
+         return this.errors.sum();
+      }
+
+      /**
+       * @return the last plan captured by PlanCapture, or null
+       */
+      public String getPlan() {
+         return this.plan;
+      }
+
+      /**
+       * @return when the plan was captured and how long the statement took
+       */
+      public String getPlanInfo() {
+         return this.planInfo;
+      }
+
+      boolean isPlanDue(long now, long intervalNanos) {
+         long last = this.planClaimed.get();
+         return last == 0 || now - last >= intervalNanos;
+      }
+
+      // claims the next plan of this template for one caller
+      boolean claimPlan(long now, long intervalNanos) {
+         long last = this.planClaimed.get();
+         return (last == 0 || now - last >= intervalNanos) && this.planClaimed.compareAndSet(last, now);
+      }
+
+      void setPlan(String plan, String planInfo) {
+         this.planInfo = planInfo;
+         this.plan = plan;
+      }
+   }// end TemplateStats
+
+   private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+   // the most distinct literal SQL texts tracked, the rest share one entry
+   private static final int MAX_LITERAL_TEXTS = 500;
+   private static final String OTHER_LITERALS = "(other literal SQL)";
+
+   // slow queries kept for viewing
+   private static final int MAX_SLOW_QUERIES = 100;
+
+   private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+   private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+   private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+   private final ConcurrentHashMap<String, TemplateStats> templates = new ConcurrentHashMap<String, TemplateStats>();
+   private final LongAdder literalTexts = new LongAdder();
+   private final LongAdder statements = new LongAdder();
+   private final LongAdder failed = new LongAdder();
+   private final LongAdder slow = new LongAdder();
+
+   private final long slowNanos;
+
+   // takes the plans of statements over budget, or null when not enabled
+   private volatile PlanCapture plans;
+   private final ArrayDeque<String> slowQueries = new ArrayDeque<String>();
+   private Path slowLog;
+
+   /**
+    * Creates empty statistics.
+    *
+    * @param slowMillis the threshold of the slow-query log in milliseconds
+    * @param slowLog    the file slow queries are appended to, or null to
+    *                   keep them in memory only
+    */
+   public QueryStats(long slowMillis, Path slowLog) {
+      this.slowNanos = slowMillis * 1000000L;
+      this.slowLog = slowLog;
+   }// end QueryStats
+
+   /**
+    * Records one statement run from a template.
+    *
+    * @param template   the template
+    * @param params     the values bound to the template placeholders
+    * @param startNanos System.nanoTime() when the statement was executed
+    * @param rows       the rows returned or affected
+    * @param bytes      the UTF-8 bytes of text returned, 0 for typed results
+    */
+   public void record(QueryTemplate template, Object[] params, long startNanos, long rows, long bytes) {
+      long nanos = System.nanoTime() - startNanos;
+      TemplateStats stats = stats(template.getName());
+      record(stats, template.getSql(), nanos, rows, bytes);
+      PlanCapture plans = this.plans;
+      if (plans != null)
+         plans.offer(stats, template.getSql(), params, nanos);
+   }// end record
+
+   /**
+    * Records one statement sent as literal SQL.
+    *
+    * @param sql        the SQL text
+    * @param startNanos System.nanoTime() when the statement was executed
+    * @param rows       the rows returned or affected
+    * @param bytes      the UTF-8 bytes of text returned
+    */
+   public void record(String sql, long startNanos, long rows, long bytes) {
+      String text = normalize(sql);
+      long nanos = System.nanoTime() - startNanos;
+      TemplateStats stats = literalStats(text);
+      record(stats, text, nanos, rows, bytes);
+      // the plan is taken of the statement as sent, values included
+      PlanCapture plans = this.plans;
+      if (plans != null)
+         plans.offer(stats, sql, null, nanos);
+   }// end record
+
+   /**
+    * Returns the length of a string encoded as UTF-8, without encoding it. An
+    * unpaired surrogate counts as the one byte '?' it is encoded as.
+    *
+    * @param value the string
+    * @return its length in bytes
+    */
+   public static long utf8Length(String value) {
+      long bytes = value.length();
+      for (int i = 0; i < value.length(); ++i) {
+         char c = value.charAt(i);
+         if (c < 0x80)
+            continue;
+         if (c < 0x800) {
+            bytes += 1;
+         } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+               && Character.isLowSurrogate(value.charAt(i + 1))) {
+            // a surrogate pair is two chars and four bytes
+            bytes += 2;
+            ++i;
+         } else if (!Character.isSurrogate(c)) {
+            bytes += 2;
+         }
+      } // end for
+      return bytes;
+   }// end utf8Length
+
+   public void recordFailure(QueryTemplate template) {
+      failed(stats(template.getName()));
+   }
+
+   public void recordFailure(String sql) {
+      failed(literalStats(normalize(sql)));
+   }
+
+   /**
+    * @return the statistics of every template run so far, the one with the
+    *         most total time first
+    */
+   public List<TemplateStats> getTemplates() {
+      List<TemplateStats> all = new ArrayList<TemplateStats>(this.templates.values());
+      all.sort((a, b) -> Long.compare(b.latency.getTotalNanos(), a.latency.getTotalNanos()));
+      return all;
+   }// end getTemplates
+
+   /**
+    * @return the most recent slow queries, oldest first
+    */
+   public synchronized List<String> getSlowQueries() {
+      return Collections.unmodifiableList(new ArrayList<String>(this.slowQueries));
+   }// end getSlowQueries
+
+   /**
+    * Turns on capturing the plans of slow statements.
+    *
+    * @param plans the capture, or null to turn it off
+    */
+   public void setPlanCapture(PlanCapture plans) {
+      this.plans = plans;
+   }// end setPlanCapture
+
+   public PlanCapture getPlanCapture() {
+      return this.plans;
+   }
+
+   public long getSlowMillis() {
+      return this.slowNanos / 1000000L;
+   }
+
+   public long getStatements() {
+      return this.statements.sum();
+   }
+
+   public long getFailedStatements() {
+      return this.failed.sum();
+   }
+
+   public long getSlowStatements() {
+      return this.slow.sum();
+   }
+
+   public int getTemplateCount() {
+      return this.templates.size();
+   }
+
+   /**
+    * Clears every statistic and the list of slow queries. The log file is
+    * left as it is.
+    */
+   public synchronized void reset() {
+      this.templates.clear();
+      this.literalTexts.reset();
+      this.statements.reset();
+      this.failed.reset();
+      this.slow.reset();
+      this.slowQueries.clear();
+   }// end reset
+
+   /**
+    * Replaces string and number literals by '?' and runs of white space by
+    * one space, so statements that differ only in their values read the
+    * same.
+    *
+    * @param sql the SQL text
+    * @return the normalized text
+    */
+   static String normalize(String sql) {
+      String text = STRING_LITERAL.matcher(sql).replaceAll("?");
+      text = NUMBER_LITERAL.matcher(text).replaceAll("?");
+      return WHITESPACE.matcher(text).replaceAll(" ").trim();
+   }// end normalize
+
+   private TemplateStats stats(String name) {
+      TemplateStats stats = this.templates.get(name);
+      return stats != null ? stats : this.templates.computeIfAbsent(name, TemplateStats::new);
+   }// end stats
+
+   // the entry of a literal SQL text, or the shared one past the limit
+   private TemplateStats literalStats(String text) {
+      TemplateStats stats = this.templates.get(text);
+      if (stats != null)
+         return stats;
+      if (this.literalTexts.sum() >= MAX_LITERAL_TEXTS)
+         return stats(OTHER_LITERALS);
+      this.literalTexts.increment();
+      return stats(text);
+   }// end literalStats
+
+   private void failed(TemplateStats stats) {
+      stats.errors.increment();
+      this.statements.increment();
+      this.failed.increment();
+   }// end failed
+
+   private void record(TemplateStats stats, String sql, long nanos, long rows, long bytes) {
+      this.statements.increment();
+      stats.latency.record(nanos);
+      stats.rows.add(rows);
+      if (bytes > 0)
+         stats.bytes.add(bytes);
+      if (nanos >= this.slowNanos) {
+         this.slow.increment();
+         // a literal SQL entry is named by its text already
+         String text = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+         slow(String.format("%s %10.1f ms %8d rows  %s", LocalDateTime.now().format(TIMESTAMP_FORMAT),
+               nanos / 1e6, rows, stats.name.equals(text) ? text : stats.name + "  " + text));
+      }
+   }// end record
+
+   private synchronized void slow(String entry) {
+      if (this.slowQueries.size() == MAX_SLOW_QUERIES)
+         this.slowQueries.removeFirst();
+      this.slowQueries.addLast(entry);
+      if (this.slowLog == null)
+         return;
+      try {
+         Files.write(this.slowLog, Collections.singletonList(entry), StandardCharsets.UTF_8,
+               StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      } catch (IOException e) {
+         System.err.println("Cannot write the slow-query log, keeping slow queries in memory only: "
+               + e.getMessage());
+         this.slowLog = null;
+      }
+   }// end slow
+
+}// end QueryStats
@@ -0,0 +1,43 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.List;
+
+/**
+ * Statement totals of QueryStats, published over JMX as
+ * pizzastore:type=Statements. The figures per template are viewed from the
+ * manager menu.
+ *
+ */
+public interface QueryStatsMXBean {
+
+   /**
+    * @return the statements run, successful or not
+    */
+   long getStatements();
+
+   long getFailedStatements();
+
+   long getSlowStatements();
+
+   long getSlowMillis();
+
+   /**
+    * @return the query templates and literal SQL texts seen
+    */
+   int getTemplateCount();
+
+   List<String> getSlowQueries();
+
+   void reset();
+
+}// end QueryStatsMXBean
@@ -0,0 +1,52 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * A named, parameterized SQL statement. Parameters are written as JDBC
+ * placeholders ('?') and bound at execution time, so the text of a template
+ * never changes between calls and the prepared statement built from it can
+ * be reused.
+ *
+ */
+public final class QueryTemplate {
+
+   // short dotted name used in logs and diagnostics, e.g. "user.login"
+   private final String name;
+
+   // the SQL text with '?' placeholders
+   private final String sql;
+
+   /**
+    * Creates a new template.
+    *
+    * @param name the template name
+    * @param sql  the SQL text with '?' placeholders
+    */
+   public QueryTemplate(String name, String sql) {
+      this.name = name;
+      this.sql = sql;
+   }// end QueryTemplate
+
+   public String getName() {
+      return this.name;
+   }
+
+   public String getSql() {
+      return this.sql;
+   }
+
+   @Override
+   public String toString() {
+      return this.name;
+   }
+
+}// end QueryTemplate
@@ -0,0 +1,99 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Events per second over a sliding window of whole seconds, recorded by
+ * many threads without locking. Each second of the window has a slot
+ * holding the second it counts in its upper 32 bits and the count in its
+ * lower 32 bits, so a slot is moved on to a new second and counted into
+ * with a single compare-and-set. The second in progress is not part of the
+ * rate, so it does not read low while the second fills up.
+ *
+ */
+public class RateMeter {
+
+   private static final long COUNT_MASK = 0xffffffffL;
+
+   private final int windowSeconds;
+   private final AtomicLongArray slots;
+   private final long originNanos = System.nanoTime();
+
+   // the second of the last reset, the rate only covers the seconds since
+   private volatile long resetSecond = 0;
+
+   /**
+    * Creates a meter.
+    *
+    * @param windowSeconds the length of the window the rate is taken over
+    */
+   public RateMeter(int windowSeconds) {
+      if (windowSeconds <= 0)
+         throw new IllegalArgumentException("The window must be at least one second.");
+      this.windowSeconds = windowSeconds;
+      // one more slot than the window, for the second in progress
+      this.slots = new AtomicLongArray(windowSeconds + 1);
+   }// end RateMeter
+
+   /**
+    * Counts events in the current second.
+    *
+    * @param events the number of events
+    */
+   public void mark(long events) {
+      long now = second();
+      int i = (int) (now % this.slots.length());
+      while (true) {
+         long slot = this.slots.get(i);
+         long next = (slot >>> 32) == now ? slot + events : (now << 32) | (events & COUNT_MASK);
+         if (this.slots.compareAndSet(i, slot, next))
+            return;
+      } // end while
+   }// end mark
+
+   /**
+    * @return the mean events per second over the last complete seconds of
+    *         the window, or over the seconds since the meter was created or
+    *         reset when that is shorter
+    */
+   public double getRate() {
+      long now = second();
+      long seconds = Math.min(this.windowSeconds, now - this.resetSecond);
+      if (seconds == 0)
+         return 0.0;
+      long events = 0;
+      for (int i = 0; i < this.slots.length(); ++i) {
+         long slot = this.slots.get(i);
+         long second = slot >>> 32;
+         if (second < now && second >= now - seconds)
+            events += slot & COUNT_MASK;
+      } // end for
+      return (double) events / seconds;
+   }// end getRate
+
+   /**
+    * Forgets every event counted so far. Events marked while the reset runs
+    * may or may not be kept.
+    */
+   public void reset() {
+      this.resetSecond = second();
+      for (int i = 0; i < this.slots.length(); ++i)
+         this.slots.set(i, 0L);
+   }// end reset
+
+   // whole seconds since the meter was created
+   private long second() {
+      return (System.nanoTime() - this.originNanos) / 1000000000L;
+   }// end second
+
+}// end RateMeter
@@ -0,0 +1,32 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Decodes the current row of a result set into a typed value.
+ *
+ */
+public interface RowMapper<T> {
+
+   /**
+    * Maps the row the result set is positioned on. Must not advance the
+    * result set.
+    *
+    * @param rs the result set positioned on the row
+    * @return the decoded value
+    * @throws java.sql.SQLException when a column cannot be read
+    */
+   T map(ResultSet rs) throws SQLException;
+
+}// end RowMapper
@@ -0,0 +1,88 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.ResultSet;
+
+/**
+ * Row mappers for the domain records. Columns are read by position with
+ * their native getters, so every query decoded by one of these mappers must
+ * select the columns in the order given on the mapper. Fixed-width char
+ * columns (role, orderStatus) come back padded and are trimmed here.
+ *
+ */
+public final class RowMappers {
+
+   // login, password, role, favoriteItems, phoneNum
+   public static final RowMapper<User> USER = rs -> new User(
+         rs.getString(1),
+         rs.getString(2),
+         trim(rs.getString(3)),
+         rs.getString(4),
+         rs.getString(5));
+
+   // itemName, ingredients, typeOfItem, price, description
+   public static final RowMapper<Item> ITEM = rs -> new Item(
+         rs.getString(1),
+         rs.getString(2),
+         rs.getString(3),
+         rs.getBigDecimal(4),
+         rs.getString(5));
+
+   // storeID, address, city, state, isOpen, reviewScore
+   public static final RowMapper<Store> STORE = rs -> {
+      int storeID = rs.getInt(1);
+      String address = rs.getString(2);
+      String city = rs.getString(3);
+      String state = rs.getString(4);
+      boolean isOpen = "yes".equals(trim(rs.getString(5)));
+      double reviewScore = rs.getDouble(6);
+      return new Store(storeID, address, city, state, isOpen, rs.wasNull() ? null : reviewScore);
+   };
+
+   // orderID, login, storeID, totalPrice, orderTimestamp, orderStatus
+   public static final RowMapper<FoodOrder> FOOD_ORDER = rs -> new FoodOrder(
+         rs.getInt(1),
+         rs.getString(2),
+         rs.getInt(3),
+         rs.getBigDecimal(4),
+         rs.getTimestamp(5),
+         trim(rs.getString(6)));
+
+   // orderID, then itemName, quantity, price as columns 7-9 of an order
+   // detail row; null when the order has no lines
+   public static final RowMapper<OrderLine> ORDER_DETAIL_LINE = rs -> {
+      String itemName = rs.getString(7);
+      if (itemName == null)
+         return null;
+      return new OrderLine(rs.getInt(1), itemName, rs.getInt(8), rs.getBigDecimal(9));
+   };
+
+   // a single text column
+   public static final RowMapper<String> STRING = rs -> rs.getString(1);
+
+   // a single integer column, e.g. the orderID of UPDATE ... RETURNING
+   public static final RowMapper<Integer> INTEGER = rs -> rs.getInt(1);
+
+   // a single count column
+   public static final RowMapper<Long> LONG = rs -> rs.getLong(1);
+
+   // a single boolean column, e.g. SELECT EXISTS (...)
+   public static final RowMapper<Boolean> BOOLEAN = rs -> rs.getBoolean(1);
+
+   private RowMappers() {
+   }
+
+   private static String trim(String value) {
+      return value == null ? null : value.trim();
+   }
+
+}// end RowMappers
@@ -0,0 +1,395 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a command file against PizzaStoreService without the interactive
+ * menus, and times every command. Each non-blank line is one command; lines
+ * starting with '#' are comments. Arguments are separated by spaces, and an
+ * argument containing spaces is written in double quotes.
+ *
+ * <pre>
+ * createuser LOGIN PASSWORD PHONE
+ * login LOGIN PASSWORD
+ * logout
+ * menu [type=TYPE] [maxPrice=PRICE] [sort=ASC|DESC]
+ * stores [state=STATE] [city=CITY]
+ * order STOREID ITEM QUANTITY [ITEM QUANTITY ...]
+ * recent
+ * history [store=STOREID] [status=STATUS] [customer=LOGIN] [pages=N]
+ * detail ORDERID[,ORDERID...]
+ * status NEWSTATUS ORDERID[,ORDERID...]
+ * storestatus STOREID FROMSTATUS TOSTATUS
+ * </pre>
+ *
+ * An ORDERID can be written as last, the order the script placed most
+ * recently, so a script can follow its own order without touching others.
+ *
+ * The runner keeps its own session, so commands after a login run as that
+ * user with the same permission checks as the console. A failed command is
+ * reported and counted, and the script goes on with the next line. Several
+ * files can be replayed at once with runAll(), each as its own session.
+ *
+ */
+public class ScriptRunner {
+
+   private final PizzaStoreService service;
+   private final PrintStream out;
+
+   // the user logged in by the script, or null
+   private Session session = null;
+
+   // the order placed by the last order command, or -1
+   private int lastOrderID = -1;
+
+   // timings per command name, in the order commands were first seen
+   private final Map<String, Timing> timings = new LinkedHashMap<String, Timing>();
+
+   /**
+    * Creates a new runner.
+    *
+    * @param service the service to run the commands against
+    * @param out     receives one line per command and the summary
+    */
+   public ScriptRunner(PizzaStoreService service, PrintStream out) {
+      this.service = service;
+      this.out = out;
+   }// end ScriptRunner
+
+   /**
+    * Replays command files at the same time, each with its own session on its
+    * own thread from PizzaStoreService.newSessionExecutor(). The output of
+    * each file is printed in file order once it has finished. A single file
+    * runs on the calling thread and its output is printed as it goes.
+    *
+    * @param service the service to run the commands against
+    * @param files   the command files, - for standard input
+    * @param out     receives the output of every file
+    * @return the number of commands that failed over all files
+    * @throws java.io.IOException when interrupted while waiting for a file
+    */
+   public static int runAll(PizzaStoreService service, List<String> files, PrintStream out) throws IOException {
+      if (files.size() == 1)
+         return runFile(service, files.get(0), out);
+
+      ExecutorService sessions = PizzaStoreService.newSessionExecutor();
+      try {
+         long started = System.nanoTime();
+         List<ByteArrayOutputStream> outputs = new ArrayList<ByteArrayOutputStream>();
+         List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+         for (String file : files) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            outputs.add(output);
+            results.add(sessions.submit(() -> runFile(service, file, new PrintStream(output, true))));
+         } // end for
+
+         int failures = 0;
+         for (int i = 0; i < files.size(); ++i) {
+            out.println("== " + files.get(i) + " ==");
+            try {
+               failures += results.get(i).get();
+            } catch (ExecutionException e) {
+               out.println("ERROR " + e.getCause().getMessage());
+               ++failures;
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new InterruptedIOException("interrupted while replaying " + files.get(i));
+            }
+            out.print(outputs.get(i).toString());
+            out.println("");
+         } // end for
+         out.printf("%d session(s) in %.3f s\n", files.size(), (System.nanoTime() - started) / 1e9);
+         return failures;
+      } finally {
+         sessions.shutdownNow();
+      }
+   }// end runAll
+
+   // replays one command file, - for standard input
+   private static int runFile(PizzaStoreService service, String file, PrintStream out) throws IOException {
+      if (file.equals("-"))
+         return new ScriptRunner(service, out).run(PizzaStore.in);
+      try (BufferedReader script = new BufferedReader(new FileReader(file))) {
+         return new ScriptRunner(service, out).run(script);
+      }
+   }// end runFile
+
+   /**
+    * Runs every command of a script and prints the timing summary.
+    *
+    * @param script the command file
+    * @return the number of commands that failed
+    * @throws java.io.IOException when the script cannot be read
+    */
+   public int run(BufferedReader script) throws IOException {
+      int failures = 0;
+      int lineNum = 0;
+      long started = System.nanoTime();
+      String line;
+      while ((line = script.readLine()) != null) {
+         ++lineNum;
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#"))
+            continue;
+
+         List<String> args;
+         try {
+            args = tokenize(line);
+         } catch (IllegalArgumentException e) {
+            ++failures;
+            this.out.printf("%5d ERROR %s\n", lineNum, e.getMessage());
+            continue;
+         }
+         String command = args.remove(0).toLowerCase();
+         String result;
+         boolean failed = false;
+         long start = System.nanoTime();
+         try {
+            result = execute(command, args);
+         } catch (Exception e) {
+            result = "ERROR " + e.getMessage();
+            failed = true;
+         }
+         long elapsed = System.nanoTime() - start;
+
+         this.timings.computeIfAbsent(command, name -> new Timing()).add(elapsed, failed);
+         if (failed)
+            ++failures;
+         this.out.printf("%5d %-12s %10.3f ms  %s\n", lineNum, command, elapsed / 1e6, result);
+      } // end while
+      printSummary(System.nanoTime() - started);
+      return failures;
+   }// end run
+
+   // runs one command and describes its result
+   private String execute(String command, List<String> args) throws SQLException {
+      switch (command) {
+         case "createuser":
+            expect(args, 3);
+            return "created " + this.service.createUser(args.get(0), args.get(1), args.get(2)).login();
+         case "login":
+            expect(args, 2);
+            Session login = this.service.logIn(args.get(0), args.get(1));
+            if (login == null)
+               throw new IllegalStateException("invalid login or password");
+            this.session = login;
+            return "logged in as " + login.getLogin() + " (" + login.getRole() + ")";
+         case "logout":
+            this.session = null;
+            return "logged out";
+         case "menu":
+            return menu(options(args));
+         case "stores":
+            return stores(options(args));
+         case "order":
+            return order(args);
+         case "recent":
+            return recent();
+         case "history":
+            return history(options(args));
+         case "detail":
+            expect(args, 1);
+            return detail(ids(args.get(0)));
+         case "status":
+            expect(args, 2);
+            List<Integer> changed = this.service.updateOrderStatus(this.session, ids(args.get(1)), args.get(0));
+            return changed.size() + " order(s) updated";
+         case "storestatus":
+            expect(args, 3);
+            changed = this.service.updateOrderStatus(this.session, Integer.parseInt(args.get(0)), args.get(1),
+                  args.get(2));
+            return changed.size() + " order(s) updated";
+         default:
+            throw new IllegalArgumentException("unknown command");
+      }// end switch
+   }// end execute
+
+   private String menu(Map<String, String> options) throws SQLException {
+      String maxPrice = options.get("maxprice");
+      List<Item> items = this.service.menu(options.get("type"), maxPrice == null ? null : new BigDecimal(maxPrice),
+            options.get("sort"));
+      return items.size() + " item(s)";
+   }// end menu
+
+   private String stores(Map<String, String> options) throws SQLException {
+      StoreDirectory stores = this.service.stores();
+      List<Store> listing = options.containsKey("state") ? stores.inState(options.get("state"))
+            : options.containsKey("city") ? stores.inCity(options.get("city")) : stores.getStores();
+      return listing.size() + " store(s)";
+   }// end stores
+
+   private String order(List<String> args) throws SQLException {
+      if (args.size() < 3 || args.size() % 2 == 0)
+         throw new IllegalArgumentException("usage: order STOREID ITEM QUANTITY [ITEM QUANTITY ...]");
+      MenuSnapshot menu = this.service.menu();
+      Cart cart = new Cart(Integer.parseInt(args.get(0)));
+      for (int i = 1; i < args.size(); i += 2) {
+         Item item = menu.item(args.get(i));
+         if (item == null)
+            throw new IllegalArgumentException("item not found: " + args.get(i));
+         cart.add(item, Integer.parseInt(args.get(i + 1)));
+      } // end for
+      int orderID = this.service.placeOrder(this.session, cart);
+      this.lastOrderID = orderID;
+      return "order " + orderID + " total $" + cart.getTotal();
+   }// end order
+
+   private String recent() throws SQLException {
+      return this.service.recentOrders(this.session).size() + " order(s)";
+   }// end recent
+
+   private String history(Map<String, String> options) throws SQLException {
+      // customers only ever page through their own orders
+      OrderFilter filter = OrderFilter.NONE;
+      if (options.containsKey("store"))
+         filter = filter.withStoreID(Integer.parseInt(options.get("store")));
+      if (options.containsKey("status"))
+         filter = filter.withOrderStatus(options.get("status").toLowerCase());
+      if (options.containsKey("customer"))
+         filter = filter.withLogin(options.get("customer"));
+      OrderPager pager = this.service.orderHistory(this.session, filter, PizzaStore.ORDER_PAGE_SIZE);
+      int pages = Integer.parseInt(options.getOrDefault("pages", "1"));
+      int rows = pager.first().size();
+      int read = 1;
+      while (read < pages && pager.hasOlder()) {
+         rows += pager.next().size();
+         ++read;
+      } // end while
+      return rows + " order(s) on " + read + " page(s)";
+   }// end history
+
+   private String detail(List<Integer> orderIDs) throws SQLException {
+      int found = this.service.orderDetails(this.session, orderIDs).size();
+      return found + " of " + orderIDs.size() + " order(s) found";
+   }// end detail
+
+   // prints count, failures and latency per command, then the overall rate
+   private void printSummary(long elapsedNanos) {
+      this.out.println("");
+      this.out.printf("%-12s %8s %8s %12s %10s %10s %10s\n", "command", "count", "errors", "total ms", "mean ms",
+            "min ms", "max ms");
+      long commands = 0;
+      for (Map.Entry<String, Timing> entry : this.timings.entrySet()) {
+         Timing timing = entry.getValue();
+         commands += timing.count;
+         this.out.printf("%-12s %8d %8d %12.3f %10.3f %10.3f %10.3f\n", entry.getKey(), timing.count,
+               timing.failures, timing.totalNanos / 1e6, timing.totalNanos / 1e6 / timing.count,
+               timing.minNanos / 1e6, timing.maxNanos / 1e6);
+      } // end for
+      double seconds = elapsedNanos / 1e9;
+      this.out.printf("%d command(s) in %.3f s (%.1f/s)\n", commands, seconds,
+            seconds > 0 ? commands / seconds : 0.0);
+   }// end printSummary
+
+   // checks the number of positional arguments
+   private static void expect(List<String> args, int count) {
+      if (args.size() != count)
+         throw new IllegalArgumentException("expected " + count + " argument(s), got " + args.size());
+   }// end expect
+
+   // parses key=value arguments, keys are case insensitive
+   private static Map<String, String> options(List<String> args) {
+      Map<String, String> options = new HashMap<String, String>();
+      for (String arg : args) {
+         int eq = arg.indexOf('=');
+         if (eq <= 0)
+            throw new IllegalArgumentException("expected key=value: " + arg);
+         options.put(arg.substring(0, eq).toLowerCase(), arg.substring(eq + 1));
+      } // end for
+      return options;
+   }// end options
+
+   // parses a comma-separated list of order IDs, last is the order placed
+   // most recently
+   private List<Integer> ids(String list) {
+      List<Integer> ids = new ArrayList<Integer>();
+      for (String part : list.split(",")) {
+         part = part.trim();
+         if (part.equalsIgnoreCase("last")) {
+            if (this.lastOrderID < 0)
+               throw new IllegalStateException("no order placed yet");
+            ids.add(this.lastOrderID);
+         } else if (!part.isEmpty())
+            ids.add(Integer.parseInt(part));
+      } // end for
+      return ids;
+   }// end ids
+
+   /**
+    * Splits a command line at spaces. Double quotes group words into one
+    * argument and are removed.
+    *
+    * @param line the command line
+    * @return the command followed by its arguments
+    */
+   static List<String> tokenize(String line) {
+      List<String> tokens = new ArrayList<String>();
+      StringBuilder token = new StringBuilder();
+      boolean quoted = false;
+      boolean pending = false;
+      for (int i = 0; i < line.length(); ++i) {
+         char c = line.charAt(i);
+         if (c == '"') {
+            quoted = !quoted;
+            pending = true;
+         } else if (Character.isWhitespace(c) && !quoted) {
+            if (pending)
+               tokens.add(token.toString());
+            token.setLength(0);
+            pending = false;
+         } else {
+            token.append(c);
+            pending = true;
+         }
+      } // end for
+      if (quoted)
+         throw new IllegalArgumentException("unterminated quote: " + line);
+      if (pending)
+         tokens.add(token.toString());
+      return tokens;
+   }// end tokenize
+
+   // latency totals for one command name
+   private static final class Timing {
+      long count = 0;
+      long failures = 0;
+      long totalNanos = 0;
+      long minNanos = Long.MAX_VALUE;
+      long maxNanos = 0;
+
+      void add(long nanos, boolean failed) {
+         ++this.count;
+         if (failed)
+            ++this.failures;
+         this.totalNanos += nanos;
+         this.minNanos = Math.min(this.minNanos, nanos);
+         this.maxNanos = Math.max(this.maxNanos, nanos);
+      }
+   }// end Timing
+
+}// end ScriptRunner
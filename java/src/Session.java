@@ -0,0 +1,66 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * An authenticated user. The profile row is read once at login and kept
+ * here, so role checks and viewProfile need no query. Sessions are
+ * immutable; a change to the user's own row is written through by replacing
+ * the session with one for the changed row.
+ *
+ * Logins and passwords are stored normalized (see normalize()), so a login
+ * is an exact match on the Users primary key.
+ *
+ */
+public final class Session {
+
+   private final User user;
+
+   /**
+    * Creates a new session.
+    *
+    * @param user the profile row of the logged in user
+    */
+   public Session(User user) {
+      this.user = user;
+   }
+
+   /**
+    * Normalizes a login or password the way it is stored in Users.
+    *
+    * @param value the value as entered
+    * @return the stored form
+    */
+   public static String normalize(String value) {
+      return value == null ? null : value.trim();
+   }// end normalize
+
+   public User getUser() {
+      return this.user;
+   }
+
+   public String getLogin() {
+      return this.user.login();
+   }
+
+   public String getRole() {
+      return this.user.role();
+   }
+
+   public boolean isCustomer() {
+      return "customer".equals(getRole());
+   }
+
+   public boolean isManager() {
+      return "manager".equals(getRole());
+   }
+
+}// end Session
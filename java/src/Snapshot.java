@@ -0,0 +1,30 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * An immutable copy of a table held by a SnapshotCache.
+ *
+ */
+public interface Snapshot {
+
+   /**
+    * @return the version stamp, increasing with every change
+    */
+   long getVersion();
+
+   /**
+    * @return the server-side fingerprint of the rows, or null when the
+    *         snapshot was derived locally from a write
+    */
+   String getFingerprint();
+
+}// end Snapshot
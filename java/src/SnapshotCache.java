@@ -0,0 +1,176 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of a small, rarely changing table. Readers get the
+ * current Snapshot without touching the database; the table is read once on
+ * first use and again only when it is known or suspected to have changed.
+ *
+ * Subclasses load the snapshot and may write local changes through with
+ * swap(). Changes made by other processes are picked up by an optional
+ * background poll that compares a cheap server-side fingerprint of the table
+ * with the one the current snapshot was loaded with.
+ *
+ */
+public abstract class SnapshotCache<S extends Snapshot> implements AutoCloseable, SnapshotCacheMXBean {
+
+   protected final PizzaStore esql;
+   private final QueryTemplate fingerprintQuery;
+   private final AtomicReference<S> current = new AtomicReference<S>();
+   private final AtomicLong versions = new AtomicLong();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder reloads = new LongAdder();
+   private final ScheduledExecutorService poller;
+
+   /**
+    * Creates a new cache. Nothing is loaded until the first read.
+    *
+    * @param esql             the store used to load the table
+    * @param fingerprintQuery a query returning one text column that changes
+    *                         whenever the table does
+    * @param threadName       the name of the poll thread
+    * @param pollSeconds      seconds between checks for changes made outside
+    *                         this process, or 0 to never check
+    */
+   protected SnapshotCache(PizzaStore esql, QueryTemplate fingerprintQuery, String threadName, long pollSeconds) {
+      this.esql = esql;
+      this.fingerprintQuery = fingerprintQuery;
+      if (pollSeconds > 0) {
+         this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+         });
+         this.poller.scheduleWithFixedDelay(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+      } else {
+         this.poller = null;
+      } // end if
+   }// end SnapshotCache
+
+   /**
+    * Reads the table.
+    *
+    * @param version     the version to give the snapshot
+    * @param fingerprint the fingerprint read just before the rows
+    * @return the snapshot
+    * @throws java.sql.SQLException when the table cannot be read
+    */
+   protected abstract S load(long version, String fingerprint) throws SQLException;
+
+   /**
+    * Returns the current snapshot, loading it on first use.
+    *
+    * @return the snapshot
+    * @throws java.sql.SQLException when the table cannot be read
+    */
+   public S get() throws SQLException {
+      S snapshot = this.current.get();
+      if (snapshot != null) {
+         this.hits.increment();
+         return snapshot;
+      }
+      this.misses.increment();
+      return reload();
+   }// end get
+
+   /**
+    * Reads the table and swaps in a new snapshot. The fingerprint is read
+    * before the rows, so a change committed in between leaves the snapshot
+    * with a stale fingerprint and is reloaded by the next poll rather than
+    * missed.
+    *
+    * @return the current snapshot
+    * @throws java.sql.SQLException when the table cannot be read
+    */
+   public S reload() throws SQLException {
+      this.reloads.increment();
+      String fingerprint = this.esql.queryOne(this.fingerprintQuery, RowMappers.STRING);
+      return swap(load(nextVersion(), fingerprint));
+   }// end reload
+
+   /**
+    * @return the version of the current snapshot, or 0 when none is loaded
+    */
+   public long getVersion() {
+      S snapshot = this.current.get();
+      return snapshot == null ? 0 : snapshot.getVersion();
+   }
+
+   public long getHits() {
+      return this.hits.sum();
+   }
+
+   public long getMisses() {
+      return this.misses.sum();
+   }
+
+   public double getHitRate() {
+      long hits = this.hits.sum();
+      long reads = hits + this.misses.sum();
+      return reads == 0 ? 0.0 : (double) hits / reads;
+   }
+
+   public long getReloads() {
+      return this.reloads.sum();
+   }
+
+   /**
+    * @return a version higher than any handed out before
+    */
+   protected long nextVersion() {
+      return this.versions.incrementAndGet();
+   }
+
+   /**
+    * Makes a snapshot current unless a newer one already is.
+    *
+    * @param snapshot the new snapshot
+    * @return the current snapshot
+    */
+   protected S swap(S snapshot) {
+      return this.current.accumulateAndGet(snapshot,
+            (old, next) -> old == null || next.getVersion() > old.getVersion() ? next : old);
+   }// end swap
+
+   // reloads the snapshot when the table no longer matches it
+   private void poll() {
+      S snapshot = this.current.get();
+      if (snapshot == null)
+         return;
+      try {
+         String fingerprint = this.esql.queryOne(this.fingerprintQuery, RowMappers.STRING);
+         if (!Objects.equals(fingerprint, snapshot.getFingerprint()))
+            reload();
+      } catch (SQLException e) {
+         // ignored, the current snapshot is kept until the next poll.
+      } // end try
+   }// end poll
+
+   /**
+    * Stops the background poll.
+    */
+   public void close() {
+      if (this.poller != null)
+         this.poller.shutdownNow();
+   }// end close
+
+}// end SnapshotCache
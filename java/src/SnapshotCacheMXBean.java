@@ -0,0 +1,44 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The hit counters of a SnapshotCache, published over JMX as
+ * pizzastore:type=Cache,name=menu and pizzastore:type=Cache,name=stores.
+ *
+ */
+public interface SnapshotCacheMXBean {
+
+   /**
+    * @return reads answered by the current snapshot
+    */
+   long getHits();
+
+   /**
+    * @return reads that had to load the table first
+    */
+   long getMisses();
+
+   /**
+    * @return hits as a fraction of all reads, 0 before the first read
+    */
+   double getHitRate();
+
+   /**
+    * @return the times the table was read, on first use, by the poll or
+    *         on request
+    */
+   long getReloads();
+
+   long getVersion();
+
+}// end SnapshotCacheMXBean
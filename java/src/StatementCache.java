@@ -0,0 +1,253 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of prepared statements belonging to one
+ * physical connection. Statements are keyed by their SQL text, so every
+ * template is parsed by the server once per connection instead of once per
+ * call, and the server can keep a generic plan for it once it has seen a
+ * few executions. Evicted statements are closed and deallocated.
+ *
+ * The bundled pg73 driver binds parameters on the client and sends the
+ * finished SQL text each time, and its own server prepare is turned off by
+ * a version check that compares version strings, so it never applies to a
+ * server newer than 9. The cache therefore prepares each template on the
+ * server itself with PREPARE, its placeholders numbered $1, $2, ..., and
+ * hands out a JDBC statement for EXECUTE name(?, ?, ...). The driver still
+ * fills in the values on the client, but the server runs the statement it
+ * parsed when the template was first used. Statements PREPARE does not
+ * take, such as EXPLAIN, are cached as plain JDBC statements.
+ *
+ * A statement evicted while the connection is inside a transaction is not
+ * deallocated there, where a failure would abort the transaction or go
+ * unnoticed in one already aborted. Its name is kept until the pool takes
+ * the connection back and calls deallocatePending().
+ *
+ */
+public class StatementCache {
+
+   // default number of statements kept open per connection
+   public static final int DEFAULT_CAPACITY = 64;
+
+   // the connection that owns every cached statement
+   private final Connection _connection;
+
+   // access-ordered map, the eldest entry is the least recently used
+   private final LinkedHashMap<String, Prepared> _statements;
+
+   // the statements PREPARE accepts
+   private static final String[] PREPARABLE = { "SELECT", "INSERT", "UPDATE", "DELETE", "VALUES", "WITH" };
+
+   // numbers the server-side statement names of this connection
+   private int prepared = 0;
+
+   // names evicted inside a transaction, deallocated once it has ended
+   private final List<String> pending = new ArrayList<String>();
+
+   private long hits = 0;
+   private long misses = 0;
+
+   // a template prepared on the server and the EXECUTE statement for it
+   private static final class Prepared {
+      // the server-side name, null when the template is not prepared there
+      final String name;
+      final PreparedStatement execute;
+
+      Prepared(String name, PreparedStatement execute) {
+         this.name = name;
+         this.execute = execute;
+      }
+   }// end Prepared
+
+   /**
+    * Creates a new cache over the given connection.
+    *
+    * @param connection the connection statements are prepared on
+    * @param capacity   the maximum number of open statements
+    */
+   public StatementCache(Connection connection, final int capacity) {
+      this._connection = connection;
+      this._statements = new LinkedHashMap<String, Prepared>(capacity, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, Prepared> eldest) {
+            if (size() <= capacity)
+               return false;
+            closeQuietly(eldest.getValue().execute);
+            if (eldest.getValue().name != null)
+               deallocate(eldest.getValue().name);
+            return true;
+         }
+      };
+   }// end StatementCache
+
+   /**
+    * Returns the prepared statement for a template, preparing it on first
+    * use. Callers must not close the returned statement.
+    *
+    * @param template the query template
+    * @return a prepared statement with no parameters bound
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public PreparedStatement prepare(QueryTemplate template) throws SQLException {
+      Prepared prepared = this._statements.get(template.getSql());
+      if (prepared != null) {
+         ++this.hits;
+         prepared.execute.clearParameters();
+         return prepared.execute;
+      }
+      ++this.misses;
+      if (!isPreparable(template.getSql())) {
+         PreparedStatement stmt = this._connection.prepareStatement(template.getSql());
+         this._statements.put(template.getSql(), new Prepared(null, stmt));
+         return stmt;
+      }
+      String name = "pizzastore_" + (++this.prepared);
+      StringBuilder numbered = new StringBuilder();
+      int count = numberPlaceholders(template.getSql(), numbered);
+      StringBuilder execute = new StringBuilder("EXECUTE ").append(name);
+      for (int i = 0; i < count; ++i)
+         execute.append(i == 0 ? "(?" : ", ?");
+      if (count > 0)
+         execute.append(')');
+
+      try (Statement stmt = this._connection.createStatement()) {
+         stmt.execute("PREPARE " + name + " AS " + numbered);
+      }
+      PreparedStatement stmt;
+      try {
+         stmt = this._connection.prepareStatement(execute.toString());
+      } catch (SQLException e) {
+         deallocate(name);
+         throw e;
+      }
+      this._statements.put(template.getSql(), new Prepared(name, stmt));
+      return stmt;
+   }// end prepare
+
+   // true when PREPARE accepts the statement
+   private static boolean isPreparable(String sql) {
+      String head = sql.stripLeading().toUpperCase(Locale.ROOT);
+      for (String keyword : PREPARABLE)
+         if (head.startsWith(keyword))
+            return true;
+      return false;
+   }// end isPreparable
+
+   /*
+    * copies sql to numbered with its '?' placeholders written as $1, $2, ...
+    * and returns how many there were. Quoted strings and identifiers are
+    * copied unchanged.
+    */
+   private static int numberPlaceholders(String sql, StringBuilder numbered) {
+      int count = 0;
+      char quote = 0;
+      for (int i = 0; i < sql.length(); ++i) {
+         char c = sql.charAt(i);
+         if (quote != 0) {
+            if (c == quote)
+               quote = 0;
+            numbered.append(c);
+         } else if (c == '\'' || c == '"') {
+            quote = c;
+            numbered.append(c);
+         } else if (c == '?') {
+            numbered.append('$').append(++count);
+         } else {
+            numbered.append(c);
+         }
+      } // end for
+      return count;
+   }// end numberPlaceholders
+
+   public Connection getConnection() {
+      return this._connection;
+   }
+
+   public int size() {
+      return this._statements.size();
+   }
+
+   public long getHits() {
+      return this.hits;
+   }
+
+   public long getMisses() {
+      return this.misses;
+   }
+
+   /**
+    * Closes every cached statement. The connection itself is left open; the
+    * statements prepared on the server go away when it is closed.
+    */
+   public void close() {
+      for (Prepared prepared : this._statements.values())
+         closeQuietly(prepared.execute);
+      this._statements.clear();
+   }// end close
+
+   /**
+    * Deallocates the statements evicted while a transaction was open. The
+    * connection must be outside a transaction. A name that still cannot be
+    * deallocated is dropped, since the statement is then gone or the
+    * connection is broken.
+    */
+   public void deallocatePending() {
+      for (String name : this.pending) {
+         try (Statement stmt = this._connection.createStatement()) {
+            stmt.execute("DEALLOCATE " + name);
+         } catch (SQLException e) {
+            // ignored.
+         } // end try
+      } // end for
+      this.pending.clear();
+   }// end deallocatePending
+
+   public int getPendingDeallocations() {
+      return this.pending.size();
+   }
+
+   // deallocates a statement now, or after the open transaction
+   private void deallocate(String name) {
+      try {
+         if (this._connection.getAutoCommit()) {
+            try (Statement stmt = this._connection.createStatement()) {
+               stmt.execute("DEALLOCATE " + name);
+            }
+            return;
+         }
+      } catch (SQLException e) {
+         // retried once the connection is returned to the pool
+      } // end try
+      this.pending.add(name);
+   }// end deallocate
+
+   private static void closeQuietly(PreparedStatement stmt) {
+      if (stmt == null)
+         return;
+      try {
+         stmt.close();
+      } catch (SQLException e) {
+         // ignored.
+      } // end try
+   }// end closeQuietly
+
+}// end StatementCache
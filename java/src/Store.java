@@ -0,0 +1,19 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * A row of the Store table. reviewScore is null when the store has no
+ * score.
+ *
+ */
+public record Store(int storeID, String address, String city, String state, boolean isOpen, Double reviewScore) {
+}// end Store
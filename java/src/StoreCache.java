@@ -0,0 +1,39 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+
+/**
+ * Process-wide cache of the store directory. Stores are only changed outside
+ * the application, so a store opening or closing is found by the poll of
+ * SnapshotCache, whose fingerprint covers isOpen.
+ *
+ */
+public class StoreCache extends SnapshotCache<StoreDirectory> {
+
+   /**
+    * Creates a new cache. Nothing is loaded until the first read.
+    *
+    * @param esql        the store used to load the directory
+    * @param pollSeconds seconds between checks for changes, or 0 to never
+    *                    check
+    */
+   public StoreCache(PizzaStore esql, long pollSeconds) {
+      super(esql, Queries.STORE_FINGERPRINT, "pizzastore-store-poll", pollSeconds);
+   }// end StoreCache
+
+   @Override
+   protected StoreDirectory load(long version, String fingerprint) throws SQLException {
+      return new StoreDirectory(version, fingerprint, this.esql.queryList(Queries.STORES, RowMappers.STORE));
+   }// end load
+
+}// end StoreCache
@@ -0,0 +1,165 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable copy of the Store table, indexed for the store picker and
+ * viewStores. Which stores are open is kept in a bitset keyed by storeID, so
+ * validating a choice is a single bit test. Stores are also grouped by state
+ * and by city (matched ignoring case and surrounding whitespace), and every
+ * listing is ordered by storeID so it can be paged.
+ *
+ */
+public final class StoreDirectory implements Snapshot {
+
+   private final long version;
+   private final String fingerprint;
+   private final List<Store> stores;
+   private final List<Store> openStores;
+   private final Map<Integer, Store> byID;
+   private final BitSet open;
+   private final Map<String, List<Store>> byState;
+   private final Map<String, List<Store>> byCity;
+
+   /**
+    * Creates a new directory.
+    *
+    * @param version     the version stamp, increasing with every change
+    * @param fingerprint the server-side fingerprint of the rows
+    * @param stores      the stores, in any order
+    */
+   StoreDirectory(long version, String fingerprint, List<Store> stores) {
+      List<Store> sorted = new ArrayList<Store>(stores);
+      sorted.sort(Comparator.comparingInt(Store::storeID));
+
+      List<Store> openStores = new ArrayList<Store>();
+      Map<Integer, Store> byID = new HashMap<Integer, Store>();
+      BitSet open = new BitSet();
+      Map<String, List<Store>> byState = new HashMap<String, List<Store>>();
+      Map<String, List<Store>> byCity = new HashMap<String, List<Store>>();
+      for (Store store : sorted) {
+         byID.put(store.storeID(), store);
+         if (store.isOpen()) {
+            openStores.add(store);
+            open.set(store.storeID());
+         } // end if
+         byState.computeIfAbsent(key(store.state()), k -> new ArrayList<Store>()).add(store);
+         byCity.computeIfAbsent(key(store.city()), k -> new ArrayList<Store>()).add(store);
+      } // end for
+
+      this.version = version;
+      this.fingerprint = fingerprint;
+      this.stores = Collections.unmodifiableList(sorted);
+      this.openStores = Collections.unmodifiableList(openStores);
+      this.byID = byID;
+      this.open = open;
+      this.byState = freeze(byState);
+      this.byCity = freeze(byCity);
+   }// end StoreDirectory
+
+   @Override
+   public long getVersion() {
+      return this.version;
+   }
+
+   @Override
+   public String getFingerprint() {
+      return this.fingerprint;
+   }
+
+   /**
+    * @return every store, ordered by storeID
+    */
+   public List<Store> getStores() {
+      return this.stores;
+   }
+
+   /**
+    * @return the open stores, ordered by storeID
+    */
+   public List<Store> getOpenStores() {
+      return this.openStores;
+   }
+
+   /**
+    * @param storeID the store
+    * @return the store, or null when there is no such store
+    */
+   public Store store(int storeID) {
+      return this.byID.get(storeID);
+   }
+
+   /**
+    * @param storeID the store
+    * @return true when the store exists and is open
+    */
+   public boolean isOpen(int storeID) {
+      return storeID >= 0 && this.open.get(storeID);
+   }
+
+   /**
+    * @param state the state
+    * @return the stores in the state, ordered by storeID
+    */
+   public List<Store> inState(String state) {
+      return this.byState.getOrDefault(key(state), Collections.emptyList());
+   }
+
+   /**
+    * @param city the city
+    * @return the stores in the city, ordered by storeID
+    */
+   public List<Store> inCity(String city) {
+      return this.byCity.getOrDefault(key(city), Collections.emptyList());
+   }
+
+   /**
+    * Returns one page of a listing.
+    *
+    * @param stores   the listing
+    * @param page     the 0-based page number
+    * @param pageSize the number of stores per page
+    * @return the stores on the page, empty past the last page
+    */
+   public static List<Store> page(List<Store> stores, int page, int pageSize) {
+      int from = Math.min(page * pageSize, stores.size());
+      return stores.subList(from, Math.min(from + pageSize, stores.size()));
+   }// end page
+
+   /**
+    * @param stores   the listing
+    * @param pageSize the number of stores per page
+    * @return the number of pages, at least 1
+    */
+   public static int pageCount(List<Store> stores, int pageSize) {
+      return Math.max(1, (stores.size() + pageSize - 1) / pageSize);
+   }// end pageCount
+
+   private static String key(String value) {
+      return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+   }
+
+   private static Map<String, List<Store>> freeze(Map<String, List<Store>> index) {
+      for (Map.Entry<String, List<Store>> entry : index.entrySet())
+         entry.setValue(Collections.unmodifiableList(entry.getValue()));
+      return index;
+   }// end freeze
+
+}// end StoreDirectory
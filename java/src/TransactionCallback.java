@@ -0,0 +1,31 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+
+/**
+ * Work run by PizzaStore.inTransaction on a single leased connection with
+ * auto-commit turned off.
+ *
+ */
+public interface TransactionCallback<T> {
+
+   /**
+    * Runs the work. Throwing rolls the transaction back.
+    *
+    * @param lease the connection the transaction runs on
+    * @return the result handed back to the caller
+    * @throws java.sql.SQLException when a statement fails
+    */
+   T run(ConnectionPool.Lease lease) throws SQLException;
+
+}// end TransactionCallback
@@ -0,0 +1,18 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * A row of the Users table.
+ *
+ */
+public record User(String login, String password, String role, String favoriteItems, String phoneNum) {
+}// end User
@@ -1,8 +1,11 @@
 #!/bin/bash
 DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 # cs166_createdb $USER"_project_phase_3_DB"
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_tables.sql
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_indexes.sql
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/load_data.sql
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/triggers.sql
-
+# set PSQL=cs166_psql on the course servers
+PSQL=${PSQL:-psql}
+$PSQL -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_tables.sql
+# loads data/*.csv and builds the indexes of create_indexes.sql; without
+# java, run create_indexes.sql and then load_data.sql from the data directory
+$DIR/../../java/scripts/load.sh
+$PSQL -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/normalize_users.sql
+$PSQL -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/triggers.sql
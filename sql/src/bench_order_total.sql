@@ -0,0 +1,123 @@
+-- Compares the statement-level update_order_total_price trigger from
+-- triggers.sql with the previous FOR EACH ROW version that re-summed the
+-- whole order on every line. For 1, 10 and 100 lines per order it inserts
+-- the lines of 200 orders, one multi-row INSERT per order as
+-- PizzaStore.checkout issues them, checks every total, and reports the time
+-- per order. It then changes the price of an item and updates and deletes
+-- lines that were added at the old price, and checks those orders again.
+-- Everything runs in one transaction that is rolled back, so the database is
+-- left unchanged.
+--
+-- Run after create_db.sh with:
+--   psql -p $PGPORT $USER"_project_phase_3_DB" -f sql/src/bench_order_total.sql
+BEGIN;
+
+-- the previous row-level trigger body, kept here for comparison only
+CREATE FUNCTION bench_order_total_rowwise () RETURNS "trigger" AS $BODY$ BEGIN
+UPDATE FoodOrder
+SET
+    totalPrice = (
+        SELECT
+            COALESCE(SUM(i.price * io.quantity), 0)
+        FROM
+            ItemsInOrder io
+            JOIN Items i ON io.itemName = i.itemName
+        WHERE
+            io.orderID = NEW.orderID
+    )
+WHERE
+    orderID = NEW.orderID;
+
+RETURN NEW;
+
+END;
+
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+-- the menu is smaller than 100 items, so add enough to fill the largest order
+INSERT INTO
+    Items (itemName, ingredients, typeOfItem, price, description)
+SELECT
+    'bench item ' || g,
+    'bench',
+    'bench',
+    1.00 + g / 100.0,
+    NULL
+FROM
+    generate_series(1, 100) g;
+
+DO $BODY$
+DECLARE
+    orders CONSTANT integer := 200;
+    mode text;
+    lines integer;
+    o integer;
+    base integer;
+    started timestamptz;
+    elapsed double precision;
+    wrong integer;
+    customer varchar(50) := (SELECT MIN(login) FROM Users);
+    store integer := (SELECT MIN(storeID) FROM Store);
+BEGIN
+    base := (SELECT COALESCE(MAX(orderID), 0) FROM FoodOrder) + 1;
+
+    FOREACH mode IN ARRAY ARRAY['row', 'statement'] LOOP
+        IF mode = 'row' THEN
+            ALTER TABLE ItemsInOrder DISABLE TRIGGER USER;
+            CREATE TRIGGER bench_order_total_rowwise AFTER INSERT OR UPDATE OR DELETE ON ItemsInOrder
+                FOR EACH ROW EXECUTE PROCEDURE bench_order_total_rowwise ();
+        ELSE
+            DROP TRIGGER bench_order_total_rowwise ON ItemsInOrder;
+            ALTER TABLE ItemsInOrder ENABLE TRIGGER USER;
+        END IF;
+
+        FOREACH lines IN ARRAY ARRAY[1, 10, 100] LOOP
+            INSERT INTO FoodOrder (orderID, login, storeID, totalPrice, orderTimestamp, orderStatus)
+            SELECT base + g, customer, store, 0.00, now(), 'incomplete'
+            FROM generate_series(0, orders - 1) g;
+
+            started := clock_timestamp();
+            FOR o IN base .. base + orders - 1 LOOP
+                INSERT INTO ItemsInOrder (orderID, itemName, quantity)
+                SELECT o, 'bench item ' || g, 2
+                FROM generate_series(1, lines) g;
+            END LOOP;
+            elapsed := EXTRACT(EPOCH FROM clock_timestamp() - started) * 1000;
+
+            SELECT COUNT(*) INTO wrong
+            FROM FoodOrder f
+            WHERE f.orderID BETWEEN base AND base + orders - 1
+                AND f.totalPrice <> (
+                    SELECT SUM(i.price * io.quantity)
+                    FROM ItemsInOrder io JOIN Items i ON io.itemName = i.itemName
+                    WHERE io.orderID = f.orderID);
+
+            RAISE NOTICE '% trigger, % lines/order: % ms total, % ms/order, % wrong totals',
+                rpad(mode, 9), lpad(lines::text, 3), round(elapsed::numeric, 1),
+                round((elapsed / orders)::numeric, 3), wrong;
+
+            base := base + orders;
+        END LOOP;
+    END LOOP;
+
+    -- the last orders have a line of every bench item, added at the old
+    -- price; reprice one item, then update a line of one order and delete a
+    -- line of another
+    UPDATE Items SET price = price + 5.00 WHERE itemName = 'bench item 1';
+    UPDATE ItemsInOrder SET quantity = 3
+    WHERE orderID = base - 1 AND itemName = 'bench item 2';
+    DELETE FROM ItemsInOrder WHERE orderID = base - 2 AND itemName = 'bench item 2';
+
+    SELECT COUNT(*) INTO wrong
+    FROM FoodOrder f
+    WHERE f.orderID IN (base - 1, base - 2)
+        AND f.totalPrice <> (
+            SELECT SUM(i.price * io.quantity)
+            FROM ItemsInOrder io JOIN Items i ON io.itemName = i.itemName
+            WHERE io.orderID = f.orderID);
+
+    RAISE NOTICE 'after a price change, update and delete of a line: % wrong totals', wrong;
+END;
+$BODY$;
+
+ROLLBACK;
@@ -4,6 +4,10 @@ DROP INDEX IF EXISTS idx_foodorder_login_status;
 
 DROP INDEX IF EXISTS idx_foodorder_timestamp;
 
+DROP INDEX IF EXISTS idx_foodorder_login_timestamp;
+
+DROP INDEX IF EXISTS idx_foodorder_store_timestamp;
+
 DROP INDEX IF EXISTS idx_items_type;
 
 DROP INDEX IF EXISTS idx_itemsinorder_orderid;
@@ -11,11 +15,14 @@ DROP INDEX IF EXISTS idx_itemsinorder_orderid;
 -- This appears in nearly every user-related function including LogIn(), viewProfile(), placeOrder(), and viewAllOrders().
 CREATE INDEX idx_users_login ON Users (login);
 
--- The viewAllOrders() and viewRecentOrders() functions specifically filter on these columns.
-CREATE INDEX idx_foodorder_login_status ON FoodOrder (login, orderStatus);
+-- viewAllOrders() pages through orders newest first, keyed on (orderTimestamp, orderID), and
+-- viewRecentOrders() reads the first five. Each page is a range scan of one of these indexes:
+-- all orders (optionally filtered by status), one customer's orders, or one store's orders.
+CREATE INDEX idx_foodorder_timestamp ON FoodOrder (orderTimestamp DESC, orderID DESC);
+
+CREATE INDEX idx_foodorder_login_timestamp ON FoodOrder (login, orderTimestamp DESC, orderID DESC);
 
--- The viewRecentOrders() and viewAllOrders() functions sort by timestamp when displaying orders.
-CREATE INDEX idx_foodorder_timestamp ON FoodOrder (orderTimestamp DESC);
+CREATE INDEX idx_foodorder_store_timestamp ON FoodOrder (storeID, orderTimestamp DESC, orderID DESC);
 
 -- The menu filtering functions frequently query items by type, as seen in the viewMenu() function.
 CREATE INDEX idx_items_type ON Items (typeOfItem);
@@ -52,6 +52,10 @@ CREATE TABLE
         FOREIGN KEY (storeID) REFERENCES Store (storeID) ON DELETE CASCADE
     );
 
+-- New order IDs are leased in blocks of 50 by OrderIdAllocator (hi/lo), so
+-- INCREMENT BY must match OrderIdAllocator.BLOCK_SIZE.
+CREATE SEQUENCE FoodOrder_orderID_seq INCREMENT BY 50 START WITH 10000 OWNED BY FoodOrder.orderID;
+
 CREATE TABLE
     ItemsInOrder (
         orderID integer NOT NULL,
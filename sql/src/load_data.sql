@@ -1,29 +1,27 @@
-/* Replace the location to where you saved the data files*/ COPY Users
-FROM
-    '/home/csmajs/skaka008/cs166/cs166_project_phase3/data/users.csv'
-WITH
-    DELIMITER ',' CSV HEADER;
+-- Loads data/*.csv with psql's \copy, which reads the files on the client,
+-- so they are found relative to the directory psql runs in and no server
+-- file access is needed. Run from the data directory:
+--   cd data && psql -p $PGPORT $USER"_project_phase_3_DB" -f ../sql/src/load_data.sql
+-- create_db.sh loads the same files faster with java/src/BulkLoader.java.
+\copy Users FROM 'users.csv' WITH DELIMITER ',' CSV HEADER
 
-COPY Items
-FROM
-    '/home/csmajs/skaka008/cs166/cs166_project_phase3/data/items.csv'
-WITH
-    DELIMITER ',' CSV HEADER;
+\copy Items FROM 'items.csv' WITH DELIMITER ',' CSV HEADER
 
-COPY Store
-FROM
-    '/home/csmajs/skaka008/cs166/cs166_project_phase3/data/store.csv'
-WITH
-    DELIMITER ',' CSV HEADER;
+\copy Store FROM 'store.csv' WITH DELIMITER ',' CSV HEADER
 
-COPY FoodOrder
-FROM
-    '/home/csmajs/skaka008/cs166/cs166_project_phase3/data/foodorder.csv'
-WITH
-    DELIMITER ',' CSV HEADER;
+\copy FoodOrder FROM 'foodorder.csv' WITH DELIMITER ',' CSV HEADER
 
-COPY ItemsInOrder
-FROM
-    '/home/csmajs/skaka008/cs166/cs166_project_phase3/data/itemsinorder.csv'
-WITH
-    DELIMITER ',' CSV HEADER;
\ No newline at end of file
+-- start handing out order IDs after the loaded ones
+SELECT
+    setval(
+        'FoodOrder_orderID_seq',
+        (
+            SELECT
+                COALESCE(MAX(orderID), 9999) + 1
+            FROM
+                FoodOrder
+        ),
+        false
+    );
+
+\copy ItemsInOrder FROM 'itemsinorder.csv' WITH DELIMITER ',' CSV HEADER
\ No newline at end of file
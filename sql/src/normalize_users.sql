@@ -0,0 +1,38 @@
+-- Stores every login and password trimmed, the form PizzaStore writes and
+-- looks them up in (Session.normalize), so LogIn is an exact match on the
+-- Users primary key instead of a TRIM() over every row. Orders follow their
+-- customer's login. Safe to run again; it fails without changing anything
+-- if two logins differ only in surrounding whitespace.
+BEGIN;
+
+ALTER TABLE FoodOrder
+DROP CONSTRAINT IF EXISTS foodorder_login_fkey;
+
+UPDATE Users
+SET
+    login = TRIM(login),
+    password = TRIM(password)
+WHERE
+    login <> TRIM(login)
+    OR password <> TRIM(password);
+
+UPDATE FoodOrder
+SET
+    login = TRIM(login)
+WHERE
+    login <> TRIM(login);
+
+ALTER TABLE FoodOrder
+ADD CONSTRAINT foodorder_login_fkey FOREIGN KEY (login) REFERENCES Users (login) ON DELETE CASCADE;
+
+-- keep them that way
+ALTER TABLE Users
+DROP CONSTRAINT IF EXISTS users_login_normalized;
+
+ALTER TABLE Users
+ADD CONSTRAINT users_login_normalized CHECK (
+    login = TRIM(login)
+    AND password = TRIM(password)
+);
+
+COMMIT;
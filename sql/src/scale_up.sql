@@ -0,0 +1,124 @@
+-- Grows the loaded data so the planner treats the tables the way it would
+-- in production, for the plan check in java/bench/PlanCheck.java. It adds
+-- customers, stores, orders and order lines on top of what load_data.sql
+-- loaded; edit the sizes below to scale further. Order totals are computed
+-- directly instead of by the trigger, which is switched off for the bulk
+-- insert. Finishes with ANALYZE so the plans use fresh statistics.
+--
+-- Run after create_db.sh with:
+--   psql -p $PGPORT $USER"_project_phase_3_DB" -f sql/src/scale_up.sql
+\set users 100000
+\set stores 9000
+\set orders 1000000
+\set lines 3
+
+SELECT
+    COALESCE(MAX(orderID), 0) AS order_base
+FROM
+    FoodOrder \gset
+
+SELECT
+    MAX(storeID) AS store_base
+FROM
+    Store \gset
+
+BEGIN;
+
+INSERT INTO
+    Users (login, password, role, favoriteItems, phoneNum)
+SELECT
+    'scale_user_' || g,
+    'password' || g,
+    CASE
+        WHEN g % 1000 = 0 THEN 'manager'
+        WHEN g % 50 = 0 THEN 'driver'
+        ELSE 'customer'
+    END,
+    NULL,
+    '555-' || lpad((g % 10000000)::text, 7, '0')
+FROM
+    generate_series(1, :users) g;
+
+INSERT INTO
+    Store (storeID, address, city, state, isOpen, reviewScore)
+SELECT
+    :store_base + g,
+    g || ' Scale Street',
+    'Scale City ' || (g % 500),
+    (ARRAY['California', 'Texas', 'New York', 'Florida', 'Ohio'])[1 + g % 5],
+    CASE
+        WHEN g % 4 = 0 THEN 'no'
+        ELSE 'yes'
+    END,
+    1 + g % 5
+FROM
+    generate_series(1, :stores) g;
+
+-- random timestamps over two years, to the second, so ties on
+-- orderTimestamp are common and exercise the orderID tie-break
+INSERT INTO
+    FoodOrder (orderID, login, storeID, totalPrice, orderTimestamp, orderStatus)
+SELECT
+    :order_base + g,
+    'scale_user_' || (1 + g % :users),
+    1 + (g::bigint * 7919) % (:store_base + :stores),
+    0.00,
+    TIMESTAMP '2023-01-01' + (random() * 63072000)::integer * INTERVAL '1 second',
+    CASE
+        WHEN random() < 0.8 THEN 'complete'
+        ELSE 'incomplete'
+    END
+FROM
+    generate_series(1, :orders) g;
+
+ALTER TABLE ItemsInOrder DISABLE TRIGGER USER;
+
+-- consecutive menu items, so lines must not exceed the number of items
+INSERT INTO
+    ItemsInOrder (orderID, itemName, quantity)
+SELECT
+    o.orderID,
+    m.names[1 + (o.orderID + k) % array_length(m.names, 1)],
+    1 + (o.orderID + k) % 3
+FROM
+    FoodOrder o
+    CROSS JOIN generate_series(1, :lines) k
+    CROSS JOIN (
+        SELECT
+            array_agg(itemName ORDER BY itemName) AS names
+        FROM
+            Items
+    ) m
+WHERE
+    o.orderID > :order_base;
+
+UPDATE FoodOrder f
+SET
+    totalPrice = t.total
+FROM
+    (
+        SELECT
+            io.orderID,
+            SUM(i.price * io.quantity) AS total
+        FROM
+            ItemsInOrder io
+            JOIN Items i ON io.itemName = i.itemName
+        WHERE
+            io.orderID > :order_base
+        GROUP BY
+            io.orderID
+    ) t
+WHERE
+    f.orderID = t.orderID;
+
+ALTER TABLE ItemsInOrder ENABLE TRIGGER USER;
+
+-- start handing out order IDs after the generated ones
+SELECT
+    setval('FoodOrder_orderID_seq', MAX(orderID) + 1, false)
+FROM
+    FoodOrder;
+
+COMMIT;
+
+ANALYZE;
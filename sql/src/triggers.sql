@@ -1,33 +1,92 @@
 DROP TRIGGER IF EXISTS update_order_price_after_item_change ON ItemsInOrder;
 
--- automatically calculate total order price
+DROP TRIGGER IF EXISTS update_order_price_after_item_insert ON ItemsInOrder;
+
+DROP TRIGGER IF EXISTS update_order_price_after_item_update ON ItemsInOrder;
+
+DROP TRIGGER IF EXISTS update_order_price_after_item_delete ON ItemsInOrder;
+
+-- automatically maintain the total order price
 CREATE
 OR REPLACE LANGUAGE plpgsql;
 
+-- the total of one order at the current item prices
+CREATE
+OR REPLACE FUNCTION order_total_price (p_orderID integer) RETURNS numeric AS $BODY$
+SELECT
+    COALESCE(SUM(i.price * io.quantity), 0)
+FROM
+    ItemsInOrder io
+    JOIN Items i ON io.itemName = i.itemName
+WHERE
+    io.orderID = p_orderID;
+
+$BODY$ LANGUAGE sql STABLE;
+
+-- Recomputes SUM(price * quantity) of each order touched by the statement,
+-- once per statement. The affected orders are read from the transition
+-- tables, so a multi-line insert updates each FoodOrder row once instead of
+-- re-summing the whole order per line. The total is recomputed rather than
+-- adjusted by a delta: a delta priced at the current Items.price drifts once
+-- a price changes between adding a line and updating or deleting it.
 CREATE
 OR REPLACE FUNCTION update_order_total_price () RETURNS "trigger" AS $BODY$ BEGIN
-UPDATE FoodOrder
+IF TG_OP = 'INSERT' THEN
+UPDATE FoodOrder f
+SET
+    totalPrice = order_total_price (f.orderID)
+WHERE
+    f.orderID IN (
+        SELECT
+            orderID
+        FROM
+            new_lines
+    );
+
+ELSIF TG_OP = 'DELETE' THEN
+UPDATE FoodOrder f
 SET
-    totalPrice = (
+    totalPrice = order_total_price (f.orderID)
+WHERE
+    f.orderID IN (
         SELECT
-            COALESCE(SUM(i.price * io.quantity), 0)
+            orderID
         FROM
-            ItemsInOrder io
-            JOIN Items i ON io.itemName = i.itemName
-        WHERE
-            io.orderID = NEW.orderID
-    )
+            old_lines
+    );
+
+ELSE
+UPDATE FoodOrder f
+SET
+    totalPrice = order_total_price (f.orderID)
 WHERE
-    orderID = NEW.orderID;
+    f.orderID IN (
+        SELECT
+            orderID
+        FROM
+            new_lines
+        UNION
+        SELECT
+            orderID
+        FROM
+            old_lines
+    );
+
+END IF;
 
-RETURN NEW;
+RETURN NULL;
 
 END;
 
 $BODY$ LANGUAGE plpgsql VOLATILE;
 
--- trigger
-CREATE TRIGGER update_order_price_after_item_change AFTER INSERT
-OR
-UPDATE
-OR DELETE ON ItemsInOrder FOR EACH ROW EXECUTE PROCEDURE update_order_total_price ();
\ No newline at end of file
+-- triggers, one per event because transition tables cannot be shared
+CREATE TRIGGER update_order_price_after_item_insert
+AFTER INSERT ON ItemsInOrder REFERENCING NEW TABLE AS new_lines FOR EACH STATEMENT EXECUTE PROCEDURE update_order_total_price ();
+
+CREATE TRIGGER update_order_price_after_item_update
+AFTER
+UPDATE ON ItemsInOrder REFERENCING OLD TABLE AS old_lines NEW TABLE AS new_lines FOR EACH STATEMENT EXECUTE PROCEDURE update_order_total_price ();
+
+CREATE TRIGGER update_order_price_after_item_delete
+AFTER DELETE ON ItemsInOrder REFERENCING OLD TABLE AS old_lines FOR EACH STATEMENT EXECUTE PROCEDURE update_order_total_price ();